@@ -370,6 +370,7 @@
 import org.h2.schema.UserDefinedFunction;
 import org.h2.table.CTE;
 import org.h2.table.Column;
+import org.h2.table.ColumnStatistics;
 import org.h2.table.DataChangeDeltaTable;
 import org.h2.table.DataChangeDeltaTable.ResultOption;
 import org.h2.table.DualTable;
@@ -5656,6 +5657,9 @@ private Column parseColumnForTable(String columnName, boolean defaultNullable) {
         if (readIf("SELECTIVITY")) {
             column.setSelectivity(readNonNegativeInt());
         }
+        if (readIf("STATISTICS")) {
+            parseColumnStatistics(column);
+        }
         if (mode.mySqlTableOptions) {
             if (readIfCompat("CHARACTER")) {
                 readIf(SET);
@@ -5672,6 +5676,50 @@ private Column parseColumnForTable(String columnName, boolean defaultNullable) {
         return column;
     }
 
+    private void parseColumnStatistics(Column column) {
+        read(OPEN_PAREN);
+        long rowCount = readNonNegativeLong();
+        read(COMMA);
+        long nullCount = readNonNegativeLong();
+        read(COMMA);
+        long distinctCount = readNonNegativeLong();
+        read(COMMA);
+        Value[] commonValues = readConstantArray();
+        read(COMMA);
+        Value[] counts = readConstantArray();
+        read(COMMA);
+        Value[] bounds = readConstantArray();
+        read(CLOSE_PAREN);
+        int length = commonValues.length;
+        if (counts.length != length) {
+            throw getSyntaxError();
+        }
+        long[] commonCounts = new long[length];
+        try {
+            for (int i = 0; i < length; i++) {
+                commonValues[i] = column.convert(session, commonValues[i]);
+                commonCounts[i] = counts[i].getLong();
+            }
+            for (int i = 0, l = bounds.length; i < l; i++) {
+                bounds[i] = column.convert(session, bounds[i]);
+            }
+        } catch (DbException e) {
+            // statistics are not required, ignore them if they are not valid
+            // for the column anymore
+            return;
+        }
+        column.setStatistics(new ColumnStatistics(column.getType().getValueType(), rowCount, nullCount,
+                distinctCount, commonValues, commonCounts, bounds));
+    }
+
+    private Value[] readConstantArray() {
+        Value v = readExpression().optimize(session).getValue(session);
+        if (v.getValueType() != Value.ARRAY) {
+            throw getSyntaxError();
+        }
+        return ((ValueArray) v).getList().clone();
+    }
+
     private void parseCompatibilityIdentityOptions(Column column) {
         SequenceOptions options = new SequenceOptions();
         if (readIf(OPEN_PAREN)) {
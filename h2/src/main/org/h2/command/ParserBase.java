@@ -667,6 +667,14 @@ final int readInt() {
         return i;
     }
 
+    final long readNonNegativeLong() {
+        long v = readLong();
+        if (v < 0) {
+            throw DbException.getInvalidValueException("non-negative long", v);
+        }
+        return v;
+    }
+
     final long readPositiveLong() {
         long v = readLong();
         if (v <= 0) {
@@ -5,7 +5,9 @@
  */
 package org.h2.command.ddl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Random;
 
 import org.h2.command.CommandInterface;
 import org.h2.engine.Constants;
@@ -16,10 +18,12 @@
 import org.h2.result.Row;
 import org.h2.schema.Schema;
 import org.h2.table.Column;
+import org.h2.table.ColumnStatistics;
 import org.h2.table.Table;
 import org.h2.table.TableType;
 import org.h2.value.DataType;
 import org.h2.value.Value;
+import org.h2.value.ValueNull;
 
 /**
  * This class represents the statements
@@ -126,6 +130,68 @@ private void rehash() {
 
     }
 
+    /**
+     * Values of a column for its histogram. If there are too many rows, a
+     * uniform random sample of values is kept.
+     */
+    private static final class HistogramData {
+
+        /**
+         * The maximum number of kept values.
+         */
+        private static final int MAX_VALUES = 100_000;
+
+        private final ArrayList<Value> values = new ArrayList<>();
+
+        private final Random random = new Random(1);
+
+        private long count;
+
+        private long nullCount;
+
+        /**
+         * Whether the column has values, which are too long for statistics.
+         */
+        private boolean invalid;
+
+        void add(Value v) {
+            if (invalid) {
+                return;
+            }
+            if (v == ValueNull.INSTANCE) {
+                nullCount++;
+                return;
+            }
+            if (!ColumnStatistics.isStorable(v)) {
+                invalid = true;
+                values.clear();
+                return;
+            }
+            long c = count++;
+            if (c < MAX_VALUES) {
+                values.add(v);
+            } else {
+                long i = (long) (random.nextDouble() * (c + 1));
+                if (i < MAX_VALUES) {
+                    values.set((int) i, v);
+                }
+            }
+        }
+
+        ColumnStatistics getStatistics(SessionLocal session, int valueType) {
+            if (invalid) {
+                return null;
+            }
+            long nullCount = this.nullCount;
+            int size = values.size();
+            if (count > size) {
+                nullCount = nullCount * size / count;
+            }
+            return ColumnStatistics.collect(session, valueType, size + nullCount, nullCount, values);
+        }
+
+    }
+
     /**
      * The sample size.
      */
@@ -190,11 +256,17 @@ public static void analyzeTable(SessionLocal session, Table table, int sample, b
         Cursor cursor = table.getScanIndex(session).find(session, null, null, false);
         if (cursor.next()) {
             SelectivityData[] array = new SelectivityData[columnCount];
+            HistogramData[] histograms = new HistogramData[columnCount];
+            boolean histogram = session.getDatabase().getSettings().analyzeHistogram;
             for (int i = 0; i < columnCount; i++) {
                 Column col = columns[i];
-                if (!DataType.isLargeObject(col.getType().getValueType())) {
+                int valueType = col.getType().getValueType();
+                if (!DataType.isLargeObject(valueType)) {
                     array[i] = new SelectivityData();
                 }
+                if (histogram && ColumnStatistics.isSupported(valueType)) {
+                    histograms[i] = new HistogramData();
+                }
             }
             long rowNumber = 0;
             do {
@@ -204,6 +276,10 @@ public static void analyzeTable(SessionLocal session, Table table, int sample, b
                     if (selectivity != null) {
                         selectivity.add(row.getValue(i));
                     }
+                    HistogramData data = histograms[i];
+                    if (data != null) {
+                        data.add(row.getValue(i));
+                    }
                 }
                 rowNumber++;
             } while ((sample <= 0 || rowNumber < sample) && cursor.next());
@@ -212,10 +288,14 @@ public static void analyzeTable(SessionLocal session, Table table, int sample, b
                 if (selectivity != null) {
                     columns[i].setSelectivity(selectivity.getSelectivity(rowNumber));
                 }
+                HistogramData data = histograms[i];
+                columns[i].setStatistics(
+                        data != null ? data.getStatistics(session, columns[i].getType().getValueType()) : null);
             }
         } else {
             for (int i = 0; i < columnCount; i++) {
                 columns[i].setSelectivity(0);
+                columns[i].setStatistics(null);
             }
         }
         session.getDatabase().updateMeta(session, table);
@@ -5,7 +5,10 @@
  */
 package org.h2.command.query;
 
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import org.h2.engine.SessionLocal;
 import org.h2.expression.Expression;
@@ -23,6 +26,20 @@ class Optimizer {
     private static final int MAX_BRUTE_FORCE_FILTERS = 7;
     private static final int MAX_BRUTE_FORCE = 2000;
     private static final int MAX_GENETIC = 500;
+
+    /**
+     * The maximum number of tables, for which the dynamic programming
+     * algorithm is used.
+     */
+    private static final int MAX_DYNAMIC_PROGRAMMING_FILTERS = 64;
+
+    /**
+     * The maximum number of plan items the dynamic programming algorithm may
+     * calculate. The remaining tables are added with a greedy algorithm if
+     * this limit is reached.
+     */
+    private static final int MAX_DYNAMIC_PROGRAMMING = 50_000;
+
     private long startNs;
     private BitSet switched;
 
@@ -83,6 +100,8 @@ private void calculateBestPlan(boolean isSelectCommand) {
             startNs = System.nanoTime();
             if (filters.length <= MAX_BRUTE_FORCE_FILTERS) {
                 calculateBruteForceAll(isSelectCommand);
+            } else if (filters.length <= MAX_DYNAMIC_PROGRAMMING_FILTERS) {
+                calculateDynamicProgramming(isSelectCommand);
             } else {
                 calculateBruteForceSome(isSelectCommand);
                 random = new Random(0);
@@ -150,6 +169,145 @@ private void calculateBruteForceSome(boolean isSelectCommand) {
         }
     }
 
+    /**
+     * Find the best join order with dynamic programming. Partial plans are
+     * built for sets of tables of increasing size, and only the cheapest
+     * order is kept for each set. A set is only extended by tables joined to
+     * it by an index condition, unless there are no such tables. The
+     * calculated plan items are counted, and if the next size would exceed
+     * the limit, the cheapest partial plan is completed with a greedy
+     * algorithm, so the result does not depend on timing.
+     */
+    private void calculateDynamicProgramming(boolean isSelectCommand) {
+        int n = filters.length;
+        long[] joined = getJoinedFilters();
+        LinkedHashMap<Long, PartialPlan> plans = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            TableFilter[] list = { filters[i] };
+            plans.put(1L << i, new PartialPlan(list, calculatePartialCost(list, isSelectCommand)));
+        }
+        long calculated = n;
+        for (int size = 1; size < n; size++) {
+            long estimated = (long) plans.size() * (n - size) * (size + 1);
+            if (calculated + estimated > MAX_DYNAMIC_PROGRAMMING) {
+                break;
+            }
+            LinkedHashMap<Long, PartialPlan> next = new LinkedHashMap<>();
+            for (Map.Entry<Long, PartialPlan> entry : plans.entrySet()) {
+                long set = entry.getKey();
+                PartialPlan plan = entry.getValue();
+                long candidates = getCandidates(set, joined);
+                for (int i = 0; i < n; i++) {
+                    if ((candidates & 1L << i) != 0) {
+                        PartialPlan p = plan.add(filters[i], isSelectCommand);
+                        calculated += size + 1;
+                        PartialPlan old = next.putIfAbsent(set | 1L << i, p);
+                        if (old != null && p.cost < old.cost) {
+                            next.put(set | 1L << i, p);
+                        }
+                    }
+                }
+            }
+            plans = next;
+        }
+        long bestSet = 0;
+        PartialPlan best = null;
+        for (Map.Entry<Long, PartialPlan> entry : plans.entrySet()) {
+            PartialPlan p = entry.getValue();
+            if (best == null || p.cost < best.cost) {
+                bestSet = entry.getKey();
+                best = p;
+            }
+        }
+        while (best.filters.length < n) {
+            long candidates = getCandidates(bestSet, joined);
+            PartialPlan bestNext = null;
+            int bestIndex = -1;
+            for (int i = 0; i < n; i++) {
+                if ((candidates & 1L << i) != 0) {
+                    PartialPlan p = best.add(filters[i], isSelectCommand);
+                    if (bestNext == null || p.cost < bestNext.cost) {
+                        bestNext = p;
+                        bestIndex = i;
+                    }
+                }
+            }
+            best = bestNext;
+            bestSet |= 1L << bestIndex;
+        }
+        testPlan(best.filters, isSelectCommand);
+    }
+
+    /**
+     * Get the tables joined with each table by index conditions.
+     *
+     * @return the bit sets of joined tables
+     */
+    private long[] getJoinedFilters() {
+        int n = filters.length;
+        long[] joined = new long[n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                if (i != j && isJoined(filters[i], filters[j])) {
+                    joined[i] |= 1L << j;
+                    joined[j] |= 1L << i;
+                }
+            }
+        }
+        return joined;
+    }
+
+    private static boolean isJoined(TableFilter filter, TableFilter other) {
+        boolean[] result = new boolean[1];
+        filter.visit(f1 -> other.visit(f2 -> {
+            if (f1.hasIndexConditionsOn(f2)) {
+                result[0] = true;
+            }
+        }));
+        return result[0];
+    }
+
+    private long getCandidates(long set, long[] joined) {
+        int n = filters.length;
+        long all = n == Long.SIZE ? -1L : (1L << n) - 1;
+        long candidates = 0L;
+        for (int i = 0; i < n; i++) {
+            if ((set & 1L << i) != 0) {
+                candidates |= joined[i];
+            }
+        }
+        candidates &= ~set;
+        // if there are no joined tables, a cross join is needed
+        return candidates != 0L ? candidates : all & ~set;
+    }
+
+    private double calculatePartialCost(TableFilter[] list, boolean isSelectCommand) {
+        return new Plan(list, list.length, condition).calculateCost(session, allColumnsSet, isSelectCommand);
+    }
+
+    /**
+     * The cheapest known order of a set of tables.
+     */
+    private final class PartialPlan {
+
+        final TableFilter[] filters;
+
+        final double cost;
+
+        PartialPlan(TableFilter[] filters, double cost) {
+            this.filters = filters;
+            this.cost = cost;
+        }
+
+        PartialPlan add(TableFilter filter, boolean isSelectCommand) {
+            int length = filters.length;
+            TableFilter[] list = Arrays.copyOf(filters, length + 1);
+            list[length] = filter;
+            return new PartialPlan(list, calculatePartialCost(list, isSelectCommand));
+        }
+
+    }
+
     private void calculateGenetic(boolean isSelectCommand) {
         TableFilter[] best = new TableFilter[filters.length];
         TableFilter[] list = new TableFilter[filters.length];
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.command.query;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.RecursiveTask;
+
+import org.h2.engine.SessionLocal;
+import org.h2.expression.BinaryOperation;
+import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.Parameter;
+import org.h2.expression.SearchedCase;
+import org.h2.expression.SimpleCase;
+import org.h2.expression.UnaryOperation;
+import org.h2.expression.ValueExpression;
+import org.h2.expression.aggregate.Aggregate;
+import org.h2.expression.condition.BetweenPredicate;
+import org.h2.expression.condition.Comparison;
+import org.h2.expression.condition.ConditionAndOr;
+import org.h2.expression.condition.ConditionAndOrN;
+import org.h2.expression.condition.ConditionInConstantSet;
+import org.h2.expression.condition.ConditionInList;
+import org.h2.expression.condition.ConditionNot;
+import org.h2.expression.condition.NullPredicate;
+import org.h2.expression.function.CastSpecification;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.result.Row;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueRow;
+
+/**
+ * Gathers the groups of a grouped query over a single table with multiple
+ * threads. The rows of the table are split by its primary index into key
+ * ranges of similar size, which are read by the workers of a fork/join pool.
+ * Each worker computes partial results of aggregates for its own rows, and
+ * partial results are merged when the workers are joined.
+ * <p>
+ * Only queries, which read the whole table and where the condition, the group
+ * expressions, and arguments of aggregates contain only simple operations,
+ * which can be evaluated concurrently, are supported. All aggregates must be
+ * mergeable.
+ * </p>
+ */
+final class ParallelScan {
+
+    /**
+     * The number of key ranges per thread, more ranges allow to balance the
+     * load better when some ranges contain more rows than others.
+     */
+    private static final int PARTITIONS_PER_THREAD = 4;
+
+    private final TableFilter filter;
+
+    private final Expression condition;
+
+    /**
+     * The group expressions, or null if the query has no GROUP BY clause.
+     */
+    private final Expression[] groupExpressions;
+
+    private final Aggregate[] aggregates;
+
+    private final int threads;
+
+    private ParallelScan(TableFilter filter, Expression condition, Expression[] groupExpressions,
+            Aggregate[] aggregates, int threads) {
+        this.filter = filter;
+        this.condition = condition;
+        this.groupExpressions = groupExpressions;
+        this.aggregates = aggregates;
+        this.threads = threads;
+    }
+
+    /**
+     * Check if the groups of a query can be gathered in parallel.
+     *
+     * @param session the session
+     * @param filter the only table filter of the query
+     * @param condition the condition, or null
+     * @param expressions the expressions of the query
+     * @param groupIndex the indexes of group expressions, or null
+     * @param groupByExpression whether an expression is a group expression, or
+     *            null
+     * @param groupByCopies the indexes of group expressions copied by other
+     *            expressions, or null
+     * @return the parallel scan, or null if it can't be used
+     */
+    static ParallelScan get(SessionLocal session, TableFilter filter, Expression condition,
+            ArrayList<Expression> expressions, int[] groupIndex, boolean[] groupByExpression, int[] groupByCopies) {
+        int threads = session.getDatabase().getSettings().parallelScanThreads;
+        if (threads <= 1 || filter.getJoin() != null || filter.getNestedJoin() != null
+                || filter.getFilterCondition() != null || filter.getJoinCondition() != null
+                || filter.hasIndexConditions()) {
+            return null;
+        }
+        Index index = filter.getIndex();
+        if (index == null || !index.getIndexType().isScan()) {
+            return null;
+        }
+        if (condition != null && !isSafe(condition, filter, true, null)) {
+            return null;
+        }
+        Expression[] groupExpressions = null;
+        if (groupIndex != null) {
+            int length = groupIndex.length;
+            groupExpressions = new Expression[length];
+            for (int i = 0; i < length; i++) {
+                Expression e = expressions.get(groupIndex[i]);
+                if (!isSafe(e, filter, true, null)) {
+                    return null;
+                }
+                groupExpressions[i] = e;
+            }
+        }
+        ArrayList<Aggregate> aggregates = new ArrayList<>();
+        for (int i = 0, l = expressions.size(); i < l; i++) {
+            if ((groupByExpression == null || !groupByExpression[i])
+                    && (groupByCopies == null || groupByCopies[i] < 0)
+                    && !isSafe(expressions.get(i), filter, false, aggregates)) {
+                return null;
+            }
+        }
+        return new ParallelScan(filter, condition, groupExpressions, aggregates.toArray(new Aggregate[0]), threads);
+    }
+
+    /**
+     * Check if an expression can be evaluated by the workers.
+     *
+     * @param e the expression
+     * @param filter the table filter
+     * @param columns whether columns may be referenced, if false, they may only
+     *            be referenced by arguments of aggregates
+     * @param aggregates the list to add aggregates to, or null if aggregates
+     *            are not allowed
+     * @return whether the expression is supported
+     */
+    private static boolean isSafe(Expression e, TableFilter filter, boolean columns,
+            ArrayList<Aggregate> aggregates) {
+        e = e.getNonAliasExpression();
+        if (e instanceof ExpressionColumn) {
+            return columns && ((ExpressionColumn) e).getTableFilter() == filter;
+        } else if (e instanceof Aggregate) {
+            Aggregate aggregate = (Aggregate) e;
+            if (aggregates == null || !aggregate.isMergeable()
+                    || !isSafeSubexpressions(e, filter, true, null)) {
+                return false;
+            }
+            for (Aggregate a : aggregates) {
+                if (a == aggregate) {
+                    return true;
+                }
+            }
+            aggregates.add(aggregate);
+            return true;
+        } else if (e instanceof ValueExpression || e instanceof Parameter) {
+            return true;
+        } else if (e instanceof BinaryOperation || e instanceof UnaryOperation || e instanceof SearchedCase
+                || e instanceof SimpleCase || e instanceof CastSpecification || e instanceof Comparison
+                || e instanceof ConditionAndOr || e instanceof ConditionAndOrN || e instanceof ConditionNot
+                || e instanceof NullPredicate || e instanceof BetweenPredicate || e instanceof ConditionInList
+                || e instanceof ConditionInConstantSet) {
+            return isSafeSubexpressions(e, filter, columns, aggregates);
+        }
+        return false;
+    }
+
+    private static boolean isSafeSubexpressions(Expression e, TableFilter filter, boolean columns,
+            ArrayList<Aggregate> aggregates) {
+        for (int i = 0, l = e.getSubexpressionCount(); i < l; i++) {
+            if (!isSafe(e.getSubexpression(i), filter, columns, aggregates)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read all rows of the table and gather the groups. The method
+     * {@link SelectGroups#done()} is invoked at the end.
+     *
+     * @param session the session
+     * @param groupData the group data to fill
+     * @return false if the table is too small to be split, nothing is gathered
+     *         in such case
+     */
+    boolean gather(SessionLocal session, SelectGroups groupData) {
+        Cursor[] cursors = filter.getIndex().findPartitions(session, threads * PARTITIONS_PER_THREAD);
+        if (cursors == null) {
+            return false;
+        }
+        ThreadLocal<Row> rows = new ThreadLocal<>();
+        TreeMap<ValueRow, Object[]> groups;
+        filter.setParallelRows(rows);
+        try {
+            groups = session.getDatabase().getParallelScanPool()
+                    .invoke(new ScanTask(session, rows, cursors, 0, cursors.length));
+        } finally {
+            filter.setParallelRows(null);
+        }
+        for (Map.Entry<ValueRow, Object[]> entry : groups.entrySet()) {
+            groupData.nextSource(entry.getKey());
+            Object[] data = entry.getValue();
+            for (int i = 0; i < aggregates.length; i++) {
+                groupData.setCurrentGroupExprData(aggregates[i], data[i]);
+            }
+        }
+        groupData.done();
+        return true;
+    }
+
+    /**
+     * Computes partial results for a range of cursors, which is split in half
+     * until only one cursor is left.
+     */
+    private final class ScanTask extends RecursiveTask<TreeMap<ValueRow, Object[]>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient SessionLocal session;
+
+        private final transient ThreadLocal<Row> rows;
+
+        private final transient Cursor[] cursors;
+
+        private final int from, to;
+
+        ScanTask(SessionLocal session, ThreadLocal<Row> rows, Cursor[] cursors, int from, int to) {
+            this.session = session;
+            this.rows = rows;
+            this.cursors = cursors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TreeMap<ValueRow, Object[]> compute() {
+            if (to - from == 1) {
+                return scan(cursors[from]);
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask first = new ScanTask(session, rows, cursors, from, middle);
+            first.fork();
+            TreeMap<ValueRow, Object[]> second = new ScanTask(session, rows, cursors, middle, to).compute();
+            return merge(first.join(), second);
+        }
+
+        private TreeMap<ValueRow, Object[]> scan(Cursor cursor) {
+            TreeMap<ValueRow, Object[]> groups = new TreeMap<>(session);
+            try {
+                for (long count = 0; cursor.next(); count++) {
+                    if ((count & 4095) == 0) {
+                        session.checkCanceled();
+                    }
+                    rows.set(cursor.get());
+                    if (condition != null && !condition.getBooleanValue(session)) {
+                        continue;
+                    }
+                    ValueRow key;
+                    if (groupExpressions == null) {
+                        key = ValueRow.EMPTY;
+                    } else {
+                        int length = groupExpressions.length;
+                        Value[] values = new Value[length];
+                        for (int i = 0; i < length; i++) {
+                            values[i] = groupExpressions[i].getValue(session);
+                        }
+                        key = ValueRow.get(values);
+                    }
+                    Object[] data = groups.get(key);
+                    if (data == null) {
+                        data = new Object[aggregates.length];
+                        for (int i = 0; i < aggregates.length; i++) {
+                            data[i] = aggregates[i].createPartialData();
+                        }
+                        groups.put(key, data);
+                    }
+                    for (int i = 0; i < aggregates.length; i++) {
+                        aggregates[i].updatePartialData(session, data[i]);
+                    }
+                }
+            } finally {
+                rows.remove();
+            }
+            return groups;
+        }
+
+        /**
+         * Merge the partial results of the following key range into the
+         * partial results of the preceding one.
+         */
+        private TreeMap<ValueRow, Object[]> merge(TreeMap<ValueRow, Object[]> groups,
+                TreeMap<ValueRow, Object[]> next) {
+            for (Map.Entry<ValueRow, Object[]> entry : next.entrySet()) {
+                Object[] other = entry.getValue();
+                Object[] data = groups.putIfAbsent(entry.getKey(), other);
+                if (data != null) {
+                    for (int i = 0; i < aggregates.length; i++) {
+                        aggregates[i].mergePartialData(session, data[i], other[i]);
+                    }
+                }
+            }
+            return groups;
+        }
+
+    }
+
+}
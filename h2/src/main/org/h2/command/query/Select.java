@@ -151,6 +151,11 @@ private enum QuickOffset { NO, YES, PARTIAL }
     boolean isGroupQuery;
     private boolean isGroupSortedQuery;
     private boolean isWindowQuery;
+
+    /**
+     * The parallel scan used to gather groups, or null.
+     */
+    private ParallelScan parallelScan;
     private ForUpdate forUpdate;
     private double cost;
     private boolean isQuickAggregateQuery, isDistinctQuery;
@@ -474,7 +479,9 @@ private void queryGroupWindow(int columnCount, LocalResult result, long offset,
     private void queryGroup(int columnCount, LocalResult result, long offset, boolean quickOffset) {
         initGroupData(columnCount);
         try {
-            gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP);
+            if (parallelScan == null || !parallelScan.gather(session, groupData)) {
+                gatherGroup(columnCount, DataAnalysisOperation.STAGE_GROUP);
+            }
             processGroupResult(columnCount, result, offset, quickOffset, true);
         } finally {
             groupData.reset();
@@ -850,30 +857,36 @@ protected ResultInterface queryWithoutCache(long maxRows, ResultTarget target) {
         ResultTarget to = result != null ? result : target;
         lazy &= to == null;
         LazyResult lazyResult = null;
-        if (fetch != 0) {
-            // Cannot apply limit now if percent is specified
-            long limit = fetchPercent ? -1 : fetch;
-            if (isQuickAggregateQuery) {
-                queryQuick(columnCount, to, quickOffset == QuickOffset.YES && offset > 0);
-            } else if (isWindowQuery) {
-                if (isGroupQuery) {
-                    queryGroupWindow(columnCount, result, offset, quickOffset == QuickOffset.YES);
+        try {
+            if (fetch != 0) {
+                // Cannot apply limit now if percent is specified
+                long limit = fetchPercent ? -1 : fetch;
+                if (isQuickAggregateQuery) {
+                    queryQuick(columnCount, to, quickOffset == QuickOffset.YES && offset > 0);
+                } else if (isWindowQuery) {
+                    if (isGroupQuery) {
+                        queryGroupWindow(columnCount, result, offset, quickOffset == QuickOffset.YES);
+                    } else {
+                        queryWindow(columnCount, result, offset, quickOffset == QuickOffset.YES);
+                    }
+                } else if (isGroupQuery) {
+                    if (isGroupSortedQuery) {
+                        lazyResult = queryGroupSorted(columnCount, to, offset, quickOffset == QuickOffset.YES);
+                    } else {
+                        queryGroup(columnCount, result, offset, quickOffset == QuickOffset.YES);
+                    }
+                } else if (isDistinctQuery) {
+                    queryDistinct(to, offset, limit, withTies, quickOffset == QuickOffset.YES);
                 } else {
-                    queryWindow(columnCount, result, offset, quickOffset == QuickOffset.YES);
+                    lazyResult = queryFlat(columnCount, to, offset, limit, withTies, quickOffset);
                 }
-            } else if (isGroupQuery) {
-                if (isGroupSortedQuery) {
-                    lazyResult = queryGroupSorted(columnCount, to, offset, quickOffset == QuickOffset.YES);
-                } else {
-                    queryGroup(columnCount, result, offset, quickOffset == QuickOffset.YES);
+                if (quickOffset == QuickOffset.YES) {
+                    offset = 0;
                 }
-            } else if (isDistinctQuery) {
-                queryDistinct(to, offset, limit, withTies, quickOffset == QuickOffset.YES);
-            } else {
-                lazyResult = queryFlat(columnCount, to, offset, limit, withTies, quickOffset);
             }
-            if (quickOffset == QuickOffset.YES) {
-                offset = 0;
+        } finally {
+            if (lazyResult == null) {
+                topTableFilter.endQuery();
             }
         }
         assert lazy == (lazyResult != null) : lazy;
@@ -1303,6 +1316,11 @@ public void preparePlan() {
                 }
             }
         }
+        if (isGroupQuery && !isGroupSortedQuery && !isQuickAggregateQuery && !isWindowQuery && forUpdate == null
+                && topFilters.size() == 1) {
+            parallelScan = ParallelScan.get(session, topTableFilter, condition, expressions, groupIndex,
+                    groupByExpression, groupByCopies);
+        }
         isPrepared = true;
     }
 
@@ -1493,6 +1511,8 @@ public StringBuilder getPlanSQL(StringBuilder builder, int sqlFlags) {
             if (isGroupQuery) {
                 if (isGroupSortedQuery) {
                     builder.append("\n/* group sorted */");
+                } else if (parallelScan != null) {
+                    builder.append("\n/* parallel scan */");
                 }
             }
             // builder.append("\n/* cost: " + cost + " */");
@@ -1846,6 +1866,12 @@ public void reset() {
             setCurrentRowNumber(0);
             rowNumber = 0;
         }
+
+        @Override
+        public void close() {
+            super.close();
+            topTableFilter.endQuery();
+        }
     }
 
     /**
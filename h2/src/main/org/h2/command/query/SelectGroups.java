@@ -17,6 +17,7 @@
 import org.h2.expression.Expression;
 import org.h2.expression.analysis.DataAnalysisOperation;
 import org.h2.expression.analysis.PartitionData;
+import org.h2.message.DbException;
 import org.h2.value.Value;
 import org.h2.value.ValueRow;
 
@@ -80,7 +81,7 @@ public void reset() {
         @Override
         public void nextSource() {
             if (groupIndex == null) {
-                currentGroupsKey = ValueRow.EMPTY;
+                nextSource(ValueRow.EMPTY);
             } else {
                 Value[] keyValues = new Value[groupIndex.length];
                 // update group
@@ -89,8 +90,13 @@ public void nextSource() {
                     Expression expr = expressions.get(idx);
                     keyValues[i] = expr.getValue(session);
                 }
-                currentGroupsKey = ValueRow.get(keyValues);
+                nextSource(ValueRow.get(keyValues));
             }
+        }
+
+        @Override
+        public void nextSource(ValueRow key) {
+            currentGroupsKey = key;
             Object[] values = groupByData.get(currentGroupsKey);
             if (values == null) {
                 values = createRow();
@@ -385,6 +391,16 @@ public void reset() {
      */
     public abstract void nextSource();
 
+    /**
+     * Invoked instead of {@link #nextSource()} when the group key was already
+     * evaluated. Only grouped queries support this method.
+     *
+     * @param key the group key
+     */
+    public void nextSource(ValueRow key) {
+        throw DbException.getInternalError();
+    }
+
     /**
      * Invoked after all source rows are evaluated.
      */
@@ -156,12 +156,49 @@ private static int hash(int h) {
 
     @Override
     public int compress(byte[] in, int inPos, int inLen, byte[] out, int outPos) {
-        int offset = inPos;
-        inLen += inPos;
         if (cachedHashTable == null) {
             cachedHashTable = new int[HASH_SIZE];
         }
-        int[] hashTab = cachedHashTable;
+        return compress(in, inPos + 1, inPos, inPos + inLen, cachedHashTable, out, outPos);
+    }
+
+    /**
+     * Create a hash table for the given data, as if it was compressed. Such a
+     * hash table allows subsequent data to use back-references to this data,
+     * which is used to implement a preset dictionary.
+     *
+     * @param data the data
+     * @return the hash table of size HASH_SIZE
+     */
+    static int[] createHashTable(byte[] data) {
+        int[] hashTab = new int[HASH_SIZE];
+        int len = data.length;
+        if (len >= 3) {
+            int future = first(data, 0);
+            for (int pos = 0; pos < len - 2; pos++) {
+                future = (future << 8) + (data[pos + 2] & 255);
+                hashTab[hash(future)] = pos;
+            }
+        }
+        return hashTab;
+    }
+
+    /**
+     * Compress a number of bytes. Back-references may point to any data in
+     * the input array starting from the given minimum position, including
+     * data that precedes the bytes to compress (for example a preset
+     * dictionary).
+     *
+     * @param in the input data
+     * @param minRef the smallest position a back-reference may point to
+     * @param inPos the offset at the input array
+     * @param inLen the end position of the data to compress (exclusive)
+     * @param hashTab the hash table of size HASH_SIZE
+     * @param out the output area
+     * @param outPos the offset at the output array
+     * @return the end position
+     */
+    static int compress(byte[] in, int minRef, int inPos, int inLen, int[] hashTab, byte[] out, int outPos) {
         int literals = 0;
         outPos++;
         int future = first(in, inPos);
@@ -179,7 +216,7 @@ public int compress(byte[] in, int inPos, int inLen, byte[] out, int outPos) {
             //       && (((in[ref] & 255) << 8) | (in[ref + 1] & 255)) ==
             //           ((future >> 8) & 0xffff)) {
             if (ref < inPos
-                        && ref > offset
+                        && ref >= minRef
                         && (off = inPos - ref - 1) < MAX_OFF
                         && in[ref + 2] == p2
                         && in[ref + 1] == (byte) (future >> 8)
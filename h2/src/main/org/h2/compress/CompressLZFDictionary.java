@@ -0,0 +1,236 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.compress;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * The LZF compression algorithm with a preset dictionary. The compressed data
+ * may contain back-references to the dictionary, as if it was placed right
+ * before the data. This improves the compression ratio of small blocks of
+ * data, such as pages, which are similar to each other, while the data is
+ * expanded as fast as with the regular LZF algorithm. The compressed format is
+ * the same as the LZF format, but the data can only be expanded with the same
+ * dictionary.
+ * <p>
+ * As back-references are limited to 8 KB, only a dictionary of a few KB in
+ * size is useful. The most common sequences should be at the end of the
+ * dictionary. Such a dictionary can be created by the
+ * {@link #train(List, int)} method.
+ * <p>
+ * Instances of this class can be used by multiple threads concurrently. Each
+ * thread keeps its own hash table and buffer, which are reused for all the
+ * data it compresses.
+ */
+public final class CompressLZFDictionary implements Compressor {
+
+    /**
+     * The default size of a trained dictionary.
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 4 * 1024;
+
+    /**
+     * The length of the sequences used to find repeated data when training.
+     */
+    private static final int GRAM_LENGTH = 8;
+
+    /**
+     * The length of a dictionary segment.
+     */
+    private static final int SEGMENT_LENGTH = 32;
+
+    /**
+     * The minimum size of the data part of a buffer.
+     */
+    private static final int MIN_BUFFER_SIZE = 16 * 1024;
+
+    private final byte[] dictionary;
+
+    /**
+     * The hash table that contains positions of the dictionary data.
+     */
+    private final int[] hashTable;
+
+    /**
+     * The hash table and buffer of the current thread. The buffer starts with
+     * the dictionary, which is followed by the data to compress.
+     */
+    private final ThreadLocal<State> state = ThreadLocal.withInitial(State::new);
+
+    /**
+     * Create a new compressor.
+     *
+     * @param dictionary the dictionary
+     */
+    public CompressLZFDictionary(byte[] dictionary) {
+        this.dictionary = dictionary.clone();
+        this.hashTable = CompressLZF.createHashTable(this.dictionary);
+    }
+
+    /**
+     * Get the dictionary.
+     *
+     * @return the dictionary (a copy)
+     */
+    public byte[] getDictionary() {
+        return dictionary.clone();
+    }
+
+    @Override
+    public int getAlgorithm() {
+        return Compressor.LZF_DICTIONARY;
+    }
+
+    @Override
+    public void setOptions(String options) {
+        // nothing to do
+    }
+
+    @Override
+    public int compress(byte[] in, int inPos, int inLen, byte[] out, int outPos) {
+        int dictLen = dictionary.length;
+        State s = state.get();
+        byte[] buff = s.buffer;
+        if (buff == null || buff.length < dictLen + inLen) {
+            buff = new byte[dictLen + Math.max(inLen, MIN_BUFFER_SIZE)];
+            System.arraycopy(dictionary, 0, buff, 0, dictLen);
+            s.buffer = buff;
+        }
+        System.arraycopy(in, inPos, buff, dictLen, inLen);
+        System.arraycopy(hashTable, 0, s.hashTable, 0, hashTable.length);
+        return CompressLZF.compress(buff, 0, dictLen, dictLen + inLen, s.hashTable, out, outPos);
+    }
+
+    @Override
+    public void expand(byte[] in, int inPos, int inLen, byte[] out, int outPos, int outLen) {
+        if (inPos < 0 || outPos < 0 || outLen < 0) {
+            throw new IllegalArgumentException();
+        }
+        byte[] dict = dictionary;
+        int start = outPos;
+        int end = outPos + outLen;
+        // position of the dictionary, as if it was placed right before the output
+        int dictStart = start - dict.length;
+        while (outPos < end) {
+            int ctrl = in[inPos++] & 255;
+            if (ctrl < 32) {
+                // literal run of length = ctrl + 1
+                ctrl++;
+                System.arraycopy(in, inPos, out, outPos, ctrl);
+                outPos += ctrl;
+                inPos += ctrl;
+            } else {
+                // back reference, see CompressLZF.expand
+                int len = ctrl >> 5;
+                if (len == 7) {
+                    len += in[inPos++] & 255;
+                }
+                len += 2;
+                int ref = outPos - ((ctrl & 0x1f) << 8) - 1 - (in[inPos++] & 255);
+                if (outPos + len > end || ref < dictStart) {
+                    throw new ArrayIndexOutOfBoundsException();
+                }
+                for (int i = 0; i < len; i++, ref++) {
+                    out[outPos++] = ref < start ? dict[ref - dictStart] : out[ref];
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a dictionary from the given samples. The dictionary consists of
+     * segments of the samples, which contain the most frequent sequences of
+     * bytes. The most frequent ones are placed at the end of the dictionary,
+     * so that back-references to them are short.
+     *
+     * @param samples the samples
+     * @param maxSize the maximum size of the dictionary
+     * @return the dictionary, or an empty array if the samples contain no
+     *         repeated data
+     */
+    public static byte[] train(List<byte[]> samples, int maxSize) {
+        HashMap<Long, int[]> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            for (int pos = 0; pos <= sample.length - GRAM_LENGTH; pos++) {
+                counts.computeIfAbsent(getGram(sample, pos), k -> new int[1])[0]++;
+            }
+        }
+        // score segments by the number of occurrences of their sequences
+        // elsewhere
+        ArrayList<long[]> segments = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            byte[] sample = samples.get(i);
+            for (int pos = 0; pos <= sample.length - SEGMENT_LENGTH; pos += GRAM_LENGTH) {
+                long score = 0;
+                for (int p = pos; p <= pos + SEGMENT_LENGTH - GRAM_LENGTH; p += GRAM_LENGTH / 2) {
+                    score += counts.get(getGram(sample, p))[0] - 1;
+                }
+                if (score > 0) {
+                    segments.add(new long[] { score, i, pos });
+                }
+            }
+        }
+        segments.sort((a, b) -> Long.compare(b[0], a[0]));
+        byte[] dict = new byte[maxSize];
+        int dictPos = maxSize;
+        HashSet<Long> included = new HashSet<>();
+        for (long[] segment : segments) {
+            if (dictPos < SEGMENT_LENGTH) {
+                break;
+            }
+            byte[] sample = samples.get((int) segment[1]);
+            int pos = (int) segment[2];
+            // skip segments which mostly repeat the data that is already included
+            int known = 0;
+            for (int p = pos; p <= pos + SEGMENT_LENGTH - GRAM_LENGTH; p += GRAM_LENGTH) {
+                if (included.contains(getGram(sample, p))) {
+                    known++;
+                }
+            }
+            if (known * GRAM_LENGTH * 2 > SEGMENT_LENGTH) {
+                continue;
+            }
+            for (int p = pos; p <= pos + SEGMENT_LENGTH - GRAM_LENGTH; p += GRAM_LENGTH) {
+                included.add(getGram(sample, p));
+            }
+            dictPos -= SEGMENT_LENGTH;
+            System.arraycopy(sample, pos, dict, dictPos, SEGMENT_LENGTH);
+        }
+        byte[] result = new byte[maxSize - dictPos];
+        System.arraycopy(dict, dictPos, result, 0, result.length);
+        return result;
+    }
+
+    private static long getGram(byte[] data, int pos) {
+        long x = 0;
+        for (int i = 0; i < GRAM_LENGTH; i++) {
+            x = (x << 8) | (data[pos + i] & 255);
+        }
+        return x;
+    }
+
+    /**
+     * The state of a thread that compresses data.
+     */
+    private final class State {
+
+        /**
+         * The hash table, which is reset to the one of the dictionary before
+         * each use.
+         */
+        final int[] hashTable = new int[CompressLZFDictionary.this.hashTable.length];
+
+        /**
+         * The dictionary, followed by room for the data.
+         */
+        byte[] buffer;
+
+    }
+
+}
@@ -16,6 +16,8 @@
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -198,6 +200,7 @@ public final class Database implements DataHandler, CastDataProvider {
     private Server server;
     private HashMap<TableLinkConnection, TableLinkConnection> linkConnections;
     private final TempFileDeleter tempFileDeleter = TempFileDeleter.getInstance();
+    private ForkJoinPool parallelScanPool;
     private int compactMode;
     private SourceCompiler compiler;
     private final LobStorageInterface lobStorage;
@@ -537,6 +540,7 @@ public void populateInfo(BiConsumer<String, String> consumer) {
             consumer.accept(entry.getKey(), entry.getValue());
         }
         getStore().getMvStore().populateInfo(consumer);
+        getStore().getTransactionStore().populateInfo(consumer);
     }
 
     /**
@@ -1264,6 +1268,12 @@ private void closeImpl(boolean fromShutdownHook) {
                     systemSession.close();
                     systemSession = null;
                 }
+                synchronized (this) {
+                    if (parallelScanPool != null) {
+                        parallelScanPool.shutdownNow();
+                        parallelScanPool = null;
+                    }
+                }
                 tempFileDeleter.deleteAll();
                 closeOpenFilesAndUnlock();
             } catch (DbException | MVStoreException e) {
@@ -2231,6 +2241,23 @@ public TempFileDeleter getTempFileDeleter() {
         return tempFileDeleter;
     }
 
+    /**
+     * Get the pool of threads, which is used for parallel scans of tables. The
+     * pool is created on the first call.
+     *
+     * @return the pool
+     */
+    public synchronized ForkJoinPool getParallelScanPool() {
+        if (parallelScanPool == null) {
+            parallelScanPool = new ForkJoinPool(dbSettings.parallelScanThreads, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("H2-parallel-scan");
+                return thread;
+            }, null, false);
+        }
+        return parallelScanPool;
+    }
+
     /**
      * Get the first user defined table, excluding the LOB_BLOCKS table that the
      * Recover tool creates.
@@ -46,6 +46,14 @@ public class DbSettings extends SettingsBase {
      */
     public final int analyzeAuto = get("ANALYZE_AUTO", 2000);
 
+    /**
+     * Database setting <code>ANALYZE_HISTOGRAM</code> (default: false).
+     * Whether ANALYZE should collect histograms and lists of most common
+     * values of columns. They are used to estimate the number of rows
+     * returned by equality and range conditions in non-uniform data.
+     */
+    public final boolean analyzeHistogram = get("ANALYZE_HISTOGRAM", false);
+
     /**
      * Database setting <code>ANALYZE_SAMPLE</code> (default: 10000).
      * The default sample size when analyzing a table.
@@ -65,6 +73,14 @@ public class DbSettings extends SettingsBase {
      */
     public final int autoCompactFillRate = get("AUTO_COMPACT_FILL_RATE", 90);
 
+    /**
+     * Database setting <code>AUTO_COMPACT_RATE</code>
+     * (default: 0).
+     * The maximum rate of background compaction in KB per second, 0 means
+     * no limit. This setting only affects MVStore engine.
+     */
+    public final int autoCompactRate = get("AUTO_COMPACT_RATE", 0);
+
     /**
      * Database setting <code>DATABASE_TO_LOWER</code> (default: false).
      * When set to true unquoted identifiers and short name of database are
@@ -88,6 +104,17 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean caseInsensitiveIdentifiers = get("CASE_INSENSITIVE_IDENTIFIERS", false);
 
+    /**
+     * Database setting <code>COLUMNAR_ROW_PAGES</code>
+     * (default: false).
+     * Whether leaf pages of tables store the committed rows column by column,
+     * with delta encoded integers, dictionary encoded strings, and bitmaps of
+     * NULL values. Pages in both layouts can be read with any value of this
+     * setting. Once the setting is used, older versions of H2 can not open the
+     * database file.
+     */
+    public final boolean columnarRowPages = get("COLUMNAR_ROW_PAGES", false);
+
     /**
      * Database setting <code>DEFAULT_CONNECTION</code> (default: false).
      * Whether Java functions can use
@@ -105,6 +132,15 @@ public class DbSettings extends SettingsBase {
      */
     public final String defaultEscape = get("DEFAULT_ESCAPE", "\\");
 
+    /**
+     * Database setting <code>DEFERRED_COMMIT_THRESHOLD</code>
+     * (default: 0).
+     * The minimal number of changed rows of a transaction, for which the
+     * commit only marks the transaction as committed and the remaining work is
+     * done in background. 0 disables deferred commits.
+     */
+    public final int deferredCommitThreshold = get("DEFERRED_COMMIT_THRESHOLD", 0);
+
     /**
      * Database setting <code>DEFRAG_ALWAYS</code> (default: false)
      * Each time the database is closed normally, it is fully defragmented (the
@@ -129,6 +165,14 @@ public class DbSettings extends SettingsBase {
     public final int estimatedFunctionTableRows = get(
             "ESTIMATED_FUNCTION_TABLE_ROWS", 1000);
 
+    /**
+     * Database setting <code>HASH_JOIN</code> (default: false).
+     * Whether the optimizer may join a table without a suitable index by
+     * building a hash table on its equality join columns. Hash tables that
+     * contain more than MAX_MEMORY_ROWS rows are stored in a temporary file.
+     */
+    public final boolean hashJoin = get("HASH_JOIN", false);
+
     /**
      * Database setting <code>LOB_TIMEOUT</code> (default: 300000,
      * which means 5 minutes).
@@ -152,6 +196,15 @@ public class DbSettings extends SettingsBase {
      */
     public final int maxQueryTimeout = get("MAX_QUERY_TIMEOUT", 0);
 
+    /**
+     * Database setting <code>MERGE_JOIN</code> (default: false).
+     * Whether a table, which is joined by equality of the first column of its
+     * index with a column of a preceding table, read in the order of that
+     * column, should be read with one forward moving index cursor instead of
+     * a separate index search for each row.
+     */
+    public final boolean mergeJoin = get("MERGE_JOIN", false);
+
     /**
      * Database setting <code>OPTIMIZE_DISTINCT</code> (default: true).
      * Improve the performance of simple DISTINCT queries if an index is
@@ -216,6 +269,15 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean optimizeSimpleSingleRowSubqueries = get("OPTIMIZE_SIMPLE_SINGLE_ROW_SUBQUERIES", true);
 
+    /**
+     * Database setting <code>PARALLEL_SCAN_THREADS</code> (default: 1).
+     * The number of threads used to read a table for aggregate queries.
+     * Values larger than 1 allow grouped queries over a single large table,
+     * which is read completely, to scan ranges of the table concurrently and
+     * merge the partial results of their aggregates.
+     */
+    public final int parallelScanThreads = get("PARALLEL_SCAN_THREADS", 1);
+
     /**
      * Database setting <code>QUERY_CACHE_SIZE</code> (default: 8).
      * The size of the query cache, in number of cached statements. Each session
@@ -253,6 +315,14 @@ public class DbSettings extends SettingsBase {
     public final boolean shareLinkedConnections = get(
             "SHARE_LINKED_CONNECTIONS", true);
 
+    /**
+     * Database setting <code>UNDO_LOG_BUFFER_SIZE</code>
+     * (default: 0).
+     * The maximum number of changed rows of a transaction, for which the undo
+     * log is kept in memory instead of the undo log map. 0 disables this.
+     */
+    public final int undoLogBufferSize = get("UNDO_LOG_BUFFER_SIZE", 0);
+
     /**
      * Database setting <code>DEFAULT_TABLE_ENGINE</code>
      * (default: null).
@@ -274,6 +344,58 @@ public class DbSettings extends SettingsBase {
      */
     public final boolean compressData = get("COMPRESS", false);
 
+    /**
+     * Database setting <code>COMPRESS_DICTIONARY</code>
+     * (default: false).
+     * Use compression dictionaries trained for each table and index, if data
+     * is compressed. Such database files can not be opened by older versions.
+     */
+    public final boolean compressDictionary = get("COMPRESS_DICTIONARY", false);
+
+    /**
+     * Database setting <code>MEMORY_MAPPED_READS</code>
+     * (default: false).
+     * Read pages from a memory mapped database file, without copying the data.
+     * This setting only affects MVStore engine.
+     */
+    public final boolean memoryMappedReads = get("MEMORY_MAPPED_READS", false);
+
+    /**
+     * Database setting <code>GROUP_COMMIT_WINDOW</code>
+     * (default: 0).
+     * The time in microseconds to wait for concurrent commits, which are then
+     * written and synced to disk together. 0 disables group commit. This
+     * setting is mostly useful with <code>WRITE_DELAY=0</code>.
+     */
+    public final int groupCommitWindow = get("GROUP_COMMIT_WINDOW", 0);
+
+    /**
+     * Database setting <code>SERIALIZATION_THREADS</code>
+     * (default: 1).
+     * The number of threads used to serialize changed pages when changes are
+     * written to the file. Values larger than 1 allow leaf pages to be
+     * serialized concurrently during write-heavy workloads.
+     */
+    public final int serializationThreads = get("SERIALIZATION_THREADS", 1);
+
+    /**
+     * Database setting <code>ASYNC_READ_THREADS</code>
+     * (default: 0).
+     * The number of threads used to read pages from the file asynchronously.
+     * Values larger than 0 allow many page reads to be in flight at the same
+     * time, which helps range scans over data that is not in the cache.
+     */
+    public final int asyncReadThreads = get("ASYNC_READ_THREADS", 0);
+
+    /**
+     * Database setting <code>OFF_HEAP_CACHE_SIZE</code>
+     * (default: 0).
+     * The size of the second level page cache in MB. This cache keeps
+     * serialized pages outside of the Java heap, and is used when a page is not
+     * found in the regular page cache.
+     */
+    public final int offHeapCacheSize = get("OFF_HEAP_CACHE_SIZE", 0);
+
     /**
      * Database setting <code>IGNORE_CATALOGS</code>
      * (default: false).
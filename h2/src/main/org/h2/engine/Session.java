@@ -6,6 +6,7 @@
 package org.h2.engine;
 
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.h2.command.CommandInterface;
@@ -211,6 +212,15 @@ public final boolean isLockedByCurrentThread() {
      */
     public abstract void setAutoCommit(boolean autoCommit);
 
+    /**
+     * Commit the current transaction without waiting for its changes to be
+     * written to the file.
+     *
+     * @return the future, which is completed when the changes committed by
+     *         this session so far are written to the file and synced
+     */
+    public abstract CompletableFuture<Long> commitAsync();
+
     /**
      * Add a temporary LOB, which is closed when the session commits.
      *
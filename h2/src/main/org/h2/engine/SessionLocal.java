@@ -19,6 +19,7 @@
 import java.util.Random;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import org.h2.api.ErrorCode;
 import org.h2.api.JavaObjectSerializer;
@@ -683,10 +684,24 @@ public Database getDatabase() {
      * @param ddl if the statement was a data definition statement
      */
     public void commit(boolean ddl) {
+        commit(ddl, false);
+    }
+
+    @Override
+    public CompletableFuture<Long> commitAsync() {
+        return commit(false, true);
+    }
+
+    private CompletableFuture<Long> commit(boolean ddl, boolean async) {
         beforeCommitOrRollback();
+        CompletableFuture<Long> future = null;
         if (hasTransaction()) {
             try {
-                transaction.commit();
+                if (async) {
+                    future = transaction.commitAsync();
+                } else {
+                    transaction.commit();
+                }
                 markUsedTablesAsUpdated();
                 removeTemporaryLobs(true);
                 endTransaction();
@@ -703,6 +718,11 @@ public void commit(boolean ddl) {
             }
             analyzeTables();
         }
+        if (async && (future == null || future.isDone())) {
+            // changes of the previous transactions of this session
+            future = getDatabase().getStore().getTransactionStore().storeAsync();
+        }
+        return future;
     }
 
     private void markUsedTablesAsUpdated() {
@@ -9,6 +9,7 @@
 import java.net.Socket;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.api.JavaObjectSerializer;
@@ -253,6 +254,11 @@ public void setAutoCommit(boolean autoCommit) {
         this.autoCommit = autoCommit;
     }
 
+    @Override
+    public CompletableFuture<Long> commitAsync() {
+        throw DbException.getUnsupportedException("commitAsync() on a remote connection");
+    }
+
     public void setAutoCommitFromServer(boolean autoCommit) {
         if (cluster) {
             if (autoCommit) {
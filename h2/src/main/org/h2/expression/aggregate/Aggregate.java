@@ -511,6 +511,68 @@ protected Object createAggregateData() {
         return new AggregateDataCollecting(distinct, false, NullCollectionMode.IGNORED);
     }
 
+    /**
+     * Returns whether this aggregate can be computed separately for disjoint
+     * sets of rows with partial results merged later.
+     *
+     * @return whether partial results of this aggregate can be merged
+     */
+    public boolean isMergeable() {
+        if (distinct || filterCondition != null || over != null || orderByList != null) {
+            return false;
+        }
+        switch (aggregateType) {
+        case COUNT_ALL:
+        case COUNT:
+        case SUM:
+        case MIN:
+        case MAX:
+        case AVG:
+        case BIT_AND_AGG:
+        case BIT_OR_AGG:
+        case BIT_XOR_AGG:
+        case BIT_NAND_AGG:
+        case BIT_NOR_AGG:
+        case BIT_XNOR_AGG:
+        case ANY:
+        case EVERY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Create an empty partial result of this aggregate.
+     *
+     * @return the partial result
+     * @see #isMergeable()
+     */
+    public Object createPartialData() {
+        return createAggregateData();
+    }
+
+    /**
+     * Add the current row to a partial result of this aggregate.
+     *
+     * @param session the session
+     * @param data the partial result
+     */
+    public void updatePartialData(SessionLocal session, Object data) {
+        updateAggregate(session, data);
+    }
+
+    /**
+     * Merge a partial result of this aggregate into another one.
+     *
+     * @param session the session
+     * @param data the partial result to update
+     * @param other the partial result for other rows
+     */
+    public void mergePartialData(SessionLocal session, Object data, Object other) {
+        ((AggregateData) data).merge(session, (AggregateData) other);
+    }
+
     @Override
     public Value getValue(SessionLocal session) {
         return select.isQuickAggregateQuery() ? getValueQuick(session) : super.getValue(session);
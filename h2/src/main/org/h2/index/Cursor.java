@@ -5,6 +5,7 @@
  */
 package org.h2.index;
 
+import org.h2.message.DbException;
 import org.h2.result.Row;
 import org.h2.result.SearchRow;
 
@@ -50,4 +51,17 @@ public interface Cursor {
      */
     boolean previous();
 
+    /**
+     * Move forward, so that the next call to {@link #next()} returns the
+     * first row, which is equal to or larger than the given row. Rows, which
+     * were already returned, are not returned again. This operation is only
+     * supported by ascending cursors without an upper limit of indexes, for
+     * which {@link Index#canSeek()} returns {@code true}.
+     *
+     * @param first the row to seek to
+     */
+    default void seek(SearchRow first) {
+        throw DbException.getUnsupportedException("seek");
+    }
+
 }
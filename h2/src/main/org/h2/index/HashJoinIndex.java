@@ -0,0 +1,234 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.h2.command.query.AllColumnsForPlan;
+import org.h2.engine.Database;
+import org.h2.engine.SessionLocal;
+import org.h2.message.DbException;
+import org.h2.mvstore.db.MVHashJoinBuffer;
+import org.h2.result.DefaultRow;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.Column;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.value.TypeInfo;
+import org.h2.value.Value;
+import org.h2.value.ValueBigint;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueRow;
+
+/**
+ * A temporary index that is used to join a table on equality conditions
+ * without a suitable regular index. On the first lookup all rows of the table
+ * are read into a hash table on the join columns. If there are more than
+ * MAX_MEMORY_ROWS rows, they are stored in a temporary file instead.
+ */
+public final class HashJoinIndex extends Index {
+
+    private final Database database;
+
+    private HashMap<Value, ArrayList<Row>> rows;
+
+    private MVHashJoinBuffer buffer;
+
+    public HashJoinIndex(Table table, IndexColumn[] columns) {
+        super(table, 0, table.getName() + "_HASH_JOIN", columns, 0, IndexType.createNonUnique(false));
+        database = table.getDatabase();
+    }
+
+    /**
+     * Discard the hash table, so that it is built again from the current
+     * content of the table on the next lookup.
+     */
+    public void reset() {
+        rows = null;
+        if (buffer != null) {
+            buffer.close();
+            buffer = null;
+        }
+    }
+
+    @Override
+    public String getPlanSQL() {
+        StringBuilder builder = table.getSQL(new StringBuilder(), TRACE_SQL_FLAGS).append(".hashJoin(");
+        return IndexColumn.writeColumns(builder, indexColumns, TRACE_SQL_FLAGS).append(')').toString();
+    }
+
+    @Override
+    public void close(SessionLocal session) {
+        reset();
+    }
+
+    @Override
+    public void add(SessionLocal session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void remove(SessionLocal session, Row row) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolean reverse) {
+        Value[] key = getKey(first, last);
+        if (key == null) {
+            // Not an equality lookup, the conditions are checked by the caller
+            return table.getScanIndex(session).find(session, null, null, false);
+        }
+        if (rows == null) {
+            build(session);
+        }
+        ArrayList<Row> list;
+        if (buffer != null) {
+            list = new ArrayList<>();
+            Column[] tableColumns = table.getColumns();
+            int columnCount = tableColumns.length;
+            for (Value[] values : buffer.get(key)) {
+                Row row = table.createRow(Arrays.copyOf(values, columnCount), DefaultRow.MEMORY_CALCULATE);
+                row.setKey(values[columnCount].getLong());
+                list.add(row);
+            }
+        } else {
+            list = rows.get(key.length == 1 ? key[0] : ValueRow.get(key));
+            if (list == null) {
+                list = new ArrayList<>(0);
+            }
+        }
+        return new MetaCursor(list);
+    }
+
+    private Value[] getKey(SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return null;
+        }
+        int length = columnIds.length;
+        Value[] key = new Value[length];
+        for (int i = 0; i < length; i++) {
+            int id = columnIds[i];
+            Value v = first.getValue(id);
+            if (v == null || v == ValueNull.INSTANCE || !v.equals(last.getValue(id))) {
+                return null;
+            }
+            key[i] = v;
+        }
+        return key;
+    }
+
+    private void build(SessionLocal session) {
+        rows = new HashMap<>();
+        int maxMemoryRows = database.isPersistent() && !database.isReadOnly() ? database.getMaxMemoryRows()
+                : Integer.MAX_VALUE;
+        int length = columnIds.length;
+        long count = 0;
+        Cursor cursor = table.getScanIndex(session).find(session, null, null, false);
+        loop: while (cursor.next()) {
+            Row row = cursor.get();
+            Value[] key = new Value[length];
+            for (int i = 0; i < length; i++) {
+                Value v = row.getValue(columnIds[i]);
+                if (v == ValueNull.INSTANCE) {
+                    // NULL never matches an equality condition
+                    continue loop;
+                }
+                key[i] = v;
+            }
+            if (buffer != null) {
+                addToBuffer(key, row);
+            } else {
+                rows.computeIfAbsent(length == 1 ? key[0] : ValueRow.get(key), k -> new ArrayList<>()).add(row);
+                if (++count > maxMemoryRows) {
+                    spill();
+                }
+            }
+        }
+    }
+
+    private void spill() {
+        int length = columnIds.length;
+        TypeInfo[] keyTypes = new TypeInfo[length];
+        for (int i = 0; i < length; i++) {
+            keyTypes[i] = columns[i].getType();
+        }
+        Column[] tableColumns = table.getColumns();
+        int columnCount = tableColumns.length;
+        TypeInfo[] rowTypes = new TypeInfo[columnCount + 1];
+        for (int i = 0; i < columnCount; i++) {
+            rowTypes[i] = tableColumns[i].getType();
+        }
+        rowTypes[columnCount] = TypeInfo.TYPE_BIGINT;
+        buffer = new MVHashJoinBuffer(database, keyTypes, rowTypes);
+        for (ArrayList<Row> list : rows.values()) {
+            for (Row row : list) {
+                Value[] key = new Value[length];
+                for (int i = 0; i < length; i++) {
+                    key[i] = row.getValue(columnIds[i]);
+                }
+                addToBuffer(key, row);
+            }
+        }
+        rows.clear();
+    }
+
+    private void addToBuffer(Value[] key, Row row) {
+        int columnCount = table.getColumns().length;
+        Value[] values = new Value[columnCount + 1];
+        for (int i = 0; i < columnCount; i++) {
+            values[i] = row.getValue(i);
+        }
+        values[columnCount] = ValueBigint.get(row.getKey());
+        buffer.add(key, values);
+    }
+
+    @Override
+    public double getCost(SessionLocal session, int[] masks, TableFilter[] filters, int filter,
+            SortOrder sortOrder, AllColumnsForPlan allColumnsSet, boolean isSelectCommand) {
+        // The hash table needs to be built, so it is estimated as a
+        // non-covering index and a regular index with the same selectivity
+        // is preferred
+        return 10 * getCostRangeIndex(masks, table.getRowCountApproximation(session), filters, filter, sortOrder,
+                false, null, isSelectCommand) + 1;
+    }
+
+    @Override
+    public void remove(SessionLocal session) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void truncate(SessionLocal session) {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public void checkRename() {
+        throw DbException.getUnsupportedException("HASH JOIN");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(SessionLocal session) {
+        return table.getRowCount(session);
+    }
+
+    @Override
+    public long getRowCountApproximation(SessionLocal session) {
+        return table.getRowCountApproximation(session);
+    }
+
+}
@@ -302,6 +302,17 @@ public boolean canFindNext() {
         return false;
     }
 
+    /**
+     * Check if cursors of this index, which are created for ascending order
+     * without an upper limit, can be moved forward with
+     * {@link Cursor#seek(SearchRow)}.
+     *
+     * @return true if they can
+     */
+    public boolean canSeek() {
+        return false;
+    }
+
     /**
      * Find a row or a list of rows that is larger and create a cursor to
      * iterate over the result.
@@ -315,6 +326,20 @@ public Cursor findNext(SessionLocal session, SearchRow higherThan, SearchRow las
         throw DbException.getInternalError(toString());
     }
 
+    /**
+     * Split all rows of this index into disjoint ranges of similar size and
+     * create a cursor for each range. The cursors may be iterated
+     * concurrently by different threads.
+     *
+     * @param session the session
+     * @param count the maximum number of ranges
+     * @return the cursors, or null if this index can't be split or there are
+     *         too few rows
+     */
+    public Cursor[] findPartitions(SessionLocal session, int count) {
+        return null;
+    }
+
     /**
      * Find the first (or last) value of this index. The cursor returned is
      * positioned on the correct row, or on null if no row has been found.
@@ -581,24 +606,47 @@ protected final long getCostRangeIndex(int[] masks, long rowCount, TableFilter[]
         int totalSelectivity = 0;
         long rowsCost = rowCount;
         if (masks != null) {
+            // statistics of columns are used, if they were collected
+            TableFilter tableFilter = filters != null && filters[filter].getTable() == table ? filters[filter]
+                    : null;
+            double equalFraction = 1d;
+            boolean useStatistics = false;
             int i = 0, len = columns.length;
             boolean tryAdditional = false;
             while (i < len) {
                 Column column = columns[i++];
                 int index = column.getColumnId();
                 int mask = masks[index];
+                double fraction;
                 if ((mask & IndexCondition.EQUALITY) == IndexCondition.EQUALITY) {
                     if (i > 0 && i == uniqueColumnColumn) {
                         rowsCost = 3;
                         break;
                     }
+                    int selectivity = column.getSelectivity();
                     totalSelectivity = 100 - ((100 - totalSelectivity) *
-                            (100 - column.getSelectivity()) / 100);
-                    long distinctRows = rowCount * totalSelectivity / 100;
-                    if (distinctRows <= 0) {
-                        distinctRows = 1;
+                            (100 - selectivity) / 100);
+                    fraction = tableFilter != null ? tableFilter.getConditionFraction(column) : -1d;
+                    if (fraction >= 0d) {
+                        useStatistics = true;
+                    } else {
+                        fraction = 1d / Math.max(rowCount * selectivity / 100, 1L);
                     }
-                    rowsCost = 2 + Math.max(rowCount / distinctRows, 1);
+                    equalFraction *= fraction;
+                    if (useStatistics) {
+                        rowsCost = 2 + Math.max((long) (rowCount * equalFraction), 1L);
+                    } else {
+                        long distinctRows = rowCount * totalSelectivity / 100;
+                        if (distinctRows <= 0) {
+                            distinctRows = 1;
+                        }
+                        rowsCost = 2 + Math.max(rowCount / distinctRows, 1);
+                    }
+                } else if ((mask & IndexCondition.RANGE) != 0 && tableFilter != null
+                        && (fraction = tableFilter.getConditionFraction(column)) >= 0d) {
+                    rowsCost = 2 + Math.max((long) (rowsCost * fraction), 1L);
+                    tryAdditional = true;
+                    break;
                 } else if ((mask & IndexCondition.RANGE) == IndexCondition.RANGE) {
                     rowsCost = 2 + rowsCost / 4;
                     tryAdditional = true;
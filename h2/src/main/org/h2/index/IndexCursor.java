@@ -50,12 +50,28 @@ public class IndexCursor implements Cursor {
     private Value[] inList;
     private ResultInterface inResult;
 
+    /**
+     * Whether lookups are expected in ascending order of the first index
+     * column, so that one cursor can be moved forward instead of searching in
+     * the index for each lookup.
+     */
+    private boolean mergeJoin;
+    private Cursor mergeCursor;
+    private Value mergeKey;
+    private SearchRow mergeLast;
+    /**
+     * Whether the current row of the merge cursor is beyond the previous
+     * lookup and was not returned yet.
+     */
+    private boolean mergePending;
+
     public IndexCursor() {
     }
 
     public void setIndex(Index index, boolean reverse) {
         this.index = index;
         this.reverse = reverse;
+        mergeCursor = null;
         this.table = index.getTable();
         Column[] columns = table.getColumns();
         indexColumns = new IndexColumn[columns.length];
@@ -204,11 +220,85 @@ public void find(SessionLocal s, ArrayList<IndexCondition> indexConditions) {
             if (intersects != null && index instanceof SpatialIndex) {
                 cursor = ((SpatialIndex) index).findByGeometry(session, first, last, reverse, intersects);
             } else if (index != null) {
+                if (mergeJoin && !reverse) {
+                    Value key = getMergeKey(first, last);
+                    if (key != null) {
+                        findMerge(first, last, key);
+                        return;
+                    }
+                }
                 cursor = index.find(session, first, last, reverse);
             }
         }
     }
 
+    /**
+     * Enable or disable merge join lookups. Lookups in ascending order of the
+     * first index column move the same cursor forward, other lookups are
+     * still performed as usual. This method also closes the cursor of the
+     * previous query.
+     *
+     * @param mergeJoin whether merge join lookups should be used
+     */
+    public void setMergeJoin(boolean mergeJoin) {
+        this.mergeJoin = mergeJoin && index != null && index.canSeek();
+        mergeCursor = null;
+        mergeKey = null;
+        mergeLast = null;
+        mergePending = false;
+    }
+
+    private Value getMergeKey(SearchRow first, SearchRow last) {
+        if (first == null || last == null) {
+            return null;
+        }
+        int id = index.getColumns()[0].getColumnId();
+        Value v = first.getValue(id);
+        if (v == null || v == ValueNull.INSTANCE) {
+            return null;
+        }
+        Value v2 = last.getValue(id);
+        if (v2 == null || table.compareValues(session, v, v2) != 0) {
+            return null;
+        }
+        return v;
+    }
+
+    private void findMerge(SearchRow first, SearchRow last, Value key) {
+        int cmp = mergeCursor == null ? -1 : table.compareValues(session, key, mergeKey);
+        if (cmp == 0) {
+            // the same rows are needed again
+            cursor = index.find(session, first, last, false);
+            return;
+        }
+        if (cmp < 0) {
+            mergeCursor = index.find(session, first, null, false);
+            mergePending = false;
+        } else if (!mergePending || index.compareRows(mergeCursor.getSearchRow(), first) < 0) {
+            mergeCursor.seek(first);
+            mergePending = false;
+        }
+        mergeKey = key;
+        mergeLast = last;
+        cursor = mergeCursor;
+    }
+
+    private boolean nextMerge() {
+        if (mergePending) {
+            mergePending = false;
+        } else if (!mergeCursor.next()) {
+            cursor = null;
+            return false;
+        }
+        if (index.compareRows(mergeCursor.getSearchRow(), mergeLast) > 0) {
+            // keep this row for the next lookup
+            mergePending = true;
+            cursor = null;
+            return false;
+        }
+        return true;
+    }
+
     private boolean canUseIndexForIn(Column column) {
         if (inColumn != null) {
             // only one IN(..) condition can be used at the same time
@@ -358,6 +448,9 @@ public boolean next() {
                     return false;
                 }
             }
+            if (cursor == mergeCursor) {
+                return nextMerge();
+            }
             if (cursor.next()) {
                 return true;
             }
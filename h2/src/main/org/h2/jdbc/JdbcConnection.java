@@ -29,6 +29,7 @@
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Pattern;
@@ -495,6 +496,39 @@ && getAutoCommit()) {
         }
     }
 
+    /**
+     * Commits the current transaction without waiting for its changes to be
+     * written to the database file. The changes are visible to other
+     * connections when this method returns. This call is only supported for
+     * embedded connections.
+     *
+     * @return the future, which is completed when the changes committed by
+     *         this connection so far are written to the file and synced
+     * @throws SQLException if the connection is closed or remote
+     */
+    public CompletableFuture<Void> commitAsync() throws SQLException {
+        lock();
+        try {
+            debugCodeCall("commitAsync");
+            checkClosed();
+            if (SysProperties.FORCE_AUTOCOMMIT_OFF_ON_COMMIT
+                    && getAutoCommit()) {
+                throw DbException.get(ErrorCode.METHOD_DISABLED_ON_AUTOCOMMIT_TRUE, "commitAsync()");
+            }
+            Session session = this.session;
+            session.lock();
+            try {
+                return session.commitAsync().thenAccept(version -> {});
+            } finally {
+                session.unlock();
+            }
+        } catch (Exception e) {
+            throw logAndConvert(e);
+        } finally {
+            unlock();
+        }
+    }
+
     /**
      * Rolls back the current transaction. This call has only an effect if auto
      * commit is switched off.
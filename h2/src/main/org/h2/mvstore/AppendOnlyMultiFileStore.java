@@ -260,6 +260,11 @@ protected void writeCleanShutdownMark() {
 
     }
 
+    @Override
+    protected void writeStoreHeaderNow() {
+
+    }
+
     @Override
     protected void adjustStoreToLastChunk() {
 
@@ -116,7 +116,7 @@
      * The garbage collection priority. Priority 0 means it needs to be
      * collected, a high value means low priority.
      */
-    int collectPriority;
+    double collectPriority;
 
     /**
      * The position of the root of layout map.
@@ -8,6 +8,8 @@
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
+import org.h2.mvstore.type.DataType;
+
 /**
  * A cursor to iterate over elements in ascending or descending order.
  *
@@ -23,6 +25,13 @@
     private K last;
     private V lastValue;
     private Page<K,V> lastPage;
+    /**
+     * Number of sibling leaf pages to read ahead during a forward scan,
+     * 0 if read-ahead is disabled.
+     */
+    private final int readAhead;
+    private Page<K,V> readAheadParent;
+    private int readAheadLimit;
 
 
     public Cursor(RootReference<K,V> rootReference, K from, K to) {
@@ -40,6 +49,7 @@ public Cursor(RootReference<K,V> rootReference, K from, K to, boolean reverse) {
         this.cursorPos = traverseDown(lastPage, from, reverse);
         this.to = to;
         this.reverse = reverse;
+        this.readAhead = reverse ? 0 : lastPage.map.store.getReadAheadPages();
     }
 
     @Override
@@ -60,6 +70,7 @@ public boolean hasNext() {
                     keeper = tmp;
                 } else {
                     // traverse down to the leaf taking the leftmost path
+                    boolean nextLeaf = !page.isLeaf();
                     while (!page.isLeaf()) {
                         page = page.getChildPage(index);
                         index = reverse ? upperBound(page) - 1 : 0;
@@ -74,6 +85,9 @@ public boolean hasNext() {
                             cursorPos = tmp;
                         }
                     }
+                    if (nextLeaf && readAhead > 0) {
+                        readAhead(cursorPos.parent);
+                    }
                     if (reverse ? index >= 0 : index < page.getKeyCount()) {
                         K key = page.getKey(index);
                         if (to != null && Integer.signum(page.map.getKeyType().compare(key, to)) == increment) {
@@ -122,11 +136,21 @@ public V getValue() {
      *
      * @return the page
      */
-    @SuppressWarnings("unused")
-    Page<K,V> getPage() {
+    public Page<K,V> getPage() {
         return lastPage;
     }
 
+    /**
+     * Skip the remaining entries of the leaf page, where the last retrieved
+     * key is located. This method can only be used right after next().
+     */
+    public void skipPage() {
+        assert current == null;
+        if (cursorPos != null && cursorPos.page == lastPage) {
+            cursorPos.index = reverse ? -1 : upperBound(lastPage);
+        }
+    }
+
     /**
      * Skip over that many entries. This method is relatively fast (for this map
      * implementation) even if many entries need to be skipped.
@@ -151,6 +175,50 @@ public void skip(long n) {
         }
     }
 
+    /**
+     * Move forward to the first entry, which is equal to or larger than the
+     * given key. The path to the current position is reused, so that seeking
+     * to a close key needs only a few key comparisons. Entries, which were
+     * already returned, are not returned again. This method can only be used
+     * in ascending order, and the key must not be smaller than the starting
+     * key of this cursor.
+     *
+     * @param key the key to seek to
+     */
+    public void seek(K key) {
+        assert !reverse;
+        DataType<K> keyType = lastPage.map.getKeyType();
+        if (current != null) {
+            if (keyType.compare(current, key) >= 0) {
+                return;
+            }
+            current = null;
+        } else if (last != null && keyType.compare(last, key) >= 0) {
+            return;
+        }
+        CursorPos<K,V> pos = cursorPos;
+        if (pos == null) {
+            return;
+        }
+        // go up to the first page, whose subtree contains the key
+        CursorPos<K,V> parent;
+        while ((parent = pos.parent) != null) {
+            int index = parent.index;
+            Page<K,V> page = parent.page;
+            if (index < page.getKeyCount() && keyType.compare(key, page.getKey(index)) < 0) {
+                break;
+            }
+            pos = parent;
+        }
+        CursorPos<K,V> head = traverseDown(pos.page, key, false);
+        CursorPos<K,V> top = head;
+        while (top.parent != null) {
+            top = top.parent;
+        }
+        top.parent = pos.parent;
+        cursorPos = head;
+    }
+
     /**
      * Fetch the next entry that is equal or larger than the given key, starting
      * from the given page. This method returns the path.
@@ -179,6 +247,31 @@ static <K,V> CursorPos<K,V> traverseDown(Page<K,V> page, K key, boolean reverse)
         return cursorPos;
     }
 
+    /**
+     * Start asynchronous reads of the leaf pages following the current one,
+     * once the cursor has moved to the next leaf, i.e. the scan is sequential.
+     * Reads are issued in batches, when fewer than half of the read-ahead
+     * window is left.
+     *
+     * @param parent the position of the current leaf within its parent
+     */
+    private void readAhead(CursorPos<K,V> parent) {
+        Page<K,V> page = parent.page;
+        int index = parent.index;
+        if (page != readAheadParent) {
+            readAheadParent = page;
+            readAheadLimit = index + 1;
+        }
+        if (readAheadLimit - index <= (readAhead + 1) / 2) {
+            int from = Math.max(readAheadLimit, index + 1);
+            int limit = Math.min(index + 1 + readAhead, upperBound(page));
+            if (from < limit) {
+                page.prefetchChildren(from, limit);
+            }
+            readAheadLimit = limit;
+        }
+    }
+
     private static <K,V> int upperBound(Page<K,V> page) {
         return page.isLeaf() ? page.getKeyCount() : page.map.getChildPageCount(page);
     }
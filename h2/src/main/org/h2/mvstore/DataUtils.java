@@ -134,6 +134,11 @@ public final class DataUtils {
      */
     public static final int PAGE_COMPRESSED_HIGH = 2 + 4;
 
+    /**
+     * The bit mask for pages compressed with the dictionary of the map.
+     */
+    public static final int PAGE_COMPRESSED_DICTIONARY = 2 + 8;
+
     /**
      * The maximum integer that needs less space when using variable size
      * encoding (only 3 bytes instead of 4).
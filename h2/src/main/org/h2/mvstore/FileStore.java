@@ -5,11 +5,17 @@
  */
 package org.h2.mvstore;
 
+import org.h2.compress.CompressDeflate;
+import org.h2.compress.CompressLZF;
+import org.h2.compress.CompressLZFDictionary;
+import org.h2.compress.Compressor;
 import org.h2.engine.Constants;
 import static org.h2.mvstore.MVStore.INITIAL_VERSION;
+import org.h2.mvstore.cache.CacheLongKeyDirect;
 import org.h2.mvstore.cache.CacheLongKeyLIRS;
 import org.h2.mvstore.type.StringDataType;
 import org.h2.util.MathUtils;
+import org.h2.util.StringUtils;
 import org.h2.util.Utils;
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -22,6 +28,7 @@
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +38,9 @@
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
@@ -80,10 +90,18 @@
      */
     static final int BLOCK_SIZE = 4 * 1024;
 
+    /**
+     * The format of a store with pages that older versions can not read, such
+     * as pages compressed with a dictionary, or columnar row pages. New files
+     * use the lowest format, and are upgraded on the first use of such a
+     * feature, so that older versions refuse to open them.
+     */
+    public static final int FORMAT_EXTENDED_PAGES = 4;
+
     private static final int FORMAT_WRITE_MIN = 3;
-    private static final int FORMAT_WRITE_MAX = 3;
+    private static final int FORMAT_WRITE_MAX = 4;
     private static final int FORMAT_READ_MIN = 3;
-    private static final int FORMAT_READ_MAX = 3;
+    private static final int FORMAT_READ_MAX = 4;
 
     MVStore mvStore;
     private boolean closed;
@@ -147,6 +165,53 @@
      */
     private ThreadPoolExecutor bufferSaveExecutor;
 
+    /**
+     * Number of threads used to serialize changed leaf pages,
+     * 1 means that all serialization is done by a single thread
+     */
+    private final int serializationThreads;
+
+    /**
+     * Executor for parallel serialization of leaf pages,
+     * created on demand, if serializationThreads is greater than 1
+     */
+    private ThreadPoolExecutor serializationWorkers;
+
+    /**
+     * Compressors with trained dictionaries by map id, used with compression
+     * level 3, loaded from the layout map on demand
+     */
+    private final ConcurrentHashMap<Integer, CompressLZFDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    /**
+     * Page samples collected to train dictionaries for the maps which do not
+     * have one yet. Only accessed by the serialization thread.
+     */
+    private final HashMap<Integer, ArrayList<byte[]>> dictionarySamples = new HashMap<>();
+
+    /**
+     * Number of threads used to read pages asynchronously,
+     * 0 means that pages are always read by the requesting thread
+     */
+    private final int asyncReadThreads;
+
+    /**
+     * Executor for asynchronous page reads,
+     * created on demand, if asyncReadThreads is greater than 0
+     */
+    private volatile ThreadPoolExecutor readExecutor;
+
+    /**
+     * Number of leaf pages to read ahead during sequential cursor scans,
+     * 0 if asynchronous reads are disabled
+     */
+    private final int readAheadPages;
+
+    /**
+     * Asynchronous page reads in progress, keyed by page position
+     */
+    private final ConcurrentHashMap<Long, CompletableFuture<Page<?,?>>> pendingReads = new ConcurrentHashMap<>();
+
 
     /**
      * The page cache. The default size is 16 MB, and the average size is 2 KB.
@@ -155,6 +220,14 @@
      */
     private final CacheLongKeyLIRS<Page<?,?>> cache;
 
+    /**
+     * The second level page cache. It keeps serialized page images, as they
+     * are stored in the file, in preallocated direct (off-heap) memory, and is
+     * consulted on a page cache miss before reading from the file. Keyed by
+     * page position, disabled by default.
+     */
+    private final CacheLongKeyDirect offHeapCache;
+
     /**
      * Cache for chunks "Table of Content" used to translate page's
      * sequential number within containing chunk into byte position
@@ -203,6 +276,44 @@
 
     private final int autoCompactFillRate;
 
+    /**
+     * The maximum rate of background compaction in bytes per second,
+     * 0 means unlimited
+     */
+    private final long autoCompactRate;
+
+    /**
+     * The number of bytes background compaction may write now, replenished
+     * at autoCompactRate. Only accessed by the background thread.
+     */
+    private long compactBudget;
+
+    /**
+     * The time of the last update of compactBudget, in nanoseconds.
+     */
+    private long compactBudgetTime;
+
+    /**
+     * The number of live bytes in chunks selected to be rewritten by compaction.
+     */
+    private final AtomicLong compactRewrittenBytes = new AtomicLong();
+
+    /**
+     * The number of chunks selected to be rewritten by compaction.
+     */
+    private final AtomicLong compactRewrittenChunks = new AtomicLong();
+
+    /**
+     * The number of bytes in chunks moved within the file by compaction.
+     */
+    private final AtomicLong compactMovedBytes = new AtomicLong();
+
+    /**
+     * The number of times background compaction was postponed or reduced
+     * because of autoCompactRate.
+     */
+    private final AtomicLong compactThrottledCount = new AtomicLong();
+
     /**
      * The delay in milliseconds to automatically commit and write changes.
      */
@@ -216,12 +327,51 @@
 
     public static final int PIPE_LENGTH = 3;
 
+    /**
+     * Minimal number of unsaved leaf pages per serialization worker,
+     * below which parallel serialization is not worth the overhead.
+     */
+    private static final int MIN_LEAVES_PER_WORKER = 16;
+
+    /**
+     * Maximal number of queued asynchronous reads per read thread,
+     * beyond which prefetch requests are ignored.
+     */
+    private static final int MAX_QUEUED_READS_PER_THREAD = 64;
+
+    /**
+     * The prefix of the layout map keys for compression dictionaries.
+     */
+    private static final String DICTIONARY_PREFIX = "dict.";
+
+    /**
+     * Maximal number of unsaved leaf pages of a map, sampled per store
+     * operation to train a compression dictionary.
+     */
+    private static final int DICTIONARY_SAMPLE_PAGES = 16;
+
+    /**
+     * Amount of sampled data per map, after which a compression dictionary
+     * is trained.
+     */
+    private static final int DICTIONARY_SAMPLE_SIZE = 32 * 1024;
+
+    /**
+     * Minimal size of a useful compression dictionary.
+     */
+    private static final int MIN_DICTIONARY_SIZE = 256;
+
 
 
 
     protected FileStore(Map<String, Object> config) {
         recoveryMode = config.containsKey("recoveryMode");
         autoCompactFillRate = DataUtils.getConfigParam(config, "autoCompactFillRate", 90);
+        autoCompactRate = Math.max(0, DataUtils.getConfigParam(config, "autoCompactRate", 0)) * 1024L;
+        compactBudgetTime = System.nanoTime();
+        serializationThreads = Math.max(1, DataUtils.getConfigParam(config, "serializationThreads", 1));
+        asyncReadThreads = Math.max(0, DataUtils.getConfigParam(config, "asyncReadThreads", 0));
+        readAheadPages = asyncReadThreads == 0 ? 0 : Math.max(0, DataUtils.getConfigParam(config, "readAheadPages", 16));
         CacheLongKeyLIRS.Config cc = null;
         int mb = DataUtils.getConfigParam(config, "cacheSize", 16);
         if (mb > 0) {
@@ -231,9 +381,19 @@ protected FileStore(Map<String, Object> config) {
             if (o != null) {
                 cc.segmentCount = (Integer)o;
             }
+            // record page accesses and apply them in batches,
+            // so that concurrent readers don't contend for segment locks
+            cc.accessBufferSize = 16;
         }
         cache = cc == null ? null : new CacheLongKeyLIRS<>(cc);
 
+        int offHeapMb = DataUtils.getConfigParam(config, "offHeapCacheSize", 0);
+        if (offHeapMb > 0) {
+            offHeapCache = new CacheLongKeyDirect(offHeapMb * 1024L * 1024L);
+        } else {
+            offHeapCache = null;
+        }
+
         CacheLongKeyLIRS.Config cc2 = new CacheLongKeyLIRS.Config();
         cc2.maxMemory = 1024L * 1024L;
         chunksToC = new CacheLongKeyLIRS<>(cc2);
@@ -282,6 +442,19 @@ public void close() {
         layout.close();
         closed = true;
         chunks.clear();
+        Utils.shutdownExecutor(serializationWorkers);
+        serializationWorkers = null;
+        ThreadPoolExecutor executor = readExecutor;
+        if (executor != null) {
+            executor.getQueue().clear();
+            Utils.shutdownExecutor(executor);
+            readExecutor = null;
+        }
+        for (CompletableFuture<Page<?,?>> future : pendingReads.values()) {
+            future.completeExceptionally(DataUtils.newMVStoreException(
+                    DataUtils.ERROR_CLOSED, "This store is closed"));
+        }
+        pendingReads.clear();
     }
 
     public final int getMetaMapId(IntSupplier nextIdSupplier) {
@@ -306,6 +479,7 @@ public final int getMetaMapId(IntSupplier nextIdSupplier) {
      * <pre>
      * chunk.{chunkId} = {chunk metadata}
      * root.{mapId} = {root position}
+     * dict.{mapId} = {compression dictionary}
      * </pre>
      *
      * @return the metadata map
@@ -337,9 +511,36 @@ public final long getRootPos(int mapId) {
      * @return true if root was removed, false if it is not there
      */
     public final boolean deregisterMapRoot(int mapId) {
+        dictionaries.remove(mapId);
+        layout.remove(getDictionaryKey(mapId));
         return layout.remove(MVMap.getMapRootKey(mapId)) != null;
     }
 
+    private static String getDictionaryKey(int mapId) {
+        return DICTIONARY_PREFIX + Integer.toHexString(mapId);
+    }
+
+    /**
+     * Get the compressor with the trained dictionary for the specified map.
+     *
+     * @param mapId the map id
+     * @return the compressor, or null if the map has no dictionary
+     */
+    final CompressLZFDictionary getDictionaryCompressor(int mapId) {
+        CompressLZFDictionary compressor = dictionaries.get(mapId);
+        if (compressor == null && mapId != layout.getId()) {
+            String dict = layout.get(getDictionaryKey(mapId));
+            if (dict != null) {
+                compressor = new CompressLZFDictionary(StringUtils.convertHexToBytes(dict));
+                CompressLZFDictionary existing = dictionaries.putIfAbsent(mapId, compressor);
+                if (existing != null) {
+                    compressor = existing;
+                }
+            }
+        }
+        return compressor;
+    }
+
     /**
      * Check whether there are any unsaved changes since specified version.
      *
@@ -508,7 +709,7 @@ protected final void initializeCommonHeaderAttributes(long time) {
         creationTime = time;
         storeHeader.put(FileStore.HDR_H, 2);
         storeHeader.put(FileStore.HDR_BLOCK_SIZE, FileStore.BLOCK_SIZE);
-        storeHeader.put(FileStore.HDR_FORMAT, FORMAT_WRITE_MAX);
+        storeHeader.put(FileStore.HDR_FORMAT, FORMAT_WRITE_MIN);
         storeHeader.put(FileStore.HDR_CREATED, creationTime);
     }
 
@@ -562,6 +763,35 @@ protected final void processCommonHeaderAttributes() {
         }
     }
 
+    /**
+     * Make sure the store header declares at least the given format. The
+     * header is written and synced right away, before any page that needs
+     * this format is stored. Read-only stores are not changed.
+     *
+     * @param format the required format
+     */
+    public final void requireFormat(int format) {
+        if (isReadOnly()) {
+            return;
+        }
+        saveChunkLock.lock();
+        try {
+            int current = DataUtils.readHexInt(storeHeader, HDR_FORMAT, 1);
+            if (DataUtils.readHexInt(storeHeader, HDR_FORMAT_READ, current) < format) {
+                storeHeader.put(HDR_FORMAT, format);
+                storeHeader.put(HDR_FORMAT_READ, format);
+                writeStoreHeaderNow();
+            }
+        } finally {
+            saveChunkLock.unlock();
+        }
+    }
+
+    /**
+     * Write the store header with the current attributes, and sync the file.
+     */
+    protected abstract void writeStoreHeaderNow();
+
     private long getTimeSinceCreation() {
         return Math.max(0, mvStore.getTimeAbsolute() - getCreationTime());
     }
@@ -657,10 +887,15 @@ public final void dropUnusedChunks() {
                 if (chunks.remove(chunk.id) != null) {
                     // purge dead pages from cache
                     long[] toc = cleanToCCache(chunk);
-                    if (toc != null && cache != null) {
+                    if (toc != null) {
                         for (long tocElement : toc) {
                             long pagePos = DataUtils.composePagePos(chunk.id, tocElement);
-                            cache.remove(pagePos);
+                            if (cache != null) {
+                                cache.remove(pagePos);
+                            }
+                            if (offHeapCache != null) {
+                                offHeapCache.remove(pagePos);
+                            }
                         }
                     }
 
@@ -1232,6 +1467,114 @@ protected final int getAutoCompactFillRate() {
         return autoCompactFillRate;
     }
 
+    /**
+     * Get the maximum rate of background compaction.
+     *
+     * @return the rate in bytes per second, 0 means unlimited
+     */
+    public final long getAutoCompactRate() {
+        return autoCompactRate;
+    }
+
+    /**
+     * Get the number of bytes background compaction may write now, without
+     * exceeding the configured rate. Unused budget is accumulated, up to the
+     * larger of one second worth of writes and the requested amount, so that
+     * large chunks are eventually processed, too.
+     * Should only be called from the background thread.
+     *
+     * @param limit the number of bytes the caller would like to write
+     * @return the allowed number of bytes, or -1 if compaction should be
+     *         postponed
+     */
+    protected final long acquireCompactBudget(long limit) {
+        return acquireCompactBudget(limit, System.nanoTime());
+    }
+
+    /**
+     * Get the number of bytes background compaction may write at the given
+     * time, see {@link #acquireCompactBudget(long)}.
+     *
+     * @param limit the number of bytes the caller would like to write
+     * @param now the current time, in nanoseconds
+     * @return the allowed number of bytes, or -1 if compaction should be
+     *         postponed
+     */
+    protected final long acquireCompactBudget(long limit, long now) {
+        if (autoCompactRate <= 0) {
+            return limit;
+        }
+        long elapsed = Math.min(now - compactBudgetTime, 1_000_000_000L);
+        compactBudgetTime = now;
+        compactBudget = Math.min(Math.max(autoCompactRate, limit),
+                compactBudget + elapsed * autoCompactRate / 1_000_000_000L);
+        if (compactBudget < limit) {
+            compactThrottledCount.incrementAndGet();
+            if (compactBudget <= 0) {
+                return -1;
+            }
+        }
+        return Math.min(limit, compactBudget);
+    }
+
+    /**
+     * Account for the bytes written by background compaction.
+     * Should only be called from the background thread.
+     *
+     * @param bytes the number of bytes written
+     */
+    protected final void chargeCompactBudget(long bytes) {
+        if (autoCompactRate > 0) {
+            compactBudget -= bytes;
+        }
+    }
+
+    /**
+     * Get the number of live bytes in chunks rewritten by compaction so far.
+     *
+     * @return the number of bytes
+     */
+    public final long getCompactRewrittenBytes() {
+        return compactRewrittenBytes.get();
+    }
+
+    /**
+     * Get the number of chunks rewritten by compaction so far.
+     *
+     * @return the number of chunks
+     */
+    public final long getCompactRewrittenChunks() {
+        return compactRewrittenChunks.get();
+    }
+
+    /**
+     * Get the number of bytes moved within the file by compaction so far.
+     *
+     * @return the number of bytes
+     */
+    public final long getCompactMovedBytes() {
+        return compactMovedBytes.get();
+    }
+
+    /**
+     * Account for chunks moved within the file by compaction.
+     *
+     * @param bytes the total length of moved chunks
+     */
+    protected final void addCompactMovedBytes(long bytes) {
+        compactMovedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Get the number of times background compaction was postponed or reduced
+     * to keep within the configured rate.
+     *
+     * @return the count
+     */
+    public final long getCompactThrottledCount() {
+        return compactThrottledCount.get();
+    }
+
 
     public void sync() {}
 
@@ -1427,7 +1770,11 @@ private void serializeAndStore(boolean syncRun, ArrayList<Page<?,?>> changed, lo
                 c = createChunk(time, version);
                 chunks.put(c.id, c);
                 buff = getWriteBuffer();
-                serializeToBuffer(buff, changed, c, lastChunk);
+                if (mvStore.getCompressionLevel() == 3) {
+                    trainDictionaries(changed);
+                }
+                Map<Page<?,?>, ByteBuffer> serializedLeaves = serializeLeavesInParallel(changed);
+                serializeToBuffer(buff, changed, c, lastChunk, serializedLeaves);
             } catch (Throwable t) {
                 lastChunkId = chunkId;
                 throw t;
@@ -1448,14 +1795,148 @@ private void serializeAndStore(boolean syncRun, ArrayList<Page<?,?>> changed, lo
         }
     }
 
-    private void serializeToBuffer(WriteBuffer buff, ArrayList<Page<?, ?>> changed, C c, C previousChunk) {
+    /**
+     * Serialize bodies of all unsaved leaf pages reachable from the changed map roots,
+     * using multiple threads. Each worker serializes a contiguous range of leaves
+     * into its own buffer, and resulting images are later copied into the chunk
+     * buffer, while page headers and positions are assigned sequentially.
+     *
+     * @param changed the changed map roots
+     * @return serialized leaf bodies, or null if parallel serialization is not used
+     * @throws ExecutionException if a worker has failed
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private Map<Page<?,?>, ByteBuffer> serializeLeavesInParallel(ArrayList<Page<?,?>> changed)
+            throws ExecutionException, InterruptedException {
+        assert serializationLock.isHeldByCurrentThread();
+        if (serializationThreads <= 1) {
+            return null;
+        }
+        ArrayList<Page<?,?>> leaves = new ArrayList<>();
+        for (Page<?,?> p : changed) {
+            if (p.getTotalCount() > 0) {
+                p.collectUnsavedLeaves(leaves);
+            }
+        }
+        int leafCount = leaves.size();
+        int workerCount = Math.min(serializationThreads, leafCount / MIN_LEAVES_PER_WORKER);
+        if (workerCount <= 1) {
+            return null;
+        }
+        if (serializationWorkers == null) {
+            serializationWorkers = Utils.createFixedThreadPool("H2-serialization-worker", serializationThreads);
+        }
+        int compressionLevel = mvStore.getCompressionLevel();
+        List<Future<ByteBuffer[]>> futures = new ArrayList<>(workerCount);
+        for (int i = 0; i < workerCount; i++) {
+            List<Page<?,?>> range = leaves.subList(
+                    (int) ((long) leafCount * i / workerCount), (int) ((long) leafCount * (i + 1) / workerCount));
+            futures.add(serializationWorkers.submit(() -> serializeLeaves(range, compressionLevel)));
+        }
+        Map<Page<?,?>, ByteBuffer> result = new IdentityHashMap<>(leafCount);
+        int index = 0;
+        for (Future<ByteBuffer[]> future : futures) {
+            for (ByteBuffer body : future.get()) {
+                result.put(leaves.get(index++), body);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Make sure that the changed maps have compression dictionaries, if
+     * possible. The dictionary of a map is trained once, from samples of its
+     * unsaved leaf pages, and is kept in the layout map. Until then, pages of
+     * the map are compressed without dictionary.
+     *
+     * @param changed the changed map roots
+     */
+    private void trainDictionaries(ArrayList<Page<?,?>> changed) {
+        assert serializationLock.isHeldByCurrentThread();
+        // forget samples of removed maps
+        dictionarySamples.keySet().removeIf(id -> !layout.containsKey(MVMap.getMapRootKey(id)));
+        for (Page<?,?> p : changed) {
+            int mapId = p.getMapId();
+            if (mapId == layout.getId() || p.getTotalCount() == 0) {
+                continue;
+            }
+            String key = getDictionaryKey(mapId);
+            CompressLZFDictionary compressor = dictionaries.get(mapId);
+            if (compressor != null) {
+                if (!layout.containsKey(key)) {
+                    // the entry was lost by a rollback, but pages may still use it
+                    layout.put(key, StringUtils.convertBytesToHex(compressor.getDictionary()));
+                }
+                continue;
+            }
+            if (getDictionaryCompressor(mapId) != null) {
+                continue;
+            }
+            ArrayList<byte[]> samples = dictionarySamples.computeIfAbsent(mapId, k -> new ArrayList<>());
+            int sampleSize = 0;
+            for (byte[] sample : samples) {
+                sampleSize += sample.length;
+            }
+            ArrayList<Page<?,?>> leaves = new ArrayList<>();
+            p.collectUnsavedLeaves(leaves);
+            WriteBuffer buff = new WriteBuffer();
+            for (int i = 0; i < leaves.size() && i < DICTIONARY_SAMPLE_PAGES; i++) {
+                buff.clear();
+                leaves.get(i).writeBody(buff, null, 0);
+                // skip the page type
+                byte[] sample = new byte[buff.position() - 1];
+                buff.getBuffer().position(1).get(sample);
+                samples.add(sample);
+                sampleSize += sample.length;
+            }
+            if (sampleSize >= DICTIONARY_SAMPLE_SIZE) {
+                dictionarySamples.remove(mapId);
+                byte[] dict = CompressLZFDictionary.train(samples, CompressLZFDictionary.DEFAULT_DICTIONARY_SIZE);
+                if (dict.length >= MIN_DICTIONARY_SIZE) {
+                    dictionaries.put(mapId, new CompressLZFDictionary(dict));
+                    layout.put(key, StringUtils.convertBytesToHex(dict));
+                }
+            }
+        }
+    }
+
+    private ByteBuffer[] serializeLeaves(List<Page<?,?>> leaves, int compressionLevel) {
+        Compressor compressor = compressionLevel <= 0 ? null
+                : compressionLevel == 2 ? new CompressDeflate() : new CompressLZF();
+        WriteBuffer buff = new WriteBuffer();
+        int size = leaves.size();
+        int[] ends = new int[size];
+        for (int i = 0; i < size; i++) {
+            Page<?,?> leaf = leaves.get(i);
+            Compressor dictionaryCompressor = compressionLevel == 3 ? getDictionaryCompressor(leaf.getMapId()) : null;
+            if (dictionaryCompressor != null) {
+                leaf.writeBody(buff, dictionaryCompressor, compressionLevel);
+            } else {
+                leaf.writeBody(buff, compressor, compressionLevel == 3 ? 1 : compressionLevel);
+            }
+            ends[i] = buff.position();
+        }
+        ByteBuffer buffer = buff.getBuffer();
+        ByteBuffer[] bodies = new ByteBuffer[size];
+        int start = 0;
+        for (int i = 0; i < size; i++) {
+            ByteBuffer body = buffer.duplicate();
+            body.limit(ends[i]).position(start);
+            bodies[i] = body.slice();
+            start = ends[i];
+        }
+        return bodies;
+    }
+
+    private void serializeToBuffer(WriteBuffer buff, ArrayList<Page<?, ?>> changed, C c, C previousChunk,
+            Map<Page<?,?>, ByteBuffer> serializedLeaves) {
         // need to patch the header later
         int headerLength = c.estimateHeaderSize();
         buff.position(headerLength);
         c.next = headerLength;
 
         long version = c.version;
-        PageSerializationManager pageSerializationManager = new PageSerializationManager(c, buff);
+        PageSerializationManager pageSerializationManager = new PageSerializationManager(c, buff, serializedLeaves);
         for (Page<?,?> p : changed) {
             String key = MVMap.getMapRootKey(p.getMapId());
             if (p.getTotalCount() == 0) {
@@ -1536,6 +2017,7 @@ private void storeBuffer(C c, WriteBuffer buff) {
             c.buffer = null;
             releaseWriteBuffer(buff);
         }
+        mvStore.onChunkStored(c.version);
     }
 
     /**
@@ -1692,6 +2174,33 @@ public void setCacheSize(int mb) {
             cache.setMaxMemory(bytes);
             cache.clear();
         }
+        if (offHeapCache != null) {
+            offHeapCache.clear();
+        }
+    }
+
+    /**
+     * Get the maximum size of the off-heap page cache, in MB.
+     *
+     * @return the cache size, 0 if the off-heap cache is disabled
+     */
+    public int getOffHeapCacheSize() {
+        if (offHeapCache == null) {
+            return 0;
+        }
+        return (int) (offHeapCache.getMaxMemory() >> 20);
+    }
+
+    /**
+     * Get the amount of memory used by the off-heap page cache, in MB.
+     *
+     * @return the amount of memory used
+     */
+    public int getOffHeapCacheSizeUsed() {
+        if (offHeapCache == null) {
+            return 0;
+        }
+        return (int) (offHeapCache.getUsedMemory() >> 20);
     }
 
     void cacheToC(C chunk, long[] toc) {
@@ -1718,7 +2227,18 @@ public void populateInfo(BiConsumer<String, String> consumer) {
         consumer.accept("info.CACHE_MAX_SIZE", Integer.toString(getCacheSize()));
         consumer.accept("info.CACHE_SIZE", Integer.toString(getCacheSizeUsed()));
         consumer.accept("info.CACHE_HIT_RATIO", Integer.toString(getCacheHitRatio()));
+        consumer.accept("info.CACHE_EVICTIONS", Long.toString(cache == null ? 0 : cache.getEvictions()));
         consumer.accept("info.TOC_CACHE_HIT_RATIO", Integer.toString(getTocCacheHitRatio()));
+        consumer.accept("info.COMPACT_RATE", Long.toString(getAutoCompactRate()));
+        consumer.accept("info.COMPACT_REWRITTEN_BYTES", Long.toString(getCompactRewrittenBytes()));
+        consumer.accept("info.COMPACT_REWRITTEN_CHUNKS", Long.toString(getCompactRewrittenChunks()));
+        consumer.accept("info.COMPACT_MOVED_BYTES", Long.toString(getCompactMovedBytes()));
+        consumer.accept("info.COMPACT_THROTTLED", Long.toString(getCompactThrottledCount()));
+        if (offHeapCache != null) {
+            consumer.accept("info.OFF_HEAP_CACHE_MAX_SIZE", Integer.toString(getOffHeapCacheSize()));
+            consumer.accept("info.OFF_HEAP_CACHE_SIZE", Integer.toString(getOffHeapCacheSizeUsed()));
+            consumer.accept("info.OFF_HEAP_CACHE_HIT_RATIO", Integer.toString(getOffHeapCacheHitRatio()));
+        }
     }
 
 
@@ -1730,6 +2250,14 @@ public int getTocCacheHitRatio() {
         return getCacheHitRatio(chunksToC);
     }
 
+    public int getOffHeapCacheHitRatio() {
+        if (offHeapCache == null) {
+            return 0;
+        }
+        long hits = offHeapCache.getHits();
+        return (int) (100 * hits / (hits + offHeapCache.getMisses() + 1));
+    }
+
     private static int getCacheHitRatio(CacheLongKeyLIRS<?> cache) {
         if (cache == null) {
             return 0;
@@ -1782,12 +2310,15 @@ private Iterable<C> findOldChunks(int writeLimit, int targetFillRate) {
         long time = getTimeSinceCreation();
 
         // the queue will contain chunks we want to free up
-        // the smaller the collectionPriority, the more desirable this chunk's re-write is
+        // the smaller the collectionPriority, the more desirable this chunk's re-write is:
+        // the cost of a re-write is the amount of live data in the chunk,
+        // and the benefit is the amount of space reclaimed,
+        // older chunks are preferred, because their live data is less likely to change soon
         // queue will be ordered in descending order of collectionPriority values,
         // so most desirable chunks will stay at the tail
         PriorityQueue<C> queue = new PriorityQueue<>(this.chunks.size() / 4 + 1,
                 (o1, o2) -> {
-                    int comp = Integer.compare(o2.collectPriority, o1.collectPriority);
+                    int comp = Double.compare(o2.collectPriority, o1.collectPriority);
                     if (comp == 0) {
                         comp = Long.compare(o2.maxLenLive, o1.maxLenLive);
                     }
@@ -1808,7 +2339,10 @@ private Iterable<C> findOldChunks(int writeLimit, int targetFillRate) {
             int fillRate = chunk.getFillRate();
             if (isRewritable(chunk, time) && fillRate <= targetFillRate) {
                 long age = Math.max(1, latestVersion - chunk.version);
-                chunk.collectPriority = (int) (fillRate * 1000 / age);
+                long reclaimable = chunk.maxLen - chunk.maxLenLive;
+                // not scaled and truncated to an integer, as the priority of
+                // most candidates is below 1
+                chunk.collectPriority = chunk.maxLenLive / ((reclaimable + 1d) * age);
                 totalSize += chunk.maxLenLive;
                 queue.offer(chunk);
                 while (totalSize > writeLimit) {
@@ -1859,6 +2393,10 @@ protected boolean rewriteChunks(int writeLimit, int targetFillRate) {
                 Iterable<C> old = findOldChunks(writeLimit, targetFillRate);
                 if (old != null) {
                     HashSet<Integer> idSet = createIdSet(old);
+                    for (C c : old) {
+                        compactRewrittenBytes.addAndGet(c.maxLenLive);
+                    }
+                    compactRewrittenChunks.addAndGet(idSet.size());
                     return !idSet.isEmpty() && compactRewrite(idSet) > 0;
                 }
             } finally {
@@ -1958,37 +2496,10 @@ <K,V> Page<K,V> readPage(MVMap<K,V> map, long pos) {
             }
             Page<K,V> page = readPageFromCache(pos);
             if (page == null) {
-                C chunk = getChunk(pos);
-                int pageOffset = DataUtils.getPageOffset(pos);
-                while(true) {
-                    MVStoreException exception = null;
-                    ByteBuffer buff = chunk.buffer;
-                    boolean alreadySaved = buff == null;
-                    if (alreadySaved) {
-                        buff = chunk.readBufferForPage(this, pageOffset, pos);
-                    } else {
-//                        System.err.println("Using unsaved buffer " + chunk.id + "/" + pageOffset);
-                        buff = buff.duplicate();
-                        buff.position(pageOffset);
-                        buff = buff.slice();
-                    }
-                    try {
-                        page = Page.read(buff, pos, map);
-                    } catch (MVStoreException e) {
-                        exception = e;
-                    } catch (Exception e) {
-                        exception = DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
-                                "Unable to read the page at position 0x{0}, chunk {1}, offset 0x{3}",
-                                Long.toHexString(pos), chunk, Long.toHexString(pageOffset), e);
-                    }
-                    if (alreadySaved) {
-                        if (exception == null) {
-                            break;
-                        }
-                        throw exception;
-                    }
+                page = awaitPendingRead(pos);
+                if (page == null) {
+                    page = readPageFromFile(map, pos);
                 }
-                cachePage(page);
             }
             return page;
         } catch (MVStoreException e) {
@@ -1999,6 +2510,172 @@ <K,V> Page<K,V> readPage(MVMap<K,V> map, long pos) {
         }
     }
 
+    private <K,V> Page<K,V> readPageFromFile(MVMap<K,V> map, long pos) {
+        Page<K,V> page = readPageFromOffHeapCache(map, pos);
+        if (page != null) {
+            cachePage(page);
+            return page;
+        }
+        C chunk = getChunk(pos);
+        int pageOffset = DataUtils.getPageOffset(pos);
+        while(true) {
+            MVStoreException exception = null;
+            ByteBuffer buff = chunk.buffer;
+            boolean alreadySaved = buff == null;
+            long block = chunk.block;
+            if (alreadySaved) {
+                buff = chunk.readBufferForPage(this, pageOffset, pos);
+            } else {
+//                        System.err.println("Using unsaved buffer " + chunk.id + "/" + pageOffset);
+                buff = buff.duplicate();
+                buff.position(pageOffset);
+                buff = buff.slice();
+            }
+            ByteBuffer image = alreadySaved && offHeapCache != null ? buff.duplicate() : null;
+            try {
+                page = Page.read(buff, pos, map);
+            } catch (MVStoreException e) {
+                exception = e;
+            } catch (Exception | InternalError e) {
+                // InternalError is thrown on access to a memory mapped file beyond its end
+                exception = DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                        "Unable to read the page at position 0x{0}, chunk {1}, offset 0x{3}",
+                        Long.toHexString(pos), chunk, Long.toHexString(pageOffset), e);
+            }
+            if (alreadySaved) {
+                if (!buff.hasArray() && chunk.block != block) {
+                    // a view of a memory mapped file, the chunk was moved
+                    // while reading and its old space might have been re-used
+                    continue;
+                }
+                if (exception == null) {
+                    if (image != null) {
+                        cacheOffHeap(pos, image);
+                    }
+                    break;
+                }
+                throw exception;
+            }
+        }
+        cachePage(page);
+        return page;
+    }
+
+    private <K,V> Page<K,V> readPageFromOffHeapCache(MVMap<K,V> map, long pos) {
+        if (offHeapCache != null) {
+            ByteBuffer image = offHeapCache.get(pos);
+            if (image != null) {
+                try {
+                    return Page.read(image, pos, map);
+                } catch (MVStoreException e) {
+                    // stale image, the page will be read from the file
+                    offHeapCache.remove(pos);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void cacheOffHeap(long pos, ByteBuffer image) {
+        // the buffer may extend beyond the end of the page, keep only the page
+        // itself, the stored page length covers the whole page
+        int length = Math.min(image.remaining(), image.getInt(image.position()));
+        image.limit(image.position() + length);
+        offHeapCache.put(pos, image);
+    }
+
+    /**
+     * Start asynchronous reads of the pages at the given positions, so that
+     * they are loaded into the page cache by the time they are needed.
+     * Positions of unsaved, cached, or already requested pages are skipped.
+     * This method does nothing if asynchronous reads are disabled, or there
+     * are too many reads already queued.
+     *
+     * @param map the map
+     * @param positions the page positions
+     * @param from the index of the first position (inclusive)
+     * @param to the index of the last position (exclusive)
+     */
+    <K,V> void prefetchPages(MVMap<K,V> map, long[] positions, int from, int to) {
+        ThreadPoolExecutor executor = getReadExecutor();
+        if (executor == null) {
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            if (executor.getQueue().size() >= asyncReadThreads * MAX_QUEUED_READS_PER_THREAD) {
+                break;
+            }
+            long pos = positions[i];
+            if (DataUtils.isPageSaved(pos) && !pendingReads.containsKey(pos)
+                    && (cache == null || !cache.containsKey(pos))) {
+                submitRead(executor, map, pos);
+            }
+        }
+    }
+
+    /**
+     * Get the number of leaf pages to read ahead during sequential scans.
+     *
+     * @return the number of pages, 0 if read-ahead is disabled
+     */
+    int getReadAheadPages() {
+        return readAheadPages;
+    }
+
+    private <K,V> void submitRead(ThreadPoolExecutor executor, MVMap<K,V> map, long pos) {
+        CompletableFuture<Page<?,?>> future = new CompletableFuture<>();
+        if (pendingReads.putIfAbsent(pos, future) == null) {
+            try {
+                executor.execute(() -> {
+                    try {
+                        Page<K,V> page = readPageFromCache(pos);
+                        future.complete(page != null ? page : readPageFromFile(map, pos));
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    } finally {
+                        pendingReads.remove(pos, future);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pendingReads.remove(pos, future);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Wait for the asynchronous read of the page at the given position,
+     * if there is one in progress.
+     *
+     * @param pos the page position
+     * @return the page, or null if there is no read in progress, or it has failed
+     */
+    @SuppressWarnings("unchecked")
+    private <K,V> Page<K,V> awaitPendingRead(long pos) {
+        CompletableFuture<Page<?,?>> future = pendingReads.isEmpty() ? null : pendingReads.get(pos);
+        if (future != null) {
+            try {
+                return (Page<K,V>) future.join();
+            } catch (CancellationException | CompletionException ignore) {
+                // the page will be read synchronously, reporting the error if any
+            }
+        }
+        return null;
+    }
+
+    private ThreadPoolExecutor getReadExecutor() {
+        ThreadPoolExecutor executor = readExecutor;
+        if (executor == null && asyncReadThreads > 0 && !closed) {
+            synchronized (pendingReads) {
+                executor = readExecutor;
+                if (executor == null && !closed) {
+                    readExecutor = executor = Utils.createFixedThreadPool("H2-read", asyncReadThreads);
+                }
+            }
+        }
+        return executor;
+    }
+
     /**
      * Get the chunk for the given position.
      *
@@ -2054,6 +2731,9 @@ private void clearCaches() {
         if (cache != null) {
             cache.clear();
         }
+        if (offHeapCache != null) {
+            offHeapCache.clear();
+        }
         if (chunksToC != null) {
             chunksToC.clear();
         }
@@ -2102,16 +2782,28 @@ public void accountForRemovedPage(long pos, long version, boolean pinned, int pa
         private final C chunk;
         private final WriteBuffer buff;
         private final List<Long> toc = new ArrayList<>();
+        private final Map<Page<?,?>, ByteBuffer> serializedLeaves;
 
-        PageSerializationManager(C chunk, WriteBuffer buff) {
+        PageSerializationManager(C chunk, WriteBuffer buff, Map<Page<?,?>, ByteBuffer> serializedLeaves) {
             this.chunk = chunk;
             this.buff = buff;
+            this.serializedLeaves = serializedLeaves;
         }
 
         public WriteBuffer getBuffer() {
             return buff;
         }
 
+        /**
+         * Get the body of the page, serialized in advance by a parallel worker.
+         *
+         * @param page the page
+         * @return the serialized page body, or null if it has to be serialized now
+         */
+        ByteBuffer getSerializedBody(Page<?,?> page) {
+            return serializedLeaves == null ? null : serializedLeaves.get(page);
+        }
+
         private int getChunkId() {
             return chunk.id;
         }
@@ -10,7 +10,10 @@
 import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -1868,6 +1871,220 @@ public V operate(K key, V value, DecisionMaker<? super V> decisionMaker) {
         }
     }
 
+    /**
+     * Add, replace or remove a batch of key-value pairs. All the changes are
+     * made with the root locked once, and are published by a single root
+     * update. Pages, which are copied by this operation, are modified in place
+     * by the subsequent changes of the batch, so each page is copied at most
+     * once. The keys should therefore be sorted, so that the changes of a page
+     * are close to each other, but this is not required.
+     * <p>
+     * The decision maker is reset before each key, and it is invoked exactly
+     * as by {@link #operate(Object, Object, DecisionMaker)}. As the root is
+     * locked, other writers have to wait until the whole batch is applied, so
+     * the decision maker should not block.
+     *
+     * @param keys the keys (may not contain null)
+     * @param values the new values, or null if removal is intended
+     * @param decisionMaker command object to make choices for each key
+     * @return the number of entries which were added, replaced or removed
+     */
+    public int operateBatch(List<? extends K> keys, List<? extends V> values,
+            DecisionMaker<? super V> decisionMaker) {
+        int size = keys.size();
+        if (values != null && values.size() != size) {
+            throw DataUtils.newIllegalArgumentException(
+                    "Batch of {0} keys and {1} values", size, values.size());
+        }
+        if (size == 0) {
+            return 0;
+        }
+        RootReference<K,V> rootReference = flushAndGetRoot();
+        if (!rootReference.isLockedByCurrentThread()) {
+            beforeWrite();
+            rootReference = lockRoot(rootReference, 1);
+        }
+        Page<K,V> rootPage = rootReference.root;
+        long version = rootReference.version;
+        // pages, created by this batch, which are not visible to others yet
+        Set<Page<K,V>> created = Collections.newSetFromMap(new IdentityHashMap<>());
+        // pages of the previous root, which are replaced by this batch
+        ArrayList<Page<K,V>> replaced = new ArrayList<>();
+        IntValueHolder changes = new IntValueHolder();
+        try {
+            for (int i = 0; i < size; i++) {
+                K key = keys.get(i);
+                V value = values == null ? null : values.get(i);
+                decisionMaker.reset();
+                Page<K,V> newRootPage;
+                while ((newRootPage = operateInBatch(rootPage, key, value, decisionMaker, created,
+                        replaced, changes)) == null) {
+                    decisionMaker.reset();
+                }
+                rootPage = newRootPage;
+            }
+        } finally {
+            try {
+                if (isPersistent()) {
+                    int unsavedMemory = getCreatedPagesMemory(rootPage, created);
+                    for (Page<K,V> page : replaced) {
+                        unsavedMemory += page.removePage(version);
+                    }
+                    registerUnsavedMemory(unsavedMemory);
+                }
+            } finally {
+                unlockRoot(rootPage);
+            }
+        }
+        return changes.value;
+    }
+
+    /**
+     * Apply a single change of a batch to the tree, while the root is locked.
+     *
+     * @param rootPage the current root page
+     * @param key the key
+     * @param value the provided value
+     * @param decisionMaker the decision maker
+     * @param created the pages created by this batch so far
+     * @param replaced the pages of the original tree, replaced so far
+     * @param changes the number of changes, incremented if the map is changed
+     * @return the new root page, the same root page if nothing was changed,
+     *         or null if the operation has to be repeated
+     */
+    private Page<K,V> operateInBatch(Page<K,V> rootPage, K key, V value,
+            DecisionMaker<? super V> decisionMaker, Set<Page<K,V>> created, List<Page<K,V>> replaced,
+            IntValueHolder changes) {
+        CursorPos<K,V> pos = CursorPos.traverseDown(rootPage, key);
+        CursorPos<K,V> tip = pos;
+        Page<K,V> p = pos.page;
+        int index = pos.index;
+        pos = pos.parent;
+        V result = index < 0 ? null : p.getValue(index);
+        Decision decision = decisionMaker.decide(result, value, tip);
+        switch (decision) {
+            case REPEAT:
+                return null;
+            case ABORT:
+                return rootPage;
+            case REMOVE: {
+                if (index < 0) {
+                    return rootPage;
+                }
+                if (p.getTotalCount() == 1 && pos != null) {
+                    int keyCount;
+                    do {
+                        p = pos.page;
+                        index = pos.index;
+                        pos = pos.parent;
+                        keyCount = p.getKeyCount();
+                    } while (keyCount == 0 && pos != null);
+                    if (keyCount <= 1) {
+                        if (keyCount == 1) {
+                            assert index <= 1;
+                            p = p.getChildPage(1 - index);
+                        } else {
+                            p = Page.createEmptyLeaf(this);
+                            created.add(p);
+                        }
+                        break;
+                    }
+                }
+                p = copyInBatch(p, created);
+                p.remove(index);
+                break;
+            }
+            case PUT: {
+                value = decisionMaker.selectValue(result, value);
+                p = copyInBatch(p, created);
+                if (index < 0) {
+                    p.insertLeaf(-index - 1, key, value);
+                    int keyCount;
+                    while ((keyCount = p.getKeyCount()) > store.getKeysPerPage()
+                            || p.getMemory() > store.getMaxPageSize()
+                            && keyCount > (p.isLeaf() ? 1 : 2)) {
+                        long totalCount = p.getTotalCount();
+                        int at = keyCount >> 1;
+                        K k = p.getKey(at);
+                        Page<K,V> split = p.split(at);
+                        created.add(split);
+                        if (pos == null) {
+                            K[] keys = p.createKeyStorage(1);
+                            keys[0] = k;
+                            Page.PageReference<K,V>[] children = Page.createRefStorage(2);
+                            children[0] = new Page.PageReference<>(p);
+                            children[1] = new Page.PageReference<>(split);
+                            p = Page.createNode(this, keys, children, totalCount, 0);
+                            created.add(p);
+                            break;
+                        }
+                        Page<K,V> c = p;
+                        p = copyInBatch(pos.page, created);
+                        index = pos.index;
+                        pos = pos.parent;
+                        p.setChild(index, split);
+                        p.insertNode(index, k, c);
+                    }
+                } else {
+                    p.setValue(index, value);
+                }
+                break;
+            }
+        }
+        changes.value++;
+        // all pages on the path are either replaced or removed
+        for (CursorPos<K,V> head = tip; head != null; head = head.parent) {
+            if (!created.contains(head.page)) {
+                replaced.add(head.page);
+            }
+        }
+        while (pos != null) {
+            Page<K,V> parent = pos.page;
+            // condition below should always be true, but older versions (up to 1.4.197)
+            // may create single-childed (with no keys) internal nodes, which we skip here
+            if (parent.getKeyCount() > 0) {
+                Page<K,V> child = p;
+                p = copyInBatch(parent, created);
+                p.setChild(pos.index, child);
+            }
+            pos = pos.parent;
+        }
+        return p;
+    }
+
+    private static <K,V> Page<K,V> copyInBatch(Page<K,V> page, Set<Page<K,V>> created) {
+        if (created.contains(page)) {
+            return page;
+        }
+        Page<K,V> copy = page.copy();
+        created.add(copy);
+        return copy;
+    }
+
+    /**
+     * Calculate the memory of the pages created by a batch, which are still
+     * reachable from the new root.
+     *
+     * @param page the root of the subtree
+     * @param created the pages created by the batch
+     * @return the amount of memory
+     */
+    private static <K,V> int getCreatedPagesMemory(Page<K,V> page, Set<Page<K,V>> created) {
+        if (!created.contains(page)) {
+            return 0;
+        }
+        int memory = page.getMemory();
+        if (!page.isLeaf()) {
+            for (int i = 0, l = page.getRawChildPageCount(); i < l; i++) {
+                // pages created by this batch are never saved
+                if (page.getChildPagePos(i) == 0) {
+                    memory += getCreatedPagesMemory(page.getChildPage(i), created);
+                }
+            }
+        }
+        return memory;
+    }
+
     private RootReference<K,V> lockRoot(RootReference<K,V> rootReference, int attempt) {
         while(true) {
             RootReference<K,V> lockedRootReference = tryLock(rootReference, attempt++);
@@ -2100,6 +2317,301 @@ public String toString() {
         }
     }
 
+    /**
+     * Create a bulk loader, which fills this empty map with sorted entries.
+     *
+     * @return the bulk loader
+     * @throws IllegalArgumentException if the map is not empty
+     */
+    public BulkLoader<K,V> createBulkLoader() {
+        return new BulkLoader<>(this);
+    }
+
+    /**
+     * A bulk loader, which builds the tree of an empty map bottom-up from a
+     * stream of entries in ascending key order. Leaf and node pages are filled
+     * completely and created only once, instead of being split and copied
+     * over and over again, as with one insert at a time.
+     * <p>
+     * Whenever the completed pages use more memory than the auto-commit
+     * threshold of the store, the tree built so far is published as the root
+     * of the map, so that the completed pages can be written to the file and
+     * evicted from memory. Only the pages on the right edge of the tree are
+     * re-created by the next publication. Entries are therefore visible to
+     * readers before the load is finished, and the map must not be modified
+     * otherwise until then.
+     * <p>
+     * Instances of this class are not thread-safe.
+     *
+     * @param <K> the key class
+     * @param <V> the value class
+     */
+    public static final class BulkLoader<K,V> {
+
+        private final MVMap<K,V> map;
+
+        private final int keysPerPage;
+
+        private final long maxPageSize;
+
+        private final boolean persistent;
+
+        /**
+         * The entries of the current leaf page.
+         */
+        private K[] keys;
+
+        private V[] values;
+
+        private int keyCount;
+
+        private long leafMemory;
+
+        /**
+         * The levels of the node pages, which are not complete yet, the lowest
+         * level first.
+         */
+        private final ArrayList<Level<K,V>> levels = new ArrayList<>();
+
+        /**
+         * The memory of the completed pages, which is not yet registered
+         * with the store.
+         */
+        private int unsavedMemory;
+
+        /**
+         * The root page of the map, as published last time.
+         */
+        private Page<K,V> publishedRoot;
+
+        /**
+         * The pages on the right edge of the published tree, which are
+         * replaced by the next publication.
+         */
+        private final ArrayList<Page<K,V>> publishedEdge = new ArrayList<>();
+
+        private boolean finished;
+
+        BulkLoader(MVMap<K,V> map) {
+            this.map = map;
+            publishedRoot = map.getRoot().root;
+            DataUtils.checkArgument(publishedRoot.getTotalCount() == 0,
+                    "Map {0} is not empty", map.getId());
+            keysPerPage = map.store.getKeysPerPage();
+            persistent = map.isPersistent();
+            maxPageSize = persistent ? map.store.getMaxPageSize() : Long.MAX_VALUE;
+            keys = publishedRoot.createKeyStorage(keysPerPage);
+            values = publishedRoot.createValueStorage(keysPerPage);
+        }
+
+        /**
+         * Add an entry. The key must be larger than the key of the previous
+         * entry.
+         *
+         * @param key the key
+         * @param value the value
+         */
+        public void add(K key, V value) {
+            if (finished) {
+                throw DataUtils.newMVStoreException(DataUtils.ERROR_CLOSED, "Bulk load is finished");
+            }
+            if (keyCount > 0) {
+                DataUtils.checkArgument(map.compare(keys[keyCount - 1], key) < 0,
+                        "Keys are not in ascending order: {0} >= {1}", keys[keyCount - 1], key);
+                if (keyCount >= keysPerPage || leafMemory > maxPageSize) {
+                    completeLeaf();
+                }
+            }
+            keys[keyCount] = key;
+            values[keyCount++] = value;
+            if (persistent) {
+                leafMemory += 2 * MEMORY_POINTER + map.evaluateMemoryForKey(key) + map.evaluateMemoryForValue(value);
+            }
+        }
+
+        /**
+         * Complete the tree, and set it as the root of the map.
+         */
+        public void finish() {
+            if (!finished) {
+                finished = true;
+                if (keyCount > 0) {
+                    completeLeaf();
+                }
+                if (!levels.isEmpty()) {
+                    publish(false);
+                }
+            }
+        }
+
+        private void completeLeaf() {
+            Page<K,V> leaf = Page.createLeaf(map, Arrays.copyOf(keys, keyCount), Arrays.copyOf(values, keyCount), 0);
+            K firstKey = keys[0];
+            Arrays.fill(keys, 0, keyCount, null);
+            Arrays.fill(values, 0, keyCount, null);
+            keyCount = 0;
+            leafMemory = 0;
+            addChild(0, new Page.PageReference<>(leaf), firstKey, leaf.getMemory());
+            if (persistent && !finished) {
+                int autoCommitMemory = map.store.getAutoCommitMemory();
+                if (autoCommitMemory > 0 && unsavedMemory > autoCommitMemory) {
+                    publish(true);
+                }
+            }
+        }
+
+        private void addChild(int levelIndex, Page.PageReference<K,V> child, K firstKey, int memory) {
+            if (levelIndex == levels.size()) {
+                levels.add(new Level<>(keysPerPage));
+            }
+            Level<K,V> level = levels.get(levelIndex);
+            if (level.childCount > keysPerPage || level.childCount > 1 && level.memory > maxPageSize) {
+                Page<K,V> node = level.createNode(map);
+                K nodeFirstKey = level.firstKey;
+                level.clear();
+                addChild(levelIndex + 1, new Page.PageReference<>(node), nodeFirstKey, node.getMemory());
+            }
+            level.add(child, firstKey, persistent ? map.evaluateMemoryForKey(firstKey) : 0);
+            unsavedMemory += memory;
+        }
+
+        /**
+         * Set the tree built so far as the root of the map.
+         *
+         * @param commitIfNeeded whether to let the store persist the changes,
+         *        if needed
+         */
+        private void publish(boolean commitIfNeeded) {
+            ArrayList<Page<K,V>> edge = new ArrayList<>();
+            Page.PageReference<K,V> carry = null;
+            K carryKey = null;
+            if (keyCount > 0) {
+                Page<K,V> leaf = Page.createLeaf(map, Arrays.copyOf(keys, keyCount),
+                        Arrays.copyOf(values, keyCount), 0);
+                edge.add(leaf);
+                carry = new Page.PageReference<>(leaf);
+                carryKey = keys[0];
+            }
+            for (int i = 0, size = levels.size(); i < size; i++) {
+                Level<K,V> level = levels.get(i);
+                int childCount = level.childCount + (carry == null ? 0 : 1);
+                if (childCount == 1 && i == size - 1) {
+                    break;
+                } else if (childCount == 1) {
+                    if (carry == null) {
+                        carry = level.children[0];
+                        carryKey = level.firstKey;
+                    }
+                    continue;
+                }
+                Page<K,V> node = level.createNode(map, carry, carryKey);
+                edge.add(node);
+                carry = new Page.PageReference<>(node);
+                carryKey = level.firstKey;
+            }
+            if (carry == null) {
+                carry = levels.get(levels.size() - 1).children[0];
+            }
+            Page<K,V> root = carry.getPage();
+            if (root == null) {
+                root = map.readPage(carry.getPos());
+            }
+            int memory = unsavedMemory;
+            for (Page<K,V> page : edge) {
+                memory += page.getMemory();
+            }
+            RootReference<K,V> rootReference = map.lockRoot(map.flushAndGetRoot(), 1);
+            Page<K,V> newRoot = rootReference.root;
+            try {
+                if (newRoot != publishedRoot) {
+                    throw DataUtils.newMVStoreException(DataUtils.ERROR_INTERNAL,
+                            "Map {0} was modified during bulk load", map.getId());
+                }
+                long version = rootReference.version;
+                for (Page<K,V> page : publishedEdge) {
+                    memory += page.removePage(version);
+                }
+                newRoot = root;
+            } finally {
+                map.unlockRoot(newRoot);
+            }
+            publishedRoot = root;
+            publishedEdge.clear();
+            publishedEdge.addAll(edge);
+            unsavedMemory = 0;
+            map.registerUnsavedMemory(memory);
+            if (commitIfNeeded) {
+                map.beforeWrite();
+            }
+        }
+    }
+
+    /**
+     * The children of a node page, which is not complete yet.
+     */
+    private static final class Level<K,V> {
+
+        final K[] keys;
+
+        final Page.PageReference<K,V>[] children;
+
+        int childCount;
+
+        /**
+         * The first key of the subtree.
+         */
+        K firstKey;
+
+        long totalCount;
+
+        long memory;
+
+        @SuppressWarnings("unchecked")
+        Level(int keysPerPage) {
+            keys = (K[]) new Object[keysPerPage];
+            children = Page.createRefStorage(keysPerPage + 1);
+        }
+
+        void add(Page.PageReference<K,V> child, K key, int keyMemory) {
+            if (childCount == 0) {
+                firstKey = key;
+            } else {
+                keys[childCount - 1] = key;
+                memory += MEMORY_POINTER + keyMemory;
+            }
+            children[childCount++] = child;
+            totalCount += child.count;
+            memory += MEMORY_POINTER + Page.PAGE_MEMORY_CHILD;
+        }
+
+        Page<K,V> createNode(MVMap<K,V> map) {
+            return createNode(map, null, null);
+        }
+
+        Page<K,V> createNode(MVMap<K,V> map, Page.PageReference<K,V> last, K lastFirstKey) {
+            int count = childCount + (last == null ? 0 : 1);
+            K[] nodeKeys = map.getKeyType().createStorage(count - 1);
+            System.arraycopy(keys, 0, nodeKeys, 0, childCount - 1);
+            Page.PageReference<K,V>[] nodeChildren = Arrays.copyOf(children, count);
+            long nodeTotalCount = totalCount;
+            if (last != null) {
+                nodeKeys[count - 2] = lastFirstKey;
+                nodeChildren[count - 1] = last;
+                nodeTotalCount += last.count;
+            }
+            return Page.createNode(map, nodeKeys, nodeChildren, nodeTotalCount, 0);
+        }
+
+        void clear() {
+            Arrays.fill(keys, 0, Math.max(childCount - 1, 0), null);
+            Arrays.fill(children, 0, childCount, null);
+            childCount = 0;
+            firstKey = null;
+            totalCount = 0;
+            memory = 0;
+        }
+    }
+
     private static final class IntValueHolder {
         int value;
 
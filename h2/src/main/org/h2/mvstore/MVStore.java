@@ -17,12 +17,15 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.LongConsumer;
@@ -195,8 +198,66 @@ public final class MVStore implements AutoCloseable {
 
     private Compressor compressorHigh;
 
+    /**
+     * The time in microseconds a group commit leader waits for other commits
+     * to join, 0 if group commit is disabled.
+     */
+    private final int groupCommitWindow;
+
+    /**
+     * The monitor for group commit state.
+     */
+    private final Object groupCommitSync = new Object();
+
+    /**
+     * The number of the last commit request. Guarded by groupCommitSync.
+     */
+    private long groupCommitTicket;
+
+    /**
+     * The number of the last commit request, which changes are written and
+     * synced. Guarded by groupCommitSync.
+     */
+    private long groupCommitDoneTicket;
+
+    /**
+     * The version returned by the last group commit. Guarded by
+     * groupCommitSync.
+     */
+    private long groupCommitVersion = INITIAL_VERSION;
+
+    /**
+     * Whether some thread is writing a group commit now. Guarded by
+     * groupCommitSync.
+     */
+    private boolean groupCommitLeader;
+
+    /**
+     * The number of store operations performed by group commit.
+     */
+    private final AtomicLong groupCommitCount = new AtomicLong();
+
+    /**
+     * The futures of callers waiting for their changes to be stored, by the
+     * current version at the time they were requested.
+     */
+    private final ConcurrentSkipListMap<Long, CompletableFuture<Long>> storedFutures =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * The version of the last chunk, which was written and synced while
+     * some caller waited for it.
+     */
+    private final AtomicLong syncedVersion = new AtomicLong(INITIAL_VERSION);
+
     public final UncaughtExceptionHandler backgroundExceptionHandler;
 
+    /**
+     * The listener, which is notified when the roots of the changed maps are
+     * collected for a store operation, or null.
+     */
+    private volatile StoreListener storeListener;
+
     private volatile long currentVersion;
 
     /**
@@ -250,6 +311,7 @@ public final class MVStore implements AutoCloseable {
      */
     MVStore(Map<String, Object> config) {
         compressionLevel = DataUtils.getConfigParam(config, "compress", 0);
+        groupCommitWindow = Math.max(0, DataUtils.getConfigParam(config, "groupCommitWindow", 0));
         String fileName = (String) config.get("fileName");
         FileStore<?> fileStore = (FileStore<?>) config.get("fileStore");
         boolean fileStoreShallBeOpen = false;
@@ -287,6 +349,9 @@ public final class MVStore implements AutoCloseable {
                 }
                 fileStore.bind(this);
                 metaMap = fileStore.start();
+                if (compressionLevel == 3) {
+                    fileStore.requireFormat(FileStore.FORMAT_EXTENDED_PAGES);
+                }
             } catch (MVStoreException e) {
                 panic(e);
             } finally {
@@ -371,6 +436,7 @@ public void panic(MVStoreException e) {
             handleException(e);
             panicException = e;
         }
+        failStoredFutures(e);
         throw e;
     }
 
@@ -707,6 +773,8 @@ private void closeStore(boolean normalShutdown, int allowedCompactionTime) {
                         }
                     } finally {
                         state = STATE_CLOSED;
+                        failStoredFutures(DataUtils.newMVStoreException(
+                                DataUtils.ERROR_CLOSED, "This store is closed"));
                     }
                 }
             } finally {
@@ -763,13 +831,154 @@ private long tryCommit(Predicate<MVStore> check) {
      * flush all changes to disk.
      * <p>
      * At most one store operation may run at any time.
+     * <p>
+     * If group commit is enabled, concurrent commits are combined into a
+     * single store operation, and the file is synced before this method
+     * returns.
      *
      * @return the new version (incremented if there were changes) or -1 if there were no commit
      */
     public long commit() {
+        if (groupCommitWindow > 0 && fileStore != null && !storeLock.isHeldByCurrentThread()) {
+            return groupCommit();
+        }
         return commit(x -> true);
     }
 
+    /**
+     * Commit the changes made so far by the current thread, together with
+     * the commits of other threads which arrive within the group commit
+     * window. The first thread becomes the leader, waits for the window to
+     * pass, writes the changes and syncs the file, while the others wait for
+     * it to finish. Commits arriving during the write are handled by the next
+     * leader.
+     *
+     * @return the version returned by the store operation which covered the
+     *         changes, or -1 if there were no changes
+     */
+    private long groupCommit() {
+        long ticket;
+        synchronized (groupCommitSync) {
+            ticket = ++groupCommitTicket;
+            while (groupCommitDoneTicket < ticket) {
+                if (!groupCommitLeader) {
+                    groupCommitLeader = true;
+                    break;
+                }
+                try {
+                    groupCommitSync.wait();
+                } catch (InterruptedException e) {
+                    throw DataUtils.newMVStoreException(DataUtils.ERROR_INTERNAL, "{0}", e.toString(), e);
+                }
+            }
+            if (groupCommitDoneTicket >= ticket) {
+                return groupCommitVersion;
+            }
+        }
+        long version = INITIAL_VERSION;
+        try {
+            // give other threads a chance to join this commit
+            LockSupport.parkNanos(groupCommitWindow * 1_000L);
+            synchronized (groupCommitSync) {
+                // all commits registered so far have made their changes
+                ticket = groupCommitTicket;
+            }
+            version = commit(x -> true);
+            storeLock.lock();
+            try {
+                if (isOpenOrStopping()) {
+                    // a background commit might still be writing the changes,
+                    // wait for it before the sync
+                    fileStore.executeFileStoreOperation(fileStore::sync);
+                }
+            } finally {
+                unlockAndCheckPanicCondition();
+            }
+            groupCommitCount.incrementAndGet();
+            synchronized (groupCommitSync) {
+                groupCommitDoneTicket = ticket;
+                groupCommitVersion = version;
+            }
+        } finally {
+            synchronized (groupCommitSync) {
+                groupCommitLeader = false;
+                groupCommitSync.notifyAll();
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Get the number of store operations performed by group commit.
+     *
+     * @return the number of group commits
+     */
+    public long getGroupCommitCount() {
+        return groupCommitCount.get();
+    }
+
+    /**
+     * Get a future, which is completed when all changes made so far are
+     * written to the file and synced. This method does not store the changes
+     * itself, this is done by the next store operation (a call to commit(), or
+     * the background writer). While such a future is not completed, a store
+     * operation writes a chunk even if there are no other changes.
+     * <p>
+     * For an in-memory store the returned future is already completed.
+     *
+     * @return the future, which is completed with the version of the chunk
+     *         which contains the changes
+     */
+    public CompletableFuture<Long> getStoredFuture() {
+        checkOpen();
+        long version = currentVersion;
+        if (fileStore == null) {
+            return CompletableFuture.completedFuture(version);
+        }
+        CompletableFuture<Long> future = storedFutures.computeIfAbsent(version, v -> new CompletableFuture<>());
+        // the chunk might have been synced before the future was registered
+        long synced = syncedVersion.get();
+        if (synced > version) {
+            completeStoredFutures(synced);
+        }
+        return future;
+    }
+
+    /**
+     * Called by the file store after a chunk was written. Syncs the file
+     * and completes the futures of the changes in this chunk, if some
+     * caller waits for them.
+     *
+     * @param version the version of the chunk
+     */
+    void onChunkStored(long version) {
+        Map.Entry<Long, CompletableFuture<Long>> first = storedFutures.firstEntry();
+        if (first != null && first.getKey() < version) {
+            try {
+                fileStore.sync();
+            } catch (MVStoreException e) {
+                panic(e);
+            }
+            syncedVersion.accumulateAndGet(version, Math::max);
+            completeStoredFutures(version);
+        }
+    }
+
+    private void completeStoredFutures(long version) {
+        for (Map.Entry<Long, CompletableFuture<Long>> e;
+                (e = storedFutures.firstEntry()) != null && e.getKey() < version;) {
+            if (storedFutures.remove(e.getKey(), e.getValue())) {
+                e.getValue().complete(version);
+            }
+        }
+    }
+
+    private void failStoredFutures(Throwable ex) {
+        for (Map.Entry<Long, CompletableFuture<Long>> e; (e = storedFutures.pollFirstEntry()) != null;) {
+            e.getValue().completeExceptionally(ex);
+        }
+    }
+
     private long commit(Predicate<MVStore> check) {
         if(canStartStoreOperation()) {
             storeLock.lock();
@@ -793,7 +1002,8 @@ private boolean canStartStoreOperation() {
 
     private long store(boolean syncWrite) {
         assert storeLock.isHeldByCurrentThread();
-        if (isOpenOrStopping() && hasUnsavedChanges() && storeOperationInProgress.compareAndSet(false, true)) {
+        if (isOpenOrStopping() && (hasUnsavedChanges() || !storedFutures.isEmpty())
+                && storeOperationInProgress.compareAndSet(false, true)) {
             try {
                 @SuppressWarnings({"NonAtomicVolatileUpdate", "NonAtomicOperationOnVolatileField"})
                 long result = ++currentVersion;
@@ -840,7 +1050,19 @@ private void storeNow(boolean syncWrite) {
             long version = currentVersion;
 
             assert storeLock.isHeldByCurrentThread();
-            fileStore.storeIt(collectChangedMapRoots(version), version, syncWrite);
+            ArrayList<Page<?,?>> changed;
+            StoreListener listener = storeListener;
+            if (listener == null) {
+                changed = collectChangedMapRoots(version);
+            } else {
+                listener.beforeSnapshot();
+                try {
+                    changed = collectChangedMapRoots(version);
+                } finally {
+                    listener.afterSnapshot();
+                }
+            }
+            fileStore.storeIt(changed, version, syncWrite);
 
             // some pages might have been changed in the meantime (in the newest
             // version)
@@ -1021,6 +1243,33 @@ <K,V> Page<K,V> readPage(MVMap<K,V> map, long pos) {
         return fileStore.readPage(map, pos);
     }
 
+    /**
+     * Get the number of leaf pages a cursor reads ahead during sequential
+     * scans.
+     *
+     * @return the number of pages, 0 if read-ahead is disabled
+     */
+    int getReadAheadPages() {
+        return fileStore == null ? 0 : fileStore.getReadAheadPages();
+    }
+
+    /**
+     * Start asynchronous reads of the pages at the given positions.
+     *
+     * @param <K> key type
+     * @param <V> value type
+     *
+     * @param map the map
+     * @param positions the page positions
+     * @param from the index of the first position (inclusive)
+     * @param to the index of the last position (exclusive)
+     */
+    <K,V> void prefetchPages(MVMap<K,V> map, long[] positions, int from, int to) {
+        if (fileStore != null && !isClosed()) {
+            fileStore.prefetchPages(map, positions, from, to);
+        }
+    }
+
     /**
      * Remove a page.
      *  @param pos the position of the page
@@ -1046,6 +1295,16 @@ Compressor getCompressorHigh() {
         return compressorHigh;
     }
 
+    /**
+     * Get the compressor with the trained dictionary for the specified map.
+     *
+     * @param mapId the map id
+     * @return the compressor, or null if the map has no dictionary
+     */
+    Compressor getDictionaryCompressor(int mapId) {
+        return fileStore == null ? null : fileStore.getDictionaryCompressor(mapId);
+    }
+
     int getCompressionLevel() {
         return compressionLevel;
     }
@@ -1540,6 +1799,10 @@ public void populateInfo(BiConsumer<String, String> consumer) {
             consumer.accept("info.OLDEST_VERS_TO_KEEP", Long.toString(getOldestVersionToKeep()));
             consumer.accept("info.CURRENT_VERSION", Long.toString(getCurrentVersion()));
         }
+        if (groupCommitWindow > 0) {
+            consumer.accept("info.GROUP_COMMIT_WINDOW", Integer.toString(groupCommitWindow));
+            consumer.accept("info.GROUP_COMMIT_COUNT", Long.toString(getGroupCommitCount()));
+        }
 
         if (fileStore != null) {
             fileStore.populateInfo(consumer);
@@ -1610,6 +1873,27 @@ public int getAutoCommitDelay() {
         return fileStore == null ? 0 : fileStore.getAutoCommitDelay();
     }
 
+    /**
+     * Set the listener, which is notified when the roots of the changed maps
+     * are collected for a store operation. It can add changes, which are kept
+     * outside of the maps, so that they are stored as well.
+     *
+     * @param listener the listener, or null
+     */
+    public void setStoreListener(StoreListener listener) {
+        storeListener = listener;
+    }
+
+    /**
+     * Get the listener, which is notified when the roots of the changed maps
+     * are collected for a store operation.
+     *
+     * @return the listener, or null
+     */
+    public StoreListener getStoreListener() {
+        return storeListener;
+    }
+
     /**
      * Get the maximum memory (in bytes) used for unsaved pages. If this number
      * is exceeded, unsaved changes are stored to disk.
@@ -1799,6 +2083,24 @@ public String toString() {
         }
     }
 
+    /**
+     * A listener, which is notified when the roots of the changed maps are
+     * collected for a store operation. Both methods are called by the thread
+     * that stores the changes, while it holds the store lock.
+     */
+    public interface StoreListener {
+
+        /**
+         * Called before the roots of the changed maps are collected.
+         */
+        void beforeSnapshot();
+
+        /**
+         * Called after the roots of the changed maps are collected.
+         */
+        void afterSnapshot();
+    }
+
     /**
      * A builder for an MVStore.
      */
@@ -1872,6 +2174,59 @@ public Builder autoCompactFillRate(int percent) {
             return set("autoCompactFillRate", percent);
         }
 
+        /**
+         * Read from the file using memory mapping, so that pages are
+         * deserialized directly from the operating system's page cache,
+         * without copying the data and allocating a buffer for each read. This
+         * is useful for read-mostly stores, which fit into the page cache. The
+         * file is mapped in segments of 64 MB, as it grows. Writes still use
+         * the file channel.
+         * <p>
+         * This setting has no effect for encrypted files, in-memory stores,
+         * and file systems which do not support memory mapping.
+         *
+         * @return this
+         */
+        public Builder memoryMapped() {
+            return set("memoryMapped", 1);
+        }
+
+        /**
+         * Enable group commit. Concurrent calls to {@link MVStore#commit()}
+         * are combined: the first caller waits for the given time for other
+         * commits to arrive, then the changes of all of them are written as
+         * one chunk and the file is synced once, before all of them return.
+         * This makes commits durable and increases the throughput of many
+         * small concurrent commits, but adds the window to the latency of
+         * each commit.
+         * <p>
+         * The default value is 0 (group commit is disabled, commit does not
+         * sync the file).
+         * </p>
+         *
+         * @param micros the group commit window in microseconds
+         * @return this
+         */
+        public Builder groupCommitWindow(int micros) {
+            return set("groupCommitWindow", micros);
+        }
+
+        /**
+         * Set the maximum rate at which the background thread re-writes and
+         * moves chunks to compact the store. A lower rate reduces the impact of
+         * compaction on concurrent operations, but the file shrinks slower.
+         * Explicit calls to compact the store are not limited.
+         * <p>
+         * The default value is 0 (no limit).
+         * </p>
+         *
+         * @param kbPerSecond the rate in KB per second
+         * @return this
+         */
+        public Builder autoCompactRate(int kbPerSecond) {
+            return set("autoCompactRate", kbPerSecond);
+        }
+
         /**
          * Use the following file name. If the file does not exist, it is
          * automatically created. The parent directory already must exist.
@@ -1954,6 +2309,19 @@ public Builder cacheConcurrency(int concurrency) {
             return set("cacheConcurrency", concurrency);
         }
 
+        /**
+         * Set the size of the second level page cache in MB. This cache keeps
+         * serialized pages in direct (off-heap) buffers, and is used when a
+         * page is not found in the read cache, before reading from the file.
+         * The default is 0, meaning the second level cache is disabled.
+         *
+         * @param mb the cache size in megabytes
+         * @return this
+         */
+        public Builder offHeapCacheSize(int mb) {
+            return set("offHeapCacheSize", mb);
+        }
+
         /**
          * Compress data before writing using the LZF algorithm. This will save
          * about 50% of the disk space, but will slow down read and write
@@ -1984,6 +2352,20 @@ public Builder compressHigh() {
             return set("compress", 2);
         }
 
+        /**
+         * Compress data before writing using the LZF algorithm with a
+         * dictionary, which is trained for each map from its first pages. This
+         * achieves a better compression ratio than {@link #compress()} for
+         * small pages with repetitive content, while reading is almost as fast.
+         * <p>
+         * Files written with this setting can not be read by older versions.
+         *
+         * @return this
+         */
+        public Builder compressDictionary() {
+            return set("compress", 3);
+        }
+
         /**
          * Set the amount of memory a page should contain at most, in bytes,
          * before it is split. The default is 16 KB for persistent stores and 4
@@ -1998,6 +2380,46 @@ public Builder pageSplitSize(int pageSplitSize) {
             return set("pageSplitSize", pageSplitSize);
         }
 
+        /**
+         * Set the number of threads used to serialize changed pages when
+         * changes are stored. Leaf pages of all changed maps are serialized
+         * concurrently into separate buffers, which are then combined into a
+         * single chunk. The default is 1, meaning all pages are serialized by
+         * a single thread.
+         *
+         * @param threadCount the number of serialization threads
+         * @return this
+         */
+        public Builder serializationThreads(int threadCount) {
+            return set("serializationThreads", threadCount);
+        }
+
+        /**
+         * Set the number of threads used to read pages asynchronously. Such
+         * threads allow many page reads to be in flight at the same time, for
+         * example to prefetch pages ahead of a cursor. The default is 0,
+         * meaning pages are always read by the thread that needs them.
+         *
+         * @param threadCount the number of read threads
+         * @return this
+         */
+        public Builder asyncReadThreads(int threadCount) {
+            return set("asyncReadThreads", threadCount);
+        }
+
+        /**
+         * Set the number of leaf pages a cursor reads ahead, once it detects
+         * a sequential forward scan. Read-ahead only works if asynchronous
+         * reads are enabled, see {@link #asyncReadThreads(int)}. The default
+         * is 16.
+         *
+         * @param pageCount the number of pages, 0 to disable read-ahead
+         * @return this
+         */
+        public Builder readAheadPages(int pageCount) {
+            return set("readAheadPages", pageCount);
+        }
+
         /**
          * Set the listener to be used for exceptions that occur when writing in
          * the background thread.
@@ -11,10 +11,13 @@
 import static org.h2.mvstore.DataUtils.PAGE_TYPE_LEAF;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import org.h2.compress.Compressor;
 import org.h2.mvstore.FileStore.PageSerializationManager;
+import org.h2.mvstore.type.LongDataType;
 import org.h2.util.Utils;
+import org.h2.value.VersionedValue;
 
 /**
  * A page (a node or a leaf).
@@ -28,7 +31,7 @@
  * page number (0-based sequential number within a chunk): varInt
  * map id: varInt
  * number of keys: varInt
- * type: byte (0: leaf, 1: node; +2: compressed)
+ * type: byte (0: leaf, 1: node; +2: compressed; +4: high; +8: dictionary)
  * children of the non-leaf node (1 more than keys)
  * compressed: bytes saved (varInt)
  * keys
@@ -78,9 +81,10 @@
     private int diskSpaceUsed;
 
     /**
-     * The keys.
+     * The keys. This is a long[] array if the map uses LongDataType for keys,
+     * and a K[] array otherwise.
      */
-    private K[] keys;
+    private Object keys;
 
     /**
      * Updater for pos field, which can be updated when page is saved,
@@ -119,6 +123,11 @@
             MEMORY_POINTER +          // values
             MEMORY_ARRAY;             // Object[] values
 
+    /**
+     * The estimated number of bytes used per key of a long[] keys array.
+     */
+    private static final int LONG_KEY_MEMORY = 8;
+
     /**
      * Marker value for memory field, meaning that memory accounting is replaced by key count.
      */
@@ -133,13 +142,19 @@
     }
 
     Page(MVMap<K,V> map, Page<K,V> source) {
-        this(map, source.keys);
+        this.map = map;
+        this.keys = source.keys;
         memory = source.memory;
     }
 
     Page(MVMap<K,V> map, K[] keys) {
         this.map = map;
-        this.keys = keys;
+        this.keys = toKeyStorage(keys);
+    }
+
+    Page(MVMap<K,V> map, Object keyStorage) {
+        this.map = map;
+        this.keys = keyStorage;
     }
 
     /**
@@ -290,8 +305,13 @@ public final int getMapId() {
      * @param index the index
      * @return the key
      */
+    @SuppressWarnings("unchecked")
     public K getKey(int index) {
-        return keys[index];
+        Object keys = this.keys;
+        if (keys instanceof long[]) {
+            return (K) Long.valueOf(((long[]) keys)[index]);
+        }
+        return ((K[]) keys)[index];
     }
 
     /**
@@ -318,13 +338,25 @@ public K getKey(int index) {
      */
     public abstract V getValue(int index);
 
+    /**
+     * Check whether all values of this leaf page are committed, that is none
+     * of them is a {@link VersionedValue} with uncommitted changes. The result
+     * is cached in the page. For non-leaf pages the result is always false.
+     *
+     * @return true if this is a leaf page, and all its values are committed
+     */
+    public boolean isAllCommitted() {
+        return false;
+    }
+
     /**
      * Get the number of keys in this page.
      *
      * @return the number of keys
      */
     public final int getKeyCount() {
-        return keys.length;
+        Object keys = this.keys;
+        return keys instanceof long[] ? ((long[]) keys).length : ((Object[]) keys).length;
     }
 
     /**
@@ -428,10 +460,10 @@ int binarySearch(K key) {
      * @param bCount size of the second array/
      * @return the second array.
      */
-    final K[] splitKeys(int aCount, int bCount) {
+    final Object splitKeys(int aCount, int bCount) {
         assert aCount + bCount <= getKeyCount();
-        K[] aKeys = createKeyStorage(aCount);
-        K[] bKeys = createKeyStorage(bCount);
+        Object aKeys = newKeyStorage(aCount);
+        Object bKeys = newKeyStorage(bCount);
         System.arraycopy(keys, 0, aKeys, 0, aCount);
         System.arraycopy(keys, getKeyCount() - bCount, bKeys, 0, bCount);
         keys = aKeys;
@@ -456,9 +488,16 @@ final K[] splitKeys(int aCount, int bCount) {
      */
     final void expandKeys(int extraKeyCount, K[] extraKeys) {
         int keyCount = getKeyCount();
-        K[] newKeys = createKeyStorage(keyCount + extraKeyCount);
+        Object newKeys = newKeyStorage(keyCount + extraKeyCount);
         System.arraycopy(keys, 0, newKeys, 0, keyCount);
-        System.arraycopy(extraKeys, 0, newKeys, keyCount, extraKeyCount);
+        if (newKeys instanceof long[]) {
+            long[] longKeys = (long[]) newKeys;
+            for (int i = 0; i < extraKeyCount; i++) {
+                longKeys[keyCount + i] = (Long) extraKeys[i];
+            }
+        } else {
+            System.arraycopy(extraKeys, 0, newKeys, keyCount, extraKeyCount);
+        }
         keys = newKeys;
     }
 
@@ -492,9 +531,16 @@ final void expandKeys(int extraKeyCount, K[] extraKeys) {
      * @param key the new key
      */
     public final void setKey(int index, K key) {
-        keys = keys.clone();
+        if (keys instanceof long[]) {
+            long[] newKeys = ((long[]) keys).clone();
+            newKeys[index] = (Long) key;
+            keys = newKeys;
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        K[] newKeys = ((K[]) keys).clone();
         if(isPersistent()) {
-            K old = keys[index];
+            K old = newKeys[index];
             if (!map.isMemoryEstimationAllowed() || old == null) {
                 int mem = map.evaluateMemoryForKey(key);
                 if (old != null) {
@@ -503,7 +549,8 @@ public final void setKey(int index, K key) {
                 addMemory(mem);
             }
         }
-        keys[index] = key;
+        newKeys[index] = key;
+        keys = newKeys;
     }
 
     /**
@@ -542,14 +589,20 @@ public final void setKey(int index, K key) {
     final void insertKey(int index, K key) {
         int keyCount = getKeyCount();
         assert index <= keyCount : index + " > " + keyCount;
-        K[] newKeys = createKeyStorage(keyCount + 1);
+        Object newKeys = newKeyStorage(keyCount + 1);
         DataUtils.copyWithGap(keys, newKeys, keyCount, index);
+        if (newKeys instanceof long[]) {
+            ((long[]) newKeys)[index] = (Long) key;
+        } else {
+            @SuppressWarnings("unchecked")
+            K[] k = (K[]) newKeys;
+            k[index] = key;
+        }
         keys = newKeys;
 
-        keys[index] = key;
-
         if (isPersistent()) {
-            addMemory(MEMORY_POINTER + map.evaluateMemoryForKey(key));
+            addMemory(newKeys instanceof long[] ? LONG_KEY_MEMORY :
+                    MEMORY_POINTER + map.evaluateMemoryForKey(key));
         }
     }
 
@@ -564,12 +617,14 @@ public void remove(int index) {
             --index;
         }
         if(isPersistent()) {
-            if (!map.isMemoryEstimationAllowed()) {
+            if (keys instanceof long[]) {
+                addMemory(-LONG_KEY_MEMORY);
+            } else if (!map.isMemoryEstimationAllowed()) {
                 K old = getKey(index);
                 addMemory(-MEMORY_POINTER - map.evaluateMemoryForKey(old));
             }
         }
-        K[] newKeys = createKeyStorage(keyCount - 1);
+        Object newKeys = newKeyStorage(keyCount - 1);
         DataUtils.copyExcept(keys, newKeys, keyCount, index);
         keys = newKeys;
     }
@@ -614,7 +669,7 @@ private void read(ByteBuffer buff) {
         }
 
         int keyCount = DataUtils.readVarInt(buff);
-        keys = createKeyStorage(keyCount);
+        keys = newKeyStorage(keyCount);
         int type = buff.get();
         if(isLeaf() != ((type & 1) == PAGE_TYPE_LEAF)) {
             throw DataUtils.newMVStoreException(
@@ -632,7 +687,14 @@ private void read(ByteBuffer buff) {
         boolean compressed = (type & DataUtils.PAGE_COMPRESSED) != 0;
         if (compressed) {
             Compressor compressor;
-            if ((type & DataUtils.PAGE_COMPRESSED_HIGH) ==
+            if ((type & DataUtils.PAGE_COMPRESSED_DICTIONARY) ==
+                    DataUtils.PAGE_COMPRESSED_DICTIONARY) {
+                compressor = map.getStore().getDictionaryCompressor(map.getId());
+                if (compressor == null) {
+                    throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                            "Compression dictionary of map {0} not found", map.getId());
+                }
+            } else if ((type & DataUtils.PAGE_COMPRESSED_HIGH) ==
                     DataUtils.PAGE_COMPRESSED_HIGH) {
                 compressor = map.getStore().getCompressorHigh();
             } else {
@@ -718,49 +780,27 @@ protected final int write(FileStore<?>.PageSerializationManager pageSerializatio
             .putVarInt(pageNo)
             .putVarInt(map.getId())
             .putVarInt(keyCount);
-        int typePos = buff.position();
         int type = isLeaf() ? PAGE_TYPE_LEAF : DataUtils.PAGE_TYPE_NODE;
-        buff.put((byte)type);
-        int childrenPos = buff.position();
-        writeChildren(buff, true);
-        int compressStart = buff.position();
-        map.getKeyType().write(buff, keys, keyCount);
-        writeValues(buff);
-        MVStore store = map.getStore();
-        int expLen = buff.position() - compressStart;
-        if (expLen > 16) {
+        int childrenPos;
+        ByteBuffer body = pageSerializationManager.getSerializedBody(this);
+        if (body != null) {
+            buff.put(body);
+            childrenPos = buff.position();
+        } else {
+            MVStore store = map.getStore();
             int compressionLevel = store.getCompressionLevel();
-            if (compressionLevel > 0) {
-                Compressor compressor;
-                int compressType;
-                if (compressionLevel == 1) {
-                    compressor = store.getCompressorFast();
-                    compressType = DataUtils.PAGE_COMPRESSED;
-                } else {
-                    compressor = store.getCompressorHigh();
-                    compressType = DataUtils.PAGE_COMPRESSED_HIGH;
-                }
-                byte[] comp = new byte[expLen * 2];
-                ByteBuffer byteBuffer = buff.getBuffer();
-                int pos = 0;
-                byte[] exp;
-                if (byteBuffer.hasArray()) {
-                    exp = byteBuffer.array();
-                    pos = byteBuffer.arrayOffset()  + compressStart;
-                } else {
-                    exp = Utils.newBytes(expLen);
-                    buff.position(compressStart).get(exp);
-                }
-                int compLen = compressor.compress(exp, pos, expLen, comp, 0);
-                int plus = DataUtils.getVarIntLen(expLen - compLen);
-                if (compLen + plus < expLen) {
-                    buff.position(typePos)
-                        .put((byte) (type | compressType));
-                    buff.position(compressStart)
-                        .putVarInt(expLen - compLen)
-                        .put(comp, 0, compLen);
+            Compressor compressor = null;
+            if (compressionLevel == 3) {
+                compressor = store.getDictionaryCompressor(getMapId());
+                if (compressor == null) {
+                    // no dictionary yet
+                    compressionLevel = 1;
                 }
             }
+            if (compressor == null && compressionLevel > 0) {
+                compressor = compressionLevel == 1 ? store.getCompressorFast() : store.getCompressorHigh();
+            }
+            childrenPos = writeBody(buff, compressor, compressionLevel);
         }
         int pageLength = buff.position() - start;
         long pagePos = pageSerializationManager.getPagePosition(getMapId(), start, pageLength, type);
@@ -780,6 +820,55 @@ protected final int write(FileStore<?>.PageSerializationManager pageSerializatio
         return childrenPos;
     }
 
+    /**
+     * Serializes the part of the page image, which follows the header: page type,
+     * children references (if any), keys and values, optionally compressed.
+     * For a leaf page this part does not depend on the page position within a chunk,
+     * therefore it can be prepared in advance by a separate thread.
+     *
+     * @param buff the target buffer
+     * @param compressor to use, or null if compression is disabled
+     * @param compressionLevel 1 for fast, 2 for high compression,
+     *            3 for compression with the dictionary of the map
+     * @return the position of the buffer, where serialized child page references (if any) begin
+     */
+    final int writeBody(WriteBuffer buff, Compressor compressor, int compressionLevel) {
+        int typePos = buff.position();
+        int type = isLeaf() ? PAGE_TYPE_LEAF : DataUtils.PAGE_TYPE_NODE;
+        buff.put((byte)type);
+        int childrenPos = buff.position();
+        writeChildren(buff, true);
+        int compressStart = buff.position();
+        map.getKeyType().write(buff, keys, getKeyCount());
+        writeValues(buff);
+        int expLen = buff.position() - compressStart;
+        if (expLen > 16 && compressor != null) {
+            int compressType = compressionLevel == 1 ? DataUtils.PAGE_COMPRESSED
+                    : compressionLevel == 2 ? DataUtils.PAGE_COMPRESSED_HIGH : DataUtils.PAGE_COMPRESSED_DICTIONARY;
+            byte[] comp = new byte[expLen * 2];
+            ByteBuffer byteBuffer = buff.getBuffer();
+            int pos = 0;
+            byte[] exp;
+            if (byteBuffer.hasArray()) {
+                exp = byteBuffer.array();
+                pos = byteBuffer.arrayOffset()  + compressStart;
+            } else {
+                exp = Utils.newBytes(expLen);
+                buff.position(compressStart).get(exp);
+            }
+            int compLen = compressor.compress(exp, pos, expLen, comp, 0);
+            int plus = DataUtils.getVarIntLen(expLen - compLen);
+            if (compLen + plus < expLen) {
+                buff.position(typePos)
+                    .put((byte) (type | compressType));
+                buff.position(compressStart)
+                    .putVarInt(expLen - compLen)
+                    .put(comp, 0, compLen);
+            }
+        }
+        return childrenPos;
+    }
+
     /**
      * Write values that the buffer contains to the buff.
      *
@@ -810,6 +899,23 @@ protected final int write(FileStore<?>.PageSerializationManager pageSerializatio
      */
     abstract void releaseSavedPages();
 
+    /**
+     * Collect all unsaved leaf pages of the subtree rooted at this page,
+     * in the same order as they would be written by writeUnsavedRecursive().
+     *
+     * @param leaves the target list
+     */
+    abstract void collectUnsavedLeaves(List<Page<?,?>> leaves);
+
+    /**
+     * Start asynchronous reads of the child pages in the given range,
+     * which are not loaded yet.
+     *
+     * @param from the index of the first child (inclusive)
+     * @param to the index of the last child (exclusive)
+     */
+    abstract void prefetchChildren(int from, int to);
+
     public abstract int getRawChildPageCount();
 
     protected final boolean isPersistent() {
@@ -910,9 +1016,13 @@ final void recalculateMemory() {
      *
      * @return memory in bytes
      */
+    @SuppressWarnings("unchecked")
     protected int calculateMemory() {
+        if (keys instanceof long[]) {
+            return getKeyCount() * LONG_KEY_MEMORY;
+        }
 //*
-        return map.evaluateMemoryForKeys(keys, getKeyCount());
+        return map.evaluateMemoryForKeys((K[]) keys, getKeyCount());
 /*/
         int keyCount = getKeyCount();
         int mem = keyCount * MEMORY_POINTER;
@@ -988,6 +1098,35 @@ public final K[] createKeyStorage(int size) {
         return map.getKeyType().createStorage(size);
     }
 
+    /**
+     * Create the internal keys storage of this page, which is a long[] array
+     * for maps with LongDataType keys.
+     *
+     * @param size number of entries
+     * @return keys storage
+     */
+    private Object newKeyStorage(int size) {
+        return map.getKeyType() == LongDataType.INSTANCE ? new long[size] : createKeyStorage(size);
+    }
+
+    /**
+     * Convert an array of keys to the internal keys storage of this page.
+     *
+     * @param keys the keys
+     * @return keys storage
+     */
+    private Object toKeyStorage(K[] keys) {
+        if (map.getKeyType() != LongDataType.INSTANCE) {
+            return keys;
+        }
+        int keyCount = keys.length;
+        long[] longKeys = new long[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            longKeys[i] = (Long) keys[i];
+        }
+        return longKeys;
+    }
+
     /**
      * Create array for values storage.
      *
@@ -1138,6 +1277,12 @@ public String toString() {
             this.totalCount = totalCount;
         }
 
+        private NonLeaf(MVMap<K,V> map, Object keyStorage, PageReference<K,V>[] children, long totalCount) {
+            super(map, keyStorage);
+            this.children = children;
+            this.totalCount = totalCount;
+        }
+
         @Override
         public int getNodeType() {
             return DataUtils.PAGE_TYPE_NODE;
@@ -1176,7 +1321,7 @@ public V getValue(int index) {
         public Page<K,V> split(int at) {
             assert !isSaved();
             int b = getKeyCount() - at;
-            K[] bKeys = splitKeys(at, b - 1);
+            Object bKeys = splitKeys(at, b - 1);
             PageReference<K,V>[] aChildren = createRefStorage(at + 1);
             PageReference<K,V>[] bChildren = createRefStorage(b);
             System.arraycopy(children, 0, aChildren, 0, at + 1);
@@ -1192,7 +1337,8 @@ public Page<K,V> split(int at) {
             for (PageReference<K,V> x : bChildren) {
                 t += x.count;
             }
-            Page<K,V> newPage = createNode(map, bKeys, bChildren, t, 0);
+            Page<K,V> newPage = new NonLeaf<>(map, bKeys, bChildren, t);
+            newPage.initMemoryAccount(0);
             if(isPersistent()) {
                 recalculateMemory();
             }
@@ -1233,7 +1379,9 @@ long getCounts(int index) {
         public void setChild(int index, Page<K,V> c) {
             assert c != null;
             PageReference<K,V> child = children[index];
-            if (c != child.getPage() || c.getPos() != child.getPos()) {
+            // a page, which is not yet published, might have been modified
+            // in place, so its count has to be checked as well
+            if (c != child.getPage() || c.getPos() != child.getPos() || c.getTotalCount() != child.count) {
                 totalCount += c.getTotalCount() - child.count;
                 children = children.clone();
                 children[index] = new PageReference<>(c);
@@ -1381,6 +1529,33 @@ void writeChildrenRecursive(PageSerializationManager pageSerializationManager) {
             }
         }
 
+        @Override
+        void collectUnsavedLeaves(List<Page<?,?>> leaves) {
+            if (!isSaved()) {
+                for (int i = 0, len = getRawChildPageCount(); i < len; i++) {
+                    Page<K,V> p = children[i].getPage();
+                    if (p != null) {
+                        p.collectUnsavedLeaves(leaves);
+                    }
+                }
+            }
+        }
+
+        @Override
+        void prefetchChildren(int from, int to) {
+            long[] positions = new long[to - from];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                PageReference<K,V> ref = children[i];
+                if (ref.getPage() == null) {
+                    positions[count++] = ref.getPos();
+                }
+            }
+            if (count > 0) {
+                map.store.prefetchPages(map, positions, 0, count);
+            }
+        }
+
         @Override
         void releaseSavedPages() {
             int len = getRawChildPageCount();
@@ -1468,6 +1643,12 @@ public void dump(StringBuilder buff) {
          */
         private V[] values;
 
+        /**
+         * The cached result of isAllCommitted(), 0 if unknown, 1 if all values
+         * are committed, -1 otherwise.
+         */
+        private byte allCommitted;
+
         Leaf(MVMap<K,V> map) {
             super(map);
         }
@@ -1482,6 +1663,11 @@ private Leaf(MVMap<K,V> map, Leaf<K,V> source) {
             this.values = values;
         }
 
+        private Leaf(MVMap<K,V> map, Object keyStorage, V[] values) {
+            super(map, keyStorage);
+            this.values = values;
+        }
+
         @Override
         public int getNodeType() {
             return PAGE_TYPE_LEAF;
@@ -1507,19 +1693,40 @@ public V getValue(int index) {
             return values == null ? null : values[index];
         }
 
+        @Override
+        public boolean isAllCommitted() {
+            byte result = allCommitted;
+            if (result == 0) {
+                result = 1;
+                V[] values = this.values;
+                if (values != null) {
+                    for (V value : values) {
+                        if (value instanceof VersionedValue && ((VersionedValue<?>) value).getOperationId() != 0L) {
+                            result = -1;
+                            break;
+                        }
+                    }
+                }
+                allCommitted = result;
+            }
+            return result > 0;
+        }
+
         @Override
         public Page<K,V> split(int at) {
             assert !isSaved();
             int b = getKeyCount() - at;
-            K[] bKeys = splitKeys(at, b);
+            Object bKeys = splitKeys(at, b);
             V[] bValues = createValueStorage(b);
+            allCommitted = 0;
             if(values != null) {
                 V[] aValues = createValueStorage(at);
                 System.arraycopy(values, 0, aValues, 0, at);
                 System.arraycopy(values, at, bValues, 0, b);
                 values = aValues;
             }
-            Page<K,V> newPage = createLeaf(map, bKeys, bValues, 0);
+            Page<K,V> newPage = new Leaf<>(map, bKeys, bValues);
+            newPage.initMemoryAccount(0);
             if(isPersistent()) {
                 recalculateMemory();
             }
@@ -1530,6 +1737,7 @@ public Page<K,V> split(int at) {
         public void expand(int extraKeyCount, K[] extraKeys, V[] extraValues) {
             int keyCount = getKeyCount();
             expandKeys(extraKeyCount, extraKeys);
+            allCommitted = 0;
             if(values != null) {
                 V[] newValues = createValueStorage(keyCount + extraKeyCount);
                 System.arraycopy(values, 0, newValues, 0, keyCount);
@@ -1570,6 +1778,7 @@ public V setValue(int index, V value) {
         }
 
         private V setValueInternal(int index, V value) {
+            allCommitted = 0;
             V old = values[index];
             values[index] = value;
             return old;
@@ -1600,6 +1809,7 @@ public void insertNode(int index, K key, Page<K,V> childPage) {
         public void remove(int index) {
             int keyCount = getKeyCount();
             super.remove(index);
+            allCommitted = 0;
             if (values != null) {
                 if(isPersistent()) {
                     if (map.isMemoryEstimationAllowed()) {
@@ -1653,6 +1863,16 @@ void writeUnsavedRecursive(PageSerializationManager pageSerializationManager) {
             }
         }
 
+        @Override
+        void collectUnsavedLeaves(List<Page<?,?>> leaves) {
+            if (!isSaved()) {
+                leaves.add(this);
+            }
+        }
+
+        @Override
+        void prefetchChildren(int from, int to) {}
+
         @Override
         void releaseSavedPages() {}
 
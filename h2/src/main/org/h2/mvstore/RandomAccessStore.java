@@ -417,6 +417,13 @@ protected final void writeCleanShutdownMark() {
         writeStoreHeader();
     }
 
+    @Override
+    protected final void writeStoreHeaderNow() {
+        assert saveChunkLock.isHeldByCurrentThread();
+        writeStoreHeader();
+        sync();
+    }
+
     @Override
     protected final void adjustStoreToLastChunk() {
         storeHeader.put(HDR_CLEAN, 1);
@@ -478,7 +485,12 @@ private void compactMoveChunks(long moveSize) {
         long start = getFirstFree() / FileStore.BLOCK_SIZE;
         Iterable<SFChunk> chunksToMove = findChunksToMove(start, moveSize);
         if (chunksToMove != null) {
+            long bytes = 0;
+            for (SFChunk chunk : chunksToMove) {
+                bytes += chunk.len * FileStore.BLOCK_SIZE;
+            }
             compactMoveChunks(chunksToMove);
+            addCompactMovedBytes(bytes);
         }
     }
 
@@ -490,7 +502,7 @@ private Iterable<SFChunk> findChunksToMove(long startBlock, long moveSize) {
                     (o1, o2) -> {
                         // instead of selection just closest to beginning of the file,
                         // pick smaller chunk(s) which sit in between bigger holes
-                        int res = Integer.compare(o2.collectPriority, o1.collectPriority);
+                        int res = Double.compare(o2.collectPriority, o1.collectPriority);
                         if (res != 0) {
                             return res;
                         }
@@ -708,6 +720,7 @@ protected void doHousekeeping(MVStore mvStore) throws InterruptedException {
             return;
         }
         int autoCommitMemory = mvStore.getAutoCommitMemory();
+        long throttledCount = getCompactThrottledCount();
         int fileFillRate = getFillRate();
         long chunksTotalSize = size() * fileFillRate / 100;
         if (isFragmented() && fileFillRate < getAutoCompactFillRate()) {
@@ -716,7 +729,12 @@ protected void doHousekeeping(MVStore mvStore) throws InterruptedException {
                 if (idle) {
                     moveSize *= 4;
                 }
-                compactMoveChunks(101, moveSize, mvStore);
+                long moveLimit = acquireCompactBudget(moveSize);
+                if (moveLimit >= 0) {
+                    long movedBytes = getCompactMovedBytes();
+                    compactMoveChunks(101, moveLimit, mvStore);
+                    chargeCompactBudget(getCompactMovedBytes() - movedBytes);
+                }
                 return true;
             });
         }
@@ -731,8 +749,13 @@ protected void doHousekeeping(MVStore mvStore) throws InterruptedException {
                 if (!idle) {
                     writeLimit /= 4;
                 }
-                if (rewriteChunks(writeLimit, targetFillRate)) {
-                    dropUnusedChunks();
+                long rewriteLimit = acquireCompactBudget(writeLimit);
+                if (rewriteLimit >= 0) {
+                    long rewrittenBytes = getCompactRewrittenBytes();
+                    if (rewriteChunks((int) rewriteLimit, targetFillRate)) {
+                        dropUnusedChunks();
+                    }
+                    chargeCompactBudget(getCompactRewrittenBytes() - rewrittenBytes);
                 }
                 return true;
             });
@@ -741,8 +764,10 @@ protected void doHousekeeping(MVStore mvStore) throws InterruptedException {
         if (idle) {
             int currentChunksFillRate = getChunksFillRate();
             long currentTotalChunksSize = size() * getFillRate() / 100;
-            stopIdleHousekeeping = currentTotalChunksSize > chunksTotalSize
-                    || currentTotalChunksSize == chunksTotalSize && currentChunksFillRate <= chunksFillRate;
+            // do not give up, if there was no progress only because of the compaction rate limit
+            stopIdleHousekeeping = getCompactThrottledCount() == throttledCount
+                    && (currentTotalChunksSize > chunksTotalSize
+                    || currentTotalChunksSize == chunksTotalSize && currentChunksFillRate <= chunksFillRate);
         }
     }
 
@@ -7,9 +7,11 @@
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.zip.ZipEntry;
@@ -44,10 +46,28 @@ public class SingleFileStore extends RandomAccessStore {
 
     private final Map<String, Object> config;
 
+    /**
+     * The size of a memory mapped segment of the file.
+     */
+    private static final long MAPPED_SEGMENT_SIZE = 1L << 26;
+
+    /**
+     * Whether reads should use memory mapped segments of the file.
+     */
+    private volatile boolean memoryMapped;
+
+    /**
+     * Memory mapped segments of the file by index, null elements are not
+     * mapped yet. The last segment may cover only a part of its range, and is
+     * re-mapped when the file grows.
+     */
+    private volatile MappedByteBuffer[] mappedSegments = new MappedByteBuffer[0];
+
 
     public SingleFileStore(Map<String, Object> config) {
         super(config);
         this.config = config;
+        memoryMapped = DataUtils.getConfigParam(config, "memoryMapped", 0) != 0;
     }
 
     @Override
@@ -57,9 +77,84 @@ public String toString() {
 
     @Override
     public ByteBuffer readFully(SFChunk chunk, long pos, int len) {
+        if (memoryMapped) {
+            ByteBuffer buff = readMapped(pos, len);
+            if (buff != null) {
+                return buff;
+            }
+        }
         return readFully(fileChannel, pos, len);
     }
 
+    /**
+     * Get a read-only view of the memory mapped file, so that no data has to
+     * be copied. The content of the view may change, if the space is re-used
+     * after the chunk is moved; the caller is responsible to detect that.
+     *
+     * @param pos the position
+     * @param len the number of bytes
+     * @return the buffer, or null if the range can not be mapped
+     */
+    private ByteBuffer readMapped(long pos, int len) {
+        long end = pos + len;
+        int index = (int) (pos / MAPPED_SEGMENT_SIZE);
+        if (pos < 0 || len < 0 || end > size() || (end - 1) / MAPPED_SEGMENT_SIZE != index) {
+            return null;
+        }
+        MappedByteBuffer[] segments = mappedSegments;
+        MappedByteBuffer segment = index < segments.length ? segments[index] : null;
+        int offset = (int) (pos - index * MAPPED_SEGMENT_SIZE);
+        if (segment == null || segment.capacity() < offset + len) {
+            segment = mapSegment(index, offset + len);
+            if (segment == null) {
+                return null;
+            }
+        }
+        ByteBuffer buff = segment.duplicate();
+        buff.limit(offset + len).position(offset);
+        readCount.incrementAndGet();
+        readBytes.addAndGet(len);
+        return buff.slice();
+    }
+
+    private synchronized MappedByteBuffer mapSegment(int index, int minLength) {
+        MappedByteBuffer[] segments = mappedSegments;
+        MappedByteBuffer segment = index < segments.length ? segments[index] : null;
+        if (segment != null && segment.capacity() >= minLength) {
+            return segment;
+        }
+        long start = index * MAPPED_SEGMENT_SIZE;
+        long length = Math.min(MAPPED_SEGMENT_SIZE, size() - start);
+        if (length < minLength || !memoryMapped) {
+            return null;
+        }
+        try {
+            segment = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        } catch (IOException | UnsupportedOperationException e) {
+            // encrypted or wrapped file, or the address space is exhausted
+            memoryMapped = false;
+            mappedSegments = new MappedByteBuffer[0];
+            return null;
+        }
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        } else {
+            segments = segments.clone();
+        }
+        segments[index] = segment;
+        mappedSegments = segments;
+        return segment;
+    }
+
+    /**
+     * Whether reads use memory mapped segments of the file.
+     *
+     * @return true if memory mapping is used
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
     @Override
     protected void writeFully(SFChunk chunk, long pos, ByteBuffer src) {
         int len = src.remaining();
@@ -165,6 +260,7 @@ public void close() {
                     "Closing failed for file {0}", getFileName(), e);
         } finally {
             fileLock = null;
+            mappedSegments = new MappedByteBuffer[0];
             super.close();
         }
     }
@@ -194,6 +290,9 @@ public void sync() {
     @SuppressWarnings("ThreadPriorityCheck")
     public void truncate(long size) {
         int attemptCount = 0;
+        // the mapped buffers are released by the garbage collector,
+        // some platforms do not allow to truncate a file while it is mapped
+        mappedSegments = new MappedByteBuffer[0];
         while (true) {
             try {
                 writeCount.incrementAndGet();
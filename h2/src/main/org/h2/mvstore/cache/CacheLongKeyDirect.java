@@ -0,0 +1,332 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+
+/**
+ * A cache that uses keys of type long, and keeps byte sequences in direct
+ * (off-heap) memory.
+ * <p>
+ * The memory is allocated in a few large slabs, one per segment, when the
+ * segment is first used, and is then reused until the cache is discarded.
+ * The data of an entry is copied into the slab of its segment, and out of it
+ * on each read, so that no direct buffer is allocated per entry. Each slab is
+ * used as a ring: new entries are written after the last one, and the oldest
+ * entries are evicted when their space is needed again. Removed entries keep
+ * their space until the ring comes round.
+ * <p>
+ * This implementation is multi-threading safe. Access is synchronized per
+ * segment.
+ */
+public class CacheLongKeyDirect {
+
+    /**
+     * The maximum number of segments, unless more are needed to keep the
+     * slabs below the maximum size.
+     */
+    private static final int MAX_SEGMENT_COUNT = 16;
+
+    /**
+     * The minimum size of a slab, unless the cache is smaller.
+     */
+    private static final int MIN_SLAB_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The maximum size of a slab.
+     */
+    private static final int MAX_SLAB_SIZE = 1 << 30;
+
+    /**
+     * An entry larger than this part of a slab is not cached, so that a
+     * single entry does not evict a large part of the segment.
+     */
+    private static final int MAX_ENTRY_PART = 8;
+
+    private final long maxMemory;
+
+    private final Segment[] segments;
+
+    private final int segmentMask;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxMemory the maximum memory to use, in bytes
+     */
+    public CacheLongKeyDirect(long maxMemory) {
+        int segmentCount = 1;
+        while (segmentCount < MAX_SEGMENT_COUNT && maxMemory / (segmentCount * 2) >= MIN_SLAB_SIZE) {
+            segmentCount *= 2;
+        }
+        while (maxMemory / segmentCount > MAX_SLAB_SIZE) {
+            segmentCount *= 2;
+        }
+        int slabSize = (int) (maxMemory / segmentCount);
+        this.maxMemory = (long) slabSize * segmentCount;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(slabSize);
+        }
+        segmentMask = segmentCount - 1;
+    }
+
+    private Segment getSegment(long key) {
+        return segments[CacheLongKeyLIRS.getHash(key) & segmentMask];
+    }
+
+    /**
+     * Get a copy of the data of an entry.
+     *
+     * @param key the key
+     * @return a heap buffer with the data, or null if there is no such entry
+     */
+    public ByteBuffer get(long key) {
+        return getSegment(key).get(key);
+    }
+
+    /**
+     * Add or replace an entry. The remaining bytes of the buffer are copied,
+     * its position is not changed. Entries that are too large are not cached.
+     *
+     * @param key the key
+     * @param value the data
+     * @return whether the entry was added
+     */
+    public boolean put(long key, ByteBuffer value) {
+        return getSegment(key).put(key, value);
+    }
+
+    /**
+     * Remove an entry.
+     *
+     * @param key the key
+     */
+    public void remove(long key) {
+        getSegment(key).remove(key);
+    }
+
+    /**
+     * Remove all entries. The memory is kept for new entries.
+     */
+    public void clear() {
+        for (Segment s : segments) {
+            s.clear();
+        }
+    }
+
+    /**
+     * Get the maximum memory to use.
+     *
+     * @return the maximum memory, in bytes
+     */
+    public long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * Get the memory used by the entries.
+     *
+     * @return the used memory, in bytes
+     */
+    public long getUsedMemory() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.getUsedMemory();
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of cache hits.
+     *
+     * @return the cache hits
+     */
+    public long getHits() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.getHits();
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of cache misses.
+     *
+     * @return the cache misses
+     */
+    public long getMisses() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.getMisses();
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of entries that were evicted to make room for new ones.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        long x = 0;
+        for (Segment s : segments) {
+            x += s.getEvictions();
+        }
+        return x;
+    }
+
+    /**
+     * A segment with its own slab.
+     */
+    private static final class Segment {
+
+        private final int slabSize;
+
+        /**
+         * The slab, allocated on first use.
+         */
+        private ByteBuffer slab;
+
+        /**
+         * The entries that are in the cache.
+         */
+        private final HashMap<Long, Entry> map = new HashMap<>();
+
+        /**
+         * The entries in the order they were written, including removed
+         * ones, whose space is not reused yet.
+         */
+        private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+
+        /**
+         * The position in the slab where the next entry is written.
+         */
+        private int writePos;
+
+        private long usedMemory;
+
+        private long hits;
+
+        private long misses;
+
+        private long evictions;
+
+        Segment(int slabSize) {
+            this.slabSize = slabSize;
+        }
+
+        synchronized ByteBuffer get(long key) {
+            Entry e = map.get(key);
+            if (e == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            ByteBuffer src = slab.duplicate();
+            src.position(e.offset);
+            src.limit(e.offset + e.length);
+            ByteBuffer result = ByteBuffer.allocate(e.length);
+            result.put(src);
+            result.flip();
+            return result;
+        }
+
+        synchronized boolean put(long key, ByteBuffer value) {
+            int length = value.remaining();
+            if (length > slabSize / MAX_ENTRY_PART) {
+                return false;
+            }
+            remove(key);
+            if (slab == null) {
+                slab = ByteBuffer.allocateDirect(slabSize);
+            }
+            int start = writePos;
+            boolean wrap = start + length > slabSize;
+            if (wrap) {
+                start = 0;
+            }
+            int end = start + length;
+            // the oldest entries are the ones right after the write position
+            while (!queue.isEmpty()) {
+                Entry e = queue.peekFirst();
+                boolean skipped = wrap && e.offset >= writePos;
+                boolean overlaps = e.offset < end && e.offset + e.length > start;
+                if (!skipped && !overlaps) {
+                    break;
+                }
+                queue.pollFirst();
+                if (map.get(e.key) == e) {
+                    map.remove(e.key);
+                    usedMemory -= e.length;
+                    evictions++;
+                }
+            }
+            ByteBuffer dst = slab.duplicate();
+            dst.position(start);
+            dst.put(value.duplicate());
+            Entry e = new Entry(key, start, length);
+            queue.addLast(e);
+            map.put(key, e);
+            usedMemory += length;
+            writePos = end;
+            return true;
+        }
+
+        synchronized void remove(long key) {
+            Entry e = map.remove(key);
+            if (e != null) {
+                usedMemory -= e.length;
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+            queue.clear();
+            writePos = 0;
+            usedMemory = 0;
+        }
+
+        synchronized long getUsedMemory() {
+            return usedMemory;
+        }
+
+        synchronized long getHits() {
+            return hits;
+        }
+
+        synchronized long getMisses() {
+            return misses;
+        }
+
+        synchronized long getEvictions() {
+            return evictions;
+        }
+
+    }
+
+    /**
+     * The position of the data of a key in the slab.
+     */
+    private static final class Entry {
+
+        final long key;
+
+        final int offset;
+
+        final int length;
+
+        Entry(long key, int offset, int length) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+        }
+
+    }
+
+}
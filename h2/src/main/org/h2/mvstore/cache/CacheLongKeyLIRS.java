@@ -12,6 +12,9 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import org.h2.mvstore.DataUtils;
 
 /**
@@ -38,7 +41,10 @@
  * Accessed entries are only moved to the top of the stack if at least a number
  * of other entries have been moved to the front (8 per segment by default).
  * Write access and moving entries to the top of the stack is synchronized per
- * segment.
+ * segment. Reads of hot entries that don't need to be moved don't acquire the
+ * segment lock. Optionally, accesses that need to move an entry can be
+ * recorded in a per-segment buffer and applied in batches, so that reads do
+ * not need to acquire the segment lock at all, most of the time.
  *
  * @author Thomas Mueller
  * @param <V> the value type
@@ -58,6 +64,7 @@
     private final int stackMoveDistance;
     private final int nonResidentQueueSize;
     private final int nonResidentQueueSizeHigh;
+    private final int accessBufferSize;
 
     /**
      * Create a new cache with the given memory size.
@@ -75,6 +82,10 @@ public CacheLongKeyLIRS(Config config) {
         this.segmentCount = config.segmentCount;
         this.segmentMask = segmentCount - 1;
         this.stackMoveDistance = config.stackMoveDistance;
+        DataUtils.checkArgument(
+                config.accessBufferSize == 0 || Integer.bitCount(config.accessBufferSize) == 1,
+                "The access buffer size must be 0 or a power of 2, is {0}", config.accessBufferSize);
+        this.accessBufferSize = config.accessBufferSize;
         segments = new Segment[segmentCount];
         clear();
         // use the high bits for the segment
@@ -88,7 +99,7 @@ public void clear() {
         long max = getMaxItemSize();
         for (int i = 0; i < segmentCount; i++) {
             segments[i] = new Segment<>(max, stackMoveDistance, 8, nonResidentQueueSize,
-                                        nonResidentQueueSizeHigh);
+                                        nonResidentQueueSizeHigh, accessBufferSize);
         }
     }
 
@@ -385,7 +396,7 @@ public int sizeHot() {
     public long getHits() {
         long x = 0;
         for (Segment<V> s : segments) {
-            x += s.hits;
+            x += s.hits.sum();
         }
         return x;
     }
@@ -398,11 +409,64 @@ public long getHits() {
     public long getMisses() {
         long x = 0;
         for (Segment<V> s : segments) {
-            x += s.misses;
+            x += s.misses.sum();
+        }
+        return x;
+    }
+
+    /**
+     * Get the number of entries that were evicted, that is, resident cold
+     * entries that became non-resident because of memory limit.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        long x = 0;
+        for (Segment<V> s : segments) {
+            x += s.evictions;
         }
         return x;
     }
 
+    /**
+     * Get the number of segments.
+     *
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Get the number of cache hits in the given segment.
+     *
+     * @param segmentIndex the segment index
+     * @return the cache hits
+     */
+    public long getSegmentHits(int segmentIndex) {
+        return segments[segmentIndex].hits.sum();
+    }
+
+    /**
+     * Get the number of cache misses in the given segment.
+     *
+     * @param segmentIndex the segment index
+     * @return the cache misses
+     */
+    public long getSegmentMisses(int segmentIndex) {
+        return segments[segmentIndex].misses.sum();
+    }
+
+    /**
+     * Get the number of evictions in the given segment.
+     *
+     * @param segmentIndex the segment index
+     * @return the number of evictions
+     */
+    public long getSegmentEvictions(int segmentIndex) {
+        return segments[segmentIndex].evictions;
+    }
+
     /**
      * Get the number of resident entries.
      *
@@ -531,12 +595,17 @@ public void trimNonResidentQueue() {
         /**
          * The number of cache hits.
          */
-        long hits;
+        final LongAdder hits = new LongAdder();
 
         /**
          * The number of cache misses.
          */
-        long misses;
+        final LongAdder misses = new LongAdder();
+
+        /**
+         * The number of resident entries which became non-resident.
+         */
+        long evictions;
 
         /**
          * The map array. The size is always a power of 2.
@@ -611,6 +680,18 @@ public void trimNonResidentQueue() {
          */
         private int stackMoveCounter;
 
+        /**
+         * Accessed entries, which need to be moved within the stack or queue,
+         * but were not yet, or null if accesses are applied immediately.
+         * The buffer is lossy: accesses may be dropped under contention.
+         */
+        private final AtomicReferenceArray<Entry<V>> accessBuffer;
+
+        /**
+         * The number of entries recorded in the access buffer.
+         */
+        private final AtomicInteger accessBufferCount;
+
         /**
          * Create a new cache segment.
          *  @param maxMemory the maximum memory to use
@@ -619,13 +700,21 @@ public void trimNonResidentQueue() {
          * @param len the number of hash table buckets (must be a power of 2)
          * @param nonResidentQueueSize the non-resident queue size low watermark factor
          * @param nonResidentQueueSizeHigh  the non-resident queue size high watermark factor
+         * @param accessBufferSize the size of the access buffer, 0 to apply accesses immediately
          */
         Segment(long maxMemory, int stackMoveDistance, int len,
-                int nonResidentQueueSize, int nonResidentQueueSizeHigh) {
+                int nonResidentQueueSize, int nonResidentQueueSizeHigh, int accessBufferSize) {
             setMaxMemory(maxMemory);
             this.stackMoveDistance = stackMoveDistance;
             this.nonResidentQueueSize = nonResidentQueueSize;
             this.nonResidentQueueSizeHigh = nonResidentQueueSizeHigh;
+            if (accessBufferSize > 0) {
+                accessBuffer = new AtomicReferenceArray<>(accessBufferSize);
+                accessBufferCount = new AtomicInteger();
+            } else {
+                accessBuffer = null;
+                accessBufferCount = null;
+            }
 
             // the bit mask has all bits set
             mask = len - 1;
@@ -653,9 +742,12 @@ public void trimNonResidentQueue() {
          */
         Segment(Segment<V> old, int len) {
             this(old.maxMemory, old.stackMoveDistance, len,
-                    old.nonResidentQueueSize, old.nonResidentQueueSizeHigh);
-            hits = old.hits;
-            misses = old.misses;
+                    old.nonResidentQueueSize, old.nonResidentQueueSizeHigh,
+                    old.accessBuffer == null ? 0 : old.accessBuffer.length());
+            old.drainAccessBuffer();
+            hits.add(old.hits.sum());
+            misses.add(old.misses.sum());
+            evictions = old.evictions;
             Entry<V> s = old.stack.stackPrev;
             while (s != old.stack) {
                 Entry<V> e = new Entry<>(s);
@@ -719,19 +811,78 @@ private void addToMap(Entry<V> e) {
          * @param e the entry
          * @return the value, or null if there is no resident entry
          */
-        synchronized V get(Entry<V> e) {
+        V get(Entry<V> e) {
             V value = e == null ? null : e.getValue();
             if (value == null) {
                 // the entry was not found
                 // or it was a non-resident entry
-                misses++;
+                misses.increment();
             } else {
-                access(e);
-                hits++;
+                hits.increment();
+                if (needsAccess(e)) {
+                    if (accessBuffer == null || !recordAccess(e)) {
+                        synchronized (this) {
+                            drainAccessBuffer();
+                            applyAccess(e);
+                        }
+                    }
+                }
             }
             return value;
         }
 
+        /**
+         * Check whether an access to the entry would change the stack or the
+         * queue. This method is called without holding the lock, so the result
+         * is a hint only.
+         *
+         * @param e the entry
+         * @return false if access is known to have no effect
+         */
+        private boolean needsAccess(Entry<V> e) {
+            return !e.isHot() || e != stack.stackNext && e.stackNext != null
+                    && stackMoveCounter - e.topMove > stackMoveDistance;
+        }
+
+        /**
+         * Record an access in the access buffer.
+         *
+         * @param e the entry
+         * @return false if the buffer is full and needs to be drained
+         */
+        private boolean recordAccess(Entry<V> e) {
+            int index = accessBufferCount.getAndIncrement();
+            if (index >= accessBuffer.length()) {
+                return false;
+            }
+            accessBuffer.lazySet(index, e);
+            return true;
+        }
+
+        /**
+         * Apply all accesses recorded in the access buffer.
+         * The caller must synchronize on this segment.
+         */
+        void drainAccessBuffer() {
+            if (accessBuffer != null) {
+                int count = Math.min(accessBufferCount.get(), accessBuffer.length());
+                for (int i = 0; i < count; i++) {
+                    Entry<V> e = accessBuffer.getAndSet(i, null);
+                    if (e != null) {
+                        applyAccess(e);
+                    }
+                }
+                accessBufferCount.set(0);
+            }
+        }
+
+        private void applyAccess(Entry<V> e) {
+            // the entry might have been removed or replaced in the meantime
+            if (find(e.key, getHash(e.key)) == e) {
+                access(e);
+            }
+        }
+
         /**
          * Access an item, moving the entry to the top of the stack or front of
          * the queue if found.
@@ -797,6 +948,7 @@ private void access(Entry<V> e) {
          * @return the old value, or null if there was no resident entry
          */
         synchronized V put(long key, int hash, V value, long memory) {
+            drainAccessBuffer();
             Entry<V> e = find(key, hash);
             boolean existed = e != null;
             V old = null;
@@ -905,6 +1057,7 @@ private void evictBlock() {
             while (usedMemory > maxMemory && queueSize > 0) {
                 Entry<V> e = queue.queuePrev;
                 usedMemory -= e.memory;
+                evictions++;
                 removeFromQueue(e);
                 e.reference = new WeakReference<>(e.value);
                 e.value = null;
@@ -1219,5 +1372,12 @@ public static class Config {
          * as a factor of the number of all other entries in the map
          */
         public final int nonResidentQueueSizeHigh = 12;
+
+        /**
+         * The number of accesses per segment that are buffered and applied in
+         * a batch (must be 0 or a power of 2). 0 means accesses are applied
+         * immediately, while holding the segment lock.
+         */
+        public int accessBufferSize;
     }
 }
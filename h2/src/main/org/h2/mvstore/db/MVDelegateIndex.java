@@ -78,6 +78,11 @@ public boolean canGetFirstOrLast() {
         return true;
     }
 
+    @Override
+    public boolean canSeek() {
+        return true;
+    }
+
     @Override
     public void close(SessionLocal session) {
         // nothing to do
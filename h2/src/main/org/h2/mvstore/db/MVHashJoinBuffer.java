@@ -0,0 +1,134 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.db;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.h2.engine.Constants;
+import org.h2.engine.Database;
+import org.h2.message.DbException;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.FileStore;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.h2.result.RowFactory.DefaultRowFactory;
+import org.h2.result.SortOrder;
+import org.h2.store.fs.FileUtils;
+import org.h2.util.TempFileDeleter;
+import org.h2.value.TypeInfo;
+import org.h2.value.Value;
+import org.h2.value.ValueBigint;
+import org.h2.value.ValueRow;
+
+/**
+ * The rows of the build side of a hash join, which do not fit into memory.
+ *
+ * <p>
+ * The rows are stored in a separate MVStore in a temporary file, ordered by
+ * the join key, so that all rows with the same key are read with one cursor.
+ * The file is removed when this buffer is closed.
+ * {@link TempFileDeleter} is also used to delete this file if the buffer is
+ * not closed properly.
+ * </p>
+ */
+public final class MVHashJoinBuffer implements AutoCloseable {
+
+    private final TempFileDeleter tempFileDeleter;
+
+    private final MVTempResult.CloseImpl closeable;
+
+    private final Reference<?> fileRef;
+
+    /**
+     * The map with keys (join key values, sequence number) and rows as
+     * values.
+     */
+    private final MVMap<ValueRow, ValueRow> map;
+
+    private final int keyLength;
+
+    private long counter;
+
+    private boolean closed;
+
+    /**
+     * Creates a new buffer.
+     *
+     * @param database the database
+     * @param keyTypes the data types of the join key
+     * @param rowTypes the data types of the stored rows
+     */
+    public MVHashJoinBuffer(Database database, TypeInfo[] keyTypes, TypeInfo[] rowTypes) {
+        MVStore store;
+        try {
+            String fileName = FileUtils.createTempFile("h2tmp", Constants.SUFFIX_TEMP_FILE, true);
+            FileStore<?> fileStore = database.getStore().getMvStore().getFileStore().open(fileName, false);
+            store = new MVStore.Builder().adoptFileStore(fileStore).cacheSize(0).autoCommitDisabled().open();
+            tempFileDeleter = database.getTempFileDeleter();
+            closeable = new MVTempResult.CloseImpl(store, fileName);
+            fileRef = tempFileDeleter.addFile(closeable, this);
+        } catch (IOException e) {
+            throw DbException.convert(e);
+        }
+        keyLength = keyTypes.length;
+        TypeInfo[] types = Arrays.copyOf(keyTypes, keyLength + 1);
+        types[keyLength] = TypeInfo.TYPE_BIGINT;
+        ValueDataType keyType = new ValueDataType(database,
+                SortOrder.addNullOrdering(database, new int[keyLength + 1]));
+        keyType.setRowFactory(DefaultRowFactory.INSTANCE.createRowFactory(database, database.getCompareMode(),
+                database, types, null, false));
+        ValueDataType valueType = new ValueDataType(database, new int[rowTypes.length]);
+        valueType.setRowFactory(DefaultRowFactory.INSTANCE.createRowFactory(database, database.getCompareMode(),
+                database, rowTypes, null, false));
+        map = store.openMap("tmp", new MVMap.Builder<ValueRow, ValueRow>().keyType(keyType).valueType(valueType)
+                .singleWriter());
+    }
+
+    /**
+     * Add a row.
+     *
+     * @param key the values of the join key
+     * @param row the values of the row
+     */
+    public void add(Value[] key, Value[] row) {
+        map.put(getKey(key, counter++), ValueRow.get(row));
+    }
+
+    /**
+     * Get all rows with the given join key.
+     *
+     * @param key the values of the join key
+     * @return the values of the rows
+     */
+    public ArrayList<Value[]> get(Value[] key) {
+        ArrayList<Value[]> rows = new ArrayList<>();
+        Cursor<ValueRow, ValueRow> cursor = map.cursor(getKey(key, 0), getKey(key, Long.MAX_VALUE), false);
+        while (cursor.hasNext()) {
+            cursor.next();
+            rows.add(cursor.getValue().getList());
+        }
+        return rows;
+    }
+
+    private ValueRow getKey(Value[] key, long sequence) {
+        Value[] values = Arrays.copyOf(key, keyLength + 1);
+        values[keyLength] = ValueBigint.get(sequence);
+        return ValueRow.get(values);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        tempFileDeleter.deleteFile(fileRef, closeable);
+    }
+
+}
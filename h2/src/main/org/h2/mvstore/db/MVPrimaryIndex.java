@@ -39,6 +39,12 @@
  */
 public final class MVPrimaryIndex extends MVIndex<Long, SearchRow> {
 
+    /**
+     * The minimum number of rows in a range returned by
+     * {@link #findPartitions(SessionLocal, int)}.
+     */
+    private static final int MIN_PARTITION_SIZE = 4096;
+
     private final MVTable mvTable;
     private final String mapName;
     private final TransactionMap<Long, SearchRow> dataMap;
@@ -49,6 +55,7 @@ public MVPrimaryIndex(Database db, MVTable table, int id, IndexColumn[] columns,
         super(table, id, table.getName() + "_DATA", columns, 0, indexType);
         this.mvTable = table;
         RowDataType valueType = table.getRowFactory().getRowDataType();
+        valueType.setColumnar(db.getSettings().columnarRowPages);
         mapName = "table." + getId();
         Transaction t = mvTable.getTransactionBegin();
         dataMap = t.openMap(mapName, LongDataType.INSTANCE, valueType);
@@ -323,7 +330,41 @@ public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolea
         if (min != null && max != null && min.longValue() == max.longValue()) {
             return new SingleRowCursor(setRowKey((Row) map.getFromSnapshot(min), min));
         }
-        return new MVStoreCursor(map.entryIterator(min, max, reverse));
+        return new MVStoreCursor(map.entryIterator(min, max, reverse), mainIndexColumn);
+    }
+
+    @Override
+    public Cursor[] findPartitions(SessionLocal session, int count) {
+        MVMap<Long, VersionedValue<SearchRow>> map = dataMap.map;
+        long size = map.sizeAsLong();
+        count = (int) Math.min(count, size / MIN_PARTITION_SIZE);
+        if (count < 2) {
+            return null;
+        }
+        // Boundaries are taken by position from the underlying map, they
+        // only need to be increasing, the rows are read from the snapshot
+        long[] bounds = new long[count];
+        int n = 1;
+        for (int i = 1; i < count; i++) {
+            Long key = map.getKey(size * i / count);
+            if (key == null) {
+                break;
+            }
+            if (n == 1 || key > bounds[n - 1]) {
+                bounds[n++] = key;
+            }
+        }
+        if (n < 2) {
+            return null;
+        }
+        TransactionMap<Long,SearchRow> tmap = getMap(session);
+        Cursor[] cursors = new Cursor[n];
+        for (int i = 0; i < n; i++) {
+            Long from = i == 0 ? null : bounds[i];
+            Long to = i == n - 1 ? null : bounds[i + 1] - 1;
+            cursors[i] = new MVStoreCursor(tmap.entryIterator(from, to, false), mainIndexColumn);
+        }
+        return cursors;
     }
 
     @Override
@@ -386,6 +427,11 @@ public boolean canGetFirstOrLast() {
         return true;
     }
 
+    @Override
+    public boolean canSeek() {
+        return true;
+    }
+
     @Override
     public Cursor findFirstOrLast(SessionLocal session, boolean first) {
         TransactionMap<Long, SearchRow> map = getMap(session);
@@ -469,11 +515,13 @@ private static Row setRowKey(Row row, long key) {
     static final class MVStoreCursor implements Cursor {
 
         private final TMIterator<Long, SearchRow, Entry<Long, SearchRow>> it;
+        private final int mainIndexColumn;
         private Entry<Long, SearchRow> current;
         private Row row;
 
-        public MVStoreCursor(TMIterator<Long, SearchRow, Entry<Long, SearchRow>> it) {
+        public MVStoreCursor(TMIterator<Long, SearchRow, Entry<Long, SearchRow>> it, int mainIndexColumn) {
             this.it = it;
+            this.mainIndexColumn = mainIndexColumn;
         }
 
         @Override
@@ -505,5 +553,15 @@ public boolean next() {
         public boolean previous() {
             throw DbException.getUnsupportedException("previous");
         }
+
+        @Override
+        public void seek(SearchRow first) {
+            Value v;
+            if (mainIndexColumn == SearchRow.ROWID_INDEX || (v = first.getValue(mainIndexColumn)) == null) {
+                it.seek(first.getKey());
+            } else {
+                it.seek(v.getLong());
+            }
+        }
     }
 }
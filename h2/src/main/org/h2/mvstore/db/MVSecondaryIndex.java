@@ -130,21 +130,44 @@ public void addBufferedRows(List<String> bufferNames) {
             }
         }
 
+        // an empty index is built bottom-up from the sorted rows
+        MVMap.BulkLoader<SearchRow,VersionedValue<Value>> loader = dataMap.map.isEmpty()
+                ? dataMap.map.createBulkLoader() : null;
+        RowFactory uniqueRowFactory = getUniqueRowFactory();
+        SearchRow previous = null;
         try {
             while (!queue.isEmpty()) {
                 Source s = queue.poll();
                 SearchRow row = s.next();
 
-                if (needsUniqueCheck(row)) {
-                    checkUnique(false, dataMap, row, Long.MIN_VALUE);
+                if (loader == null) {
+                    if (needsUniqueCheck(row)) {
+                        checkUnique(false, dataMap, row, Long.MIN_VALUE);
+                    }
+                    dataMap.putCommitted(row, ValueNull.INSTANCE);
+                } else {
+                    // duplicates are next to each other
+                    if (needsUniqueCheck(row)) {
+                        SearchRow unique = uniqueRowFactory.createRow();
+                        unique.copyFrom(row);
+                        unique.setKey(Long.MIN_VALUE);
+                        if (previous != null && uniqueRowFactory.getRowDataType().compare(previous, unique) == 0) {
+                            throw getDuplicateKeyException(row.toString());
+                        }
+                        previous = unique;
+                    } else {
+                        previous = null;
+                    }
+                    loader.add(row, ValueNull.INSTANCE);
                 }
 
-                dataMap.putCommitted(row, ValueNull.INSTANCE);
-
                 if (s.hasNext()) {
                     queue.offer(s);
                 }
             }
+            if (loader != null) {
+                loader.finish();
+            }
         } finally {
             MVStore mvStore = database.getStore().getMvStore();
             for (String tempMapName : bufferNames) {
@@ -273,7 +296,7 @@ public Cursor find(SessionLocal session, SearchRow first, SearchRow last, boolea
     private Cursor find(SessionLocal session, SearchRow first, boolean bigger, SearchRow last, boolean reverse) {
         SearchRow min = convertToKey(first, bigger ^ reverse);
         SearchRow max = convertToKey(last, !reverse);
-        return new MVStoreCursor(session, getMap(session).keyIterator(min, max, reverse), mvTable);
+        return new MVStoreCursor(session, getMap(session).keyIterator(min, max, reverse), this);
     }
 
     private SearchRow convertToKey(SearchRow r, Boolean minMax) {
@@ -371,6 +394,11 @@ public Cursor findNext(SessionLocal session, SearchRow higherThan, SearchRow las
         return find(session, higherThan, true, last, false);
     }
 
+    @Override
+    public boolean canSeek() {
+        return true;
+    }
+
     /**
      * Get the map to store the data.
      *
@@ -397,14 +425,16 @@ static final class MVStoreCursor implements Cursor {
 
         private final SessionLocal             session;
         private final TMIterator<SearchRow, Value, SearchRow> it;
+        private final MVSecondaryIndex    index;
         private final MVTable             mvTable;
         private       SearchRow           current;
         private       Row                 row;
 
-        MVStoreCursor(SessionLocal session, TMIterator<SearchRow, Value, SearchRow> it, MVTable mvTable) {
+        MVStoreCursor(SessionLocal session, TMIterator<SearchRow, Value, SearchRow> it, MVSecondaryIndex index) {
             this.session = session;
             this.it = it;
-            this.mvTable = mvTable;
+            this.index = index;
+            this.mvTable = index.mvTable;
         }
 
         @Override
@@ -434,6 +464,11 @@ public boolean next() {
         public boolean previous() {
             throw DbException.getUnsupportedException("previous");
         }
+
+        @Override
+        public void seek(SearchRow first) {
+            it.seek(index.convertToKey(first, false));
+        }
     }
 
 }
@@ -33,7 +33,7 @@
  */
 public abstract class MVTempResult implements ResultExternal {
 
-    private static final class CloseImpl implements AutoCloseable {
+    static final class CloseImpl implements AutoCloseable {
         /**
          * MVStore.
          */
@@ -7,11 +7,13 @@
 
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.HashMap;
 import org.h2.engine.CastDataProvider;
 import org.h2.engine.Database;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.WriteBuffer;
 import org.h2.mvstore.type.BasicDataType;
+import org.h2.mvstore.type.ColumnarDataType;
 import org.h2.mvstore.type.MetaType;
 import org.h2.mvstore.type.StatefulDataType;
 import org.h2.result.RowFactory;
@@ -20,19 +22,53 @@
 import org.h2.value.CompareMode;
 import org.h2.value.TypeInfo;
 import org.h2.value.Value;
+import org.h2.value.ValueBigint;
+import org.h2.value.ValueInteger;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueSmallint;
+import org.h2.value.ValueTinyint;
 
 /**
  * The data type for rows.
  *
  * @author <a href='mailto:andrei.tokar@gmail.com'>Andrei Tokar</a>
  */
-public final class RowDataType extends BasicDataType<SearchRow> implements StatefulDataType<Database> {
+public final class RowDataType extends BasicDataType<SearchRow>
+        implements StatefulDataType<Database>, ColumnarDataType<SearchRow> {
+
+    /**
+     * Column encoding: each value is written with ValueDataType.
+     */
+    private static final int COLUMN_PLAIN = 0;
+
+    /**
+     * Column encoding: all values are NULL.
+     */
+    private static final int COLUMN_NULL = 1;
+
+    /**
+     * Column encoding: integer values of the same type, written as
+     * differences to the previous value.
+     */
+    private static final int COLUMN_DELTA = 2;
+
+    /**
+     * Column encoding: character string values of the same type, written as
+     * indexes in a dictionary of distinct values.
+     */
+    private static final int COLUMN_DICTIONARY = 3;
+
+    /**
+     * Flag of the column encoding, set if a bitmap of NULL values follows.
+     */
+    private static final int COLUMN_HAS_NULLS = 0x80;
 
     private final ValueDataType valueDataType;
     private final int[]         sortTypes;
     private final int[]         indexes;
     private final int           columnCount;
     private final boolean       storeKeys;
+    private volatile boolean    columnar;
 
     public RowDataType(CastDataProvider provider, CompareMode compareMode, DataHandler handler, int[] sortTypes,
             int[] indexes, int columnCount, boolean storeKeys) {
@@ -64,6 +100,21 @@ public boolean isStoreKeys() {
         return storeKeys;
     }
 
+    @Override
+    public boolean isColumnar() {
+        return columnar;
+    }
+
+    /**
+     * Set whether batches of rows should be written column by column.
+     * Batches written in either layout can be read in both cases.
+     *
+     * @param columnar true to use the columnar layout
+     */
+    public void setColumnar(boolean columnar) {
+        this.columnar = columnar;
+    }
+
     @Override
     public SearchRow[] createStorage(int capacity) {
         return new SearchRow[capacity];
@@ -181,6 +232,237 @@ public void write(WriteBuffer buff, SearchRow row) {
         }
     }
 
+    @Override
+    public void writeColumnar(WriteBuffer buff, Object storage, int len) {
+        SearchRow[] rows = (SearchRow[]) storage;
+        if (storeKeys) {
+            long previous = 0;
+            for (int i = 0; i < len; i++) {
+                long key = rows[i].getKey();
+                buff.putVarLong(zigZag(key - previous));
+                previous = key;
+            }
+        }
+        Value[] values = new Value[len];
+        if (indexes == null) {
+            int columnCount = rows[0].getColumnCount();
+            buff.putVarInt(columnCount);
+            for (int c = 0; c < columnCount; c++) {
+                writeColumn(buff, rows, c, values, len);
+            }
+        } else {
+            for (int c : indexes) {
+                writeColumn(buff, rows, c, values, len);
+            }
+        }
+    }
+
+    private void writeColumn(WriteBuffer buff, SearchRow[] rows, int column, Value[] values, int len) {
+        int nullCount = 0;
+        int type = Value.UNKNOWN;
+        boolean sameType = true;
+        for (int i = 0; i < len; i++) {
+            Value v = rows[i].getValue(column);
+            values[i] = v;
+            if (v == ValueNull.INSTANCE) {
+                nullCount++;
+            } else if (type == Value.UNKNOWN) {
+                type = v.getValueType();
+            } else if (type != v.getValueType()) {
+                sameType = false;
+            }
+        }
+        if (nullCount == len) {
+            buff.put((byte) COLUMN_NULL);
+            return;
+        }
+        int encoding = COLUMN_PLAIN;
+        HashMap<String, Integer> dictionary = null;
+        if (sameType) {
+            switch (type) {
+            case Value.TINYINT:
+            case Value.SMALLINT:
+            case Value.INTEGER:
+            case Value.BIGINT:
+                encoding = COLUMN_DELTA;
+                break;
+            case Value.CHAR:
+            case Value.VARCHAR:
+            case Value.VARCHAR_IGNORECASE:
+                dictionary = createDictionary(values, len, (len - nullCount) / 2);
+                if (dictionary != null) {
+                    encoding = COLUMN_DICTIONARY;
+                }
+                break;
+            default:
+            }
+        }
+        if (encoding == COLUMN_PLAIN) {
+            buff.put((byte) COLUMN_PLAIN);
+            for (int i = 0; i < len; i++) {
+                valueDataType.write(buff, values[i]);
+            }
+            return;
+        }
+        buff.put((byte) (nullCount > 0 ? encoding | COLUMN_HAS_NULLS : encoding));
+        if (nullCount > 0) {
+            byte[] nulls = new byte[(len + 7) >>> 3];
+            for (int i = 0; i < len; i++) {
+                if (values[i] == ValueNull.INSTANCE) {
+                    nulls[i >>> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            buff.put(nulls);
+        }
+        if (encoding == COLUMN_DELTA) {
+            buff.putVarInt(type);
+            long previous = 0;
+            for (int i = 0; i < len; i++) {
+                Value v = values[i];
+                if (v != ValueNull.INSTANCE) {
+                    long x = v.getLong();
+                    buff.putVarLong(zigZag(x - previous));
+                    previous = x;
+                }
+            }
+        } else {
+            buff.putVarInt(dictionary.size());
+            // entries are numbered in the order of their first occurrence
+            dictionary.clear();
+            for (int i = 0; i < len; i++) {
+                Value v = values[i];
+                if (v != ValueNull.INSTANCE && dictionary.putIfAbsent(v.getString(), dictionary.size()) == null) {
+                    valueDataType.write(buff, v);
+                }
+            }
+            for (int i = 0; i < len; i++) {
+                Value v = values[i];
+                if (v != ValueNull.INSTANCE) {
+                    buff.putVarInt(dictionary.get(v.getString()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the distinct string values, if there are not too many of them.
+     *
+     * @param values the values
+     * @param len the number of values
+     * @param maxSize the maximum number of distinct values
+     * @return the map with the distinct values as keys, or null if there are
+     *         too many of them
+     */
+    private static HashMap<String, Integer> createDictionary(Value[] values, int len, int maxSize) {
+        HashMap<String, Integer> dictionary = new HashMap<>();
+        for (int i = 0; i < len; i++) {
+            Value v = values[i];
+            if (v != ValueNull.INSTANCE && dictionary.putIfAbsent(v.getString(), 0) == null
+                    && dictionary.size() > maxSize) {
+                return null;
+            }
+        }
+        return dictionary;
+    }
+
+    @Override
+    public void readColumnar(ByteBuffer buff, Object storage, int len) {
+        SearchRow[] rows = (SearchRow[]) storage;
+        RowFactory rowFactory = valueDataType.getRowFactory();
+        for (int i = 0; i < len; i++) {
+            rows[i] = rowFactory.createRow();
+        }
+        if (storeKeys) {
+            long key = 0;
+            for (int i = 0; i < len; i++) {
+                key += unZigZag(DataUtils.readVarLong(buff));
+                rows[i].setKey(key);
+            }
+        }
+        TypeInfo[] columnTypes = rowFactory.getColumnTypes();
+        if (indexes == null) {
+            int columnCount = DataUtils.readVarInt(buff);
+            for (int c = 0; c < columnCount; c++) {
+                readColumn(buff, rows, c, columnTypes != null ? columnTypes[c] : null, len);
+            }
+        } else {
+            for (int c : indexes) {
+                readColumn(buff, rows, c, columnTypes != null ? columnTypes[c] : null, len);
+            }
+        }
+    }
+
+    private void readColumn(ByteBuffer buff, SearchRow[] rows, int column, TypeInfo columnType, int len) {
+        int encoding = buff.get() & 255;
+        if (encoding == COLUMN_PLAIN) {
+            for (int i = 0; i < len; i++) {
+                rows[i].setValue(column, valueDataType.readValue(buff, columnType));
+            }
+            return;
+        } else if (encoding == COLUMN_NULL) {
+            for (int i = 0; i < len; i++) {
+                rows[i].setValue(column, ValueNull.INSTANCE);
+            }
+            return;
+        }
+        byte[] nulls = null;
+        if ((encoding & COLUMN_HAS_NULLS) != 0) {
+            nulls = new byte[(len + 7) >>> 3];
+            buff.get(nulls);
+            encoding &= ~COLUMN_HAS_NULLS;
+        }
+        if (encoding == COLUMN_DELTA) {
+            int type = DataUtils.readVarInt(buff);
+            long x = 0;
+            for (int i = 0; i < len; i++) {
+                Value v;
+                if (nulls != null && (nulls[i >>> 3] & (1 << (i & 7))) != 0) {
+                    v = ValueNull.INSTANCE;
+                } else {
+                    x += unZigZag(DataUtils.readVarLong(buff));
+                    switch (type) {
+                    case Value.TINYINT:
+                        v = ValueTinyint.get((byte) x);
+                        break;
+                    case Value.SMALLINT:
+                        v = ValueSmallint.get((short) x);
+                        break;
+                    case Value.INTEGER:
+                        v = ValueInteger.get((int) x);
+                        break;
+                    case Value.BIGINT:
+                        v = ValueBigint.get(x);
+                        break;
+                    default:
+                        throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                                "Unsupported value type {0} of delta encoded column", type);
+                    }
+                }
+                rows[i].setValue(column, v);
+            }
+        } else if (encoding == COLUMN_DICTIONARY) {
+            Value[] dictionary = new Value[DataUtils.readVarInt(buff)];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = valueDataType.readValue(buff, columnType);
+            }
+            for (int i = 0; i < len; i++) {
+                rows[i].setValue(column, nulls != null && (nulls[i >>> 3] & (1 << (i & 7))) != 0 ?
+                        ValueNull.INSTANCE : dictionary[DataUtils.readVarInt(buff)]);
+            }
+        } else {
+            throw DataUtils.newMVStoreException(DataUtils.ERROR_FILE_CORRUPT,
+                    "Unknown column encoding {0}", encoding);
+        }
+    }
+
+    private static long zigZag(long x) {
+        return (x << 1) ^ (x >> 63);
+    }
+
+    private static long unZigZag(long x) {
+        return (x >>> 1) ^ -(x & 1);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -109,16 +109,43 @@ public Store(Database db, byte[] key) {
                 if (autoCompactFillRate <= 100) {
                     builder.autoCompactFillRate(autoCompactFillRate);
                 }
+                int autoCompactRate = db.getSettings().autoCompactRate;
+                if (autoCompactRate > 0) {
+                    builder.autoCompactRate(autoCompactRate);
+                }
             }
             if (key != null) {
                 encrypted = true;
                 builder.encryptionKey(decodePassword(key));
             }
             if (db.getSettings().compressData) {
-                builder.compress();
+                if (db.getSettings().compressDictionary) {
+                    builder.compressDictionary();
+                } else {
+                    builder.compress();
+                }
                 // use a larger page split size to improve the compression ratio
                 builder.pageSplitSize(64 * 1024);
             }
+            if (db.getSettings().memoryMappedReads) {
+                builder.memoryMapped();
+            }
+            int groupCommitWindow = db.getSettings().groupCommitWindow;
+            if (groupCommitWindow > 0) {
+                builder.groupCommitWindow(groupCommitWindow);
+            }
+            int serializationThreads = db.getSettings().serializationThreads;
+            if (serializationThreads > 1) {
+                builder.serializationThreads(serializationThreads);
+            }
+            int asyncReadThreads = db.getSettings().asyncReadThreads;
+            if (asyncReadThreads > 0) {
+                builder.asyncReadThreads(asyncReadThreads);
+            }
+            int offHeapCacheSize = db.getSettings().offHeapCacheSize;
+            if (offHeapCacheSize > 0) {
+                builder.offHeapCacheSize(offHeapCacheSize);
+            }
             builder.backgroundExceptionHandler((t, e) -> db.setBackgroundException(DbException.convert(e)));
             // always start without background thread first, and if necessary,
             // it will be set up later, after db has been fully started,
@@ -131,6 +158,11 @@ public Store(Database db, byte[] key) {
         this.encrypted = encrypted;
         try {
             this.mvStore = builder.open();
+            FileStore<?> fileStore = mvStore.getFileStore();
+            if (db.getSettings().columnarRowPages && fileStore != null) {
+                // older versions can not read columnar pages
+                fileStore.requireFormat(FileStore.FORMAT_EXTENDED_PAGES);
+            }
             if (!db.getSettings().reuseSpace) {
                 mvStore.setReuseSpace(false);
             }
@@ -138,6 +170,14 @@ public Store(Database db, byte[] key) {
             this.transactionStore = new TransactionStore(mvStore,
                     new MetaType<>(db, mvStore.backgroundExceptionHandler), new ValueDataType(db, null),
                     db.getLockTimeout());
+            int deferredCommitThreshold = db.getSettings().deferredCommitThreshold;
+            if (deferredCommitThreshold > 0) {
+                transactionStore.setDeferredCommitThreshold(deferredCommitThreshold);
+            }
+            int undoLogBufferSize = db.getSettings().undoLogBufferSize;
+            if (undoLogBufferSize > 0) {
+                transactionStore.setUndoLogBufferSize(undoLogBufferSize);
+            }
         } catch (MVStoreException e) {
             throw convertMVStoreException(e);
         }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A thread-safe bit set, which is changed in place. Each bit is updated with a
+ * compare-and-set of its own word, so concurrent updates of different words do
+ * not interfere, and segments of words are only allocated when they are first
+ * used.
+ */
+final class ConcurrentBitSet {
+
+    private static final int SEGMENT_WORDS_SHIFT = 6;
+
+    private static final int SEGMENT_WORDS = 1 << SEGMENT_WORDS_SHIFT;
+
+    private static final int SEGMENT_BITS_SHIFT = SEGMENT_WORDS_SHIFT + 6;
+
+    private final AtomicReferenceArray<AtomicLongArray> segments;
+
+    /**
+     * Create a new bit set.
+     *
+     * @param size the maximum number of bits
+     */
+    ConcurrentBitSet(int size) {
+        segments = new AtomicReferenceArray<>(((size - 1) >>> SEGMENT_BITS_SHIFT) + 1);
+    }
+
+    /**
+     * Get the value of the bit with the given index.
+     *
+     * @param index the index
+     * @return the value
+     */
+    boolean get(int index) {
+        AtomicLongArray segment = segments.get(index >>> SEGMENT_BITS_SHIFT);
+        return segment != null && (segment.get((index >>> 6) & (SEGMENT_WORDS - 1)) & (1L << index)) != 0;
+    }
+
+    /**
+     * Set the bit with the given index, if it is clear.
+     *
+     * @param index the index
+     * @return true if the bit was changed, false if it was already set
+     */
+    boolean set(int index) {
+        AtomicLongArray segment = getSegment(index >>> SEGMENT_BITS_SHIFT);
+        int i = (index >>> 6) & (SEGMENT_WORDS - 1);
+        long mask = 1L << index;
+        long word;
+        do {
+            word = segment.get(i);
+            if ((word & mask) != 0) {
+                return false;
+            }
+        } while (!segment.compareAndSet(i, word, word | mask));
+        return true;
+    }
+
+    /**
+     * Clear the bit with the given index.
+     *
+     * @param index the index
+     */
+    void clear(int index) {
+        AtomicLongArray segment = segments.get(index >>> SEGMENT_BITS_SHIFT);
+        if (segment != null) {
+            int i = (index >>> 6) & (SEGMENT_WORDS - 1);
+            long mask = 1L << index;
+            long word;
+            do {
+                word = segment.get(i);
+            } while ((word & mask) != 0 && !segment.compareAndSet(i, word, word & ~mask));
+        }
+    }
+
+    /**
+     * Find the first clear bit in the given range, and set it.
+     *
+     * @param fromIndex the first index to check
+     * @param toIndex the last index to check
+     * @return the index of the bit, or -1 if all bits in the range are set
+     */
+    int setNextClearBit(int fromIndex, int toIndex) {
+        int index = fromIndex;
+        while (index <= toIndex) {
+            AtomicLongArray segment = getSegment(index >>> SEGMENT_BITS_SHIFT);
+            int i = (index >>> 6) & (SEGMENT_WORDS - 1);
+            long word = segment.get(i);
+            long free = ~word & (-1L << index);
+            if (free == 0) {
+                index = (index | 63) + 1;
+                continue;
+            }
+            int bit = Long.numberOfTrailingZeros(free);
+            int found = (index & ~63) + bit;
+            if (found > toIndex) {
+                break;
+            }
+            if (segment.compareAndSet(i, word, word | (1L << bit))) {
+                return found;
+            }
+            // another thread changed this word, look at it again
+        }
+        return -1;
+    }
+
+    /**
+     * Get the index of the first set bit at or after the given index.
+     *
+     * @param fromIndex the first index to check
+     * @return the index, or -1 if there is no such bit
+     */
+    int nextSetBit(int fromIndex) {
+        int s = fromIndex >>> SEGMENT_BITS_SHIFT;
+        int i = (fromIndex >>> 6) & (SEGMENT_WORDS - 1);
+        long mask = -1L << fromIndex;
+        for (int length = segments.length(); s < length; s++, i = 0, mask = -1L) {
+            AtomicLongArray segment = segments.get(s);
+            if (segment == null) {
+                continue;
+            }
+            for (; i < SEGMENT_WORDS; i++, mask = -1L) {
+                long word = segment.get(i) & mask;
+                if (word != 0) {
+                    return (s << SEGMENT_BITS_SHIFT) + (i << 6) + Long.numberOfTrailingZeros(word);
+                }
+            }
+        }
+        return -1;
+    }
+
+    private AtomicLongArray getSegment(int s) {
+        AtomicLongArray segment = segments.get(s);
+        if (segment == null) {
+            segment = new AtomicLongArray(SEGMENT_WORDS);
+            if (!segments.compareAndSet(s, null, segment)) {
+                segment = segments.get(s);
+            }
+        }
+        return segment;
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An array of volatile elements, where segments of elements are only
+ * allocated when they are first written.
+ *
+ * @param <T> the element type
+ */
+final class SegmentedArray<T> {
+
+    private static final int SEGMENT_SHIFT = 12;
+
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> segments;
+
+    /**
+     * Create a new array.
+     *
+     * @param size the maximum number of elements
+     */
+    SegmentedArray(int size) {
+        segments = new AtomicReferenceArray<>(((size - 1) >>> SEGMENT_SHIFT) + 1);
+    }
+
+    /**
+     * Get the element at the given index.
+     *
+     * @param index the index
+     * @return the element, or null
+     */
+    T get(int index) {
+        AtomicReferenceArray<T> segment = segments.get(index >>> SEGMENT_SHIFT);
+        return segment == null ? null : segment.get(index & (SEGMENT_SIZE - 1));
+    }
+
+    /**
+     * Set the element at the given index.
+     *
+     * @param index the index
+     * @param value the new element
+     */
+    void set(int index, T value) {
+        int s = index >>> SEGMENT_SHIFT;
+        AtomicReferenceArray<T> segment = segments.get(s);
+        if (segment == null) {
+            if (value == null) {
+                return;
+            }
+            segment = new AtomicReferenceArray<>(SEGMENT_SIZE);
+            if (!segments.compareAndSet(s, null, segment)) {
+                segment = segments.get(s);
+            }
+        }
+        segment.set(index & (SEGMENT_SIZE - 1), value);
+    }
+
+}
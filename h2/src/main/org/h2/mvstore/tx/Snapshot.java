@@ -5,8 +5,6 @@
  */
 package org.h2.mvstore.tx;
 
-import java.util.BitSet;
-
 import org.h2.mvstore.RootReference;
 
 /**
@@ -22,9 +20,9 @@
     /**
      * The committing transactions (see also TransactionStore.committingTransactions).
      */
-    final BitSet committingTransactions;
+    final TransactionBitSet committingTransactions;
 
-    Snapshot(RootReference<K,V> root, BitSet committingTransactions) {
+    Snapshot(RootReference<K,V> root, TransactionBitSet committingTransactions) {
         this.root = root;
         this.committingTransactions = committingTransactions;
     }
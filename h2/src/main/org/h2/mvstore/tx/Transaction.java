@@ -5,11 +5,13 @@
  */
 package org.h2.mvstore.tx;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicLong;
 import org.h2.engine.IsolationLevel;
 import org.h2.mvstore.DataUtils;
@@ -129,6 +131,18 @@ public final class Transaction {
      */
     boolean wasStored;
 
+    /**
+     * Indicates whether the commit of this transaction is completed in
+     * background, after the transaction is closed
+     */
+    boolean commitDeferred;
+
+    /**
+     * Indicates whether the changes of this transaction are stored in
+     * background, after the transaction is closed
+     */
+    boolean storeAsync;
+
     /**
      * How long to wait for blocking transaction to commit or rollback.
      */
@@ -165,6 +179,14 @@ public final class Transaction {
      */
     private RootReference<Long,Record<?,?>>[] undoLogRootReferences;
 
+    /**
+     * Undo log records of this transaction, which are kept in memory instead
+     * of the undo log map, in the order of their log ids, or null if the
+     * records are added to the map directly. The list is also used as a lock
+     * for its content.
+     */
+    volatile ArrayList<Record<?,?>> undoLogBuffer;
+
     /**
      * Map of transactional maps for this transaction
      */
@@ -338,7 +360,7 @@ public void markStatementStart(HashSet<MVMap<Object,VersionedValue<Object>>> map
             // The purpose of the following loop is to get a coherent picture
             // In order to get such a "snapshot", we wait for a moment of silence,
             // when no new transaction were committed / closed.
-            BitSet committingTransactions;
+            TransactionBitSet committingTransactions;
             do {
                 committingTransactions = store.committingTransactions.get();
                 for (MVMap<Object,VersionedValue<Object>> map : maps) {
@@ -407,6 +429,21 @@ long log(Record<?,?> logRecord) {
         }
         int currentStatus = getStatus(currentState);
         checkOpen(currentStatus);
+        ArrayList<Record<?,?>> buffer = undoLogBuffer;
+        if (buffer != null) {
+            synchronized (buffer) {
+                if (undoLogBuffer != null) {
+                    // during a snapshot the change might be stored before the
+                    // buffer is spilled, so its record must be in the map
+                    if (buffer.size() < store.getUndoLogBufferSize() && !store.isSnapshotInProgress()) {
+                        assert buffer.size() == logId;
+                        buffer.add(logRecord);
+                        return TransactionStore.getOperationId(transactionId, logId);
+                    }
+                    spillUndoLog();
+                }
+            }
+        }
         long undoKey = store.addUndoLogRecord(transactionId, logId, logRecord);
         return undoKey;
     }
@@ -425,9 +462,53 @@ void logUndo() {
         }
         int currentStatus = getStatus(currentState);
         checkOpen(currentStatus);
+        ArrayList<Record<?,?>> buffer = undoLogBuffer;
+        if (buffer != null) {
+            synchronized (buffer) {
+                if (undoLogBuffer != null) {
+                    buffer.remove(buffer.size() - 1);
+                    return;
+                }
+            }
+        }
         store.removeUndoLogRecord(transactionId);
     }
 
+    /**
+     * Move the buffered undo log records into the undo log map. Afterwards,
+     * all records of this transaction are added to the map directly.
+     */
+    void spillUndoLog() {
+        ArrayList<Record<?,?>> buffer = undoLogBuffer;
+        if (buffer != null) {
+            synchronized (buffer) {
+                if (undoLogBuffer != null) {
+                    for (int i = 0, size = buffer.size(); i < size; i++) {
+                        store.addUndoLogRecord(transactionId, i, buffer.get(i));
+                    }
+                    buffer.clear();
+                    undoLogBuffer = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether some undo log records of this transaction are kept in
+     * memory.
+     *
+     * @return true if there are buffered undo log records
+     */
+    boolean hasBufferedUndoLog() {
+        ArrayList<Record<?,?>> buffer = undoLogBuffer;
+        if (buffer != null) {
+            synchronized (buffer) {
+                return !buffer.isEmpty();
+            }
+        }
+        return false;
+    }
+
     /**
      * Open a data map.
      *
@@ -482,6 +563,8 @@ public <K, V> TransactionMap<K,V> openMapX(MVMap<K,VersionedValue<V>> map) {
      * committed or completely rolled back.
      */
     public void prepare() {
+        // the undo log of a prepared transaction has to be persisted
+        spillUndoLog();
         setStatus(STATUS_PREPARED);
         store.storeTransaction(this);
     }
@@ -490,7 +573,7 @@ public void prepare() {
      * Commit the transaction. Afterwards, this transaction is closed.
      */
     public void commit() {
-        assert store.openTransactions.get().get(transactionId);
+        assert store.openTransactions.get(transactionId);
         markTransactionEnd();
         Throwable ex = null;
         boolean hasChanges = false;
@@ -520,6 +603,22 @@ public void commit() {
         }
     }
 
+    /**
+     * Commit the transaction without waiting for the changes to be stored.
+     * Afterwards, this transaction is closed, and its changes are visible to
+     * other transactions. The store operation is started in background.
+     *
+     * @return the future, which is completed when the changes are written to
+     *         the file and synced, or immediately if there are no changes or
+     *         for an in-memory store
+     */
+    public CompletableFuture<Long> commitAsync() {
+        boolean hasChanges = hasChanges(statusAndLogId.get());
+        storeAsync = true;
+        commit();
+        return hasChanges ? store.storeAsync() : CompletableFuture.completedFuture(-1L);
+    }
+
     /**
      * Roll back to the given savepoint. This is only allowed if the
      * transaction is open.
@@ -674,7 +773,13 @@ public boolean waitFor(Transaction toWaitFor, String mapName, Object key, int ti
         if (isDeadlocked(toWaitFor)) {
             tryThrowDeadLockException(false);
         }
-        boolean result = toWaitFor.waitForThisToEnd(timeoutMillis == -1 ? this.timeoutMillis : timeoutMillis, this);
+        long start = System.nanoTime();
+        boolean result = false;
+        try {
+            result = toWaitFor.waitForThisToEnd(timeoutMillis == -1 ? this.timeoutMillis : timeoutMillis, this);
+        } finally {
+            store.recordLockWait(mapName, System.nanoTime() - start, !result && getStatus() == STATUS_OPEN);
+        }
         blockingMapName = null;
         blockingKey = null;
         blockingTransaction = null;
@@ -682,25 +787,26 @@ public boolean waitFor(Transaction toWaitFor, String mapName, Object key, int ti
     }
 
     private boolean isDeadlocked(Transaction toWaitFor) {
+        // the transaction with the smallest undo log is the cheapest one
+        // to roll back, and it should be selected as a victim,
         // use transaction sequence No as a tie-breaker
-        // the youngest transaction should be selected as a victim
-        Transaction youngest = toWaitFor;
+        Transaction victim = toWaitFor;
         int backstop = store.getMaxTransactionId();
         for(Transaction tx = toWaitFor, nextTx;
             (nextTx = tx.blockingTransaction) != null && tx.getStatus() == Transaction.STATUS_OPEN && backstop > 0;
             tx = nextTx, --backstop) {
 
-            if (nextTx.sequenceNum > youngest.sequenceNum) {
-                youngest = nextTx;
+            if (nextTx.isCheaperVictimThan(victim)) {
+                victim = nextTx;
             }
 
             if (nextTx == this) {
-                if (youngest == this) {
+                if (victim == this) {
                     return true;
                 }
-                Transaction btx = youngest.blockingTransaction;
+                Transaction btx = victim.blockingTransaction;
                 if (btx != null) {
-                    youngest.setStatus(STATUS_ROLLING_BACK);
+                    victim.setStatus(STATUS_ROLLING_BACK);
                     btx.notifyAllWaitingTransactions();
                     return false;
                 }
@@ -709,6 +815,11 @@ private boolean isDeadlocked(Transaction toWaitFor) {
         return false;
     }
 
+    private boolean isCheaperVictimThan(Transaction other) {
+        long cost = getLogId(), otherCost = other.getLogId();
+        return cost != otherCost ? cost < otherCost : sequenceNum > other.sequenceNum;
+    }
+
     private void tryThrowDeadLockException(boolean throwIt) {
         BitSet visited = new BitSet();
         StringBuilder details = new StringBuilder(
@@ -724,6 +835,7 @@ private void tryThrowDeadLockException(boolean throwIt) {
             }
         }
         if (throwIt) {
+            store.recordDeadlock(blockingMapName);
             throw DataUtils.newMVStoreException(DataUtils.ERROR_TRANSACTIONS_DEADLOCK, "{0}", details.toString());
         }
     }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.tx;
+
+/**
+ * An immutable set of transaction ids. It is stored as a tree of 64-word
+ * leaves and 64-way inner nodes, and a modification copies only the path from
+ * the root to the changed leaf, so its cost does not depend on the number of
+ * open transactions.
+ */
+final class TransactionBitSet {
+
+    private static final int WORDS = 64;
+
+    private static final int LEAF_BITS = 12;
+
+    private static final int NODE_BITS = 6;
+
+    /**
+     * The empty set.
+     */
+    static final TransactionBitSet EMPTY = new TransactionBitSet(new long[WORDS], 0);
+
+    /**
+     * Either a leaf (long[]), or an inner node (Object[]).
+     */
+    private final Object root;
+
+    /**
+     * The number of inner node levels above the leaves.
+     */
+    private final int levels;
+
+    private TransactionBitSet(Object root, int levels) {
+        this.root = root;
+        this.levels = levels;
+    }
+
+    /**
+     * Check whether the given id is in the set.
+     *
+     * @param index the transaction id
+     * @return true if it is contained
+     */
+    boolean get(int index) {
+        if (index < 0 || (index >>> shift(levels)) != 0) {
+            return false;
+        }
+        Object node = root;
+        for (int level = levels; level > 0; level--) {
+            node = ((Object[]) node)[(index >>> shift(level - 1)) & (WORDS - 1)];
+            if (node == null) {
+                return false;
+            }
+        }
+        return (((long[]) node)[(index >>> 6) & (WORDS - 1)] & (1L << index)) != 0;
+    }
+
+    /**
+     * Create a set where the given id is added or removed.
+     *
+     * @param index the transaction id
+     * @param value whether the id should be contained
+     * @return the new set, or this set if it is unchanged
+     */
+    TransactionBitSet set(int index, boolean value) {
+        if (get(index) == value) {
+            return this;
+        }
+        Object newRoot = root;
+        int newLevels = levels;
+        while ((index >>> shift(newLevels)) != 0) {
+            Object[] node = new Object[WORDS];
+            node[0] = newRoot;
+            newRoot = node;
+            newLevels++;
+        }
+        return new TransactionBitSet(set(newRoot, newLevels, index, value), newLevels);
+    }
+
+    private static Object set(Object node, int level, int index, boolean value) {
+        if (level == 0) {
+            long[] words = node == null ? new long[WORDS] : ((long[]) node).clone();
+            words[(index >>> 6) & (WORDS - 1)] ^= 1L << index;
+            return words;
+        }
+        Object[] children = node == null ? new Object[WORDS] : ((Object[]) node).clone();
+        int i = (index >>> shift(level - 1)) & (WORDS - 1);
+        children[i] = set(children[i], level - 1, index, value);
+        return children;
+    }
+
+    private static int shift(int levels) {
+        return LEAF_BITS + levels * NODE_BITS;
+    }
+
+}
@@ -7,7 +7,6 @@
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -20,6 +19,7 @@
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStoreException;
+import org.h2.mvstore.Page;
 import org.h2.mvstore.RootReference;
 import org.h2.mvstore.type.DataType;
 import org.h2.value.VersionedValue;
@@ -154,7 +154,7 @@ public long sizeAsLong() {
     }
 
     private long adjustSize(RootReference<Long, Record<?, ?>>[] undoLogRootReferences,
-            RootReference<K, VersionedValue<V>> mapRootReference, BitSet committingTransactions, long size,
+            RootReference<K, VersionedValue<V>> mapRootReference, TransactionBitSet committingTransactions, long size,
             long undoLogsTotalSize) {
         // Entries describing removals from the map by this transaction and all transactions,
         // which are committed but not closed yet,
@@ -211,7 +211,7 @@ private long adjustSize(RootReference<Long, Record<?, ?>>[] undoLogRootReference
         return size;
     }
 
-    private boolean isIrrelevant(long operationId, VersionedValue<?> currentValue, BitSet committingTransactions) {
+    private boolean isIrrelevant(long operationId, VersionedValue<?> currentValue, TransactionBitSet committingTransactions) {
         Object v;
         if (committingTransactions == null) {
             v = currentValue.getCurrentValue();
@@ -488,7 +488,7 @@ public V getFromSnapshot(K key) {
         }
     }
 
-    private V getFromSnapshot(RootReference<K, VersionedValue<V>> rootRef, BitSet committingTransactions, K key) {
+    private V getFromSnapshot(RootReference<K, VersionedValue<V>> rootRef, TransactionBitSet committingTransactions, K key) {
         VersionedValue<V> data = map.get(rootRef.root, key);
         if (data == null) {
             // doesn't exist
@@ -555,16 +555,16 @@ Snapshot<K,VersionedValue<V>> createSnapshot() {
      *            function to invoke on a snapshot
      * @return function's result
      */
-    <R> R useSnapshot(BiFunction<RootReference<K,VersionedValue<V>>, BitSet, R> snapshotConsumer) {
+    <R> R useSnapshot(BiFunction<RootReference<K,VersionedValue<V>>, TransactionBitSet, R> snapshotConsumer) {
         // The purpose of the following loop is to get a coherent picture
         // of a state of two independent volatile / atomic variables,
         // which they had at some recent moment in time.
         // In order to get such a "snapshot", we wait for a moment of silence,
         // when neither of the variables concurrently changes it's value.
-        AtomicReference<BitSet> holder = transaction.store.committingTransactions;
-        BitSet committingTransactions = holder.get();
+        AtomicReference<TransactionBitSet> holder = transaction.store.committingTransactions;
+        TransactionBitSet committingTransactions = holder.get();
         while (true) {
-            BitSet prevCommittingTransactions = committingTransactions;
+            TransactionBitSet prevCommittingTransactions = committingTransactions;
             RootReference<K,VersionedValue<V>> root = map.getRoot();
             committingTransactions = holder.get();
             if (committingTransactions == prevCommittingTransactions) {
@@ -987,7 +987,7 @@ public X fetchNext() {
                 // If value doesn't exist or it was deleted by a committed transaction,
                 // or if value is a committed one, just return it.
                 if (data != null) {
-                    long id = data.getOperationId();
+                    long id = isInCommittedPage() ? 0 : data.getOperationId();
                     if (id != 0) {
                         int tx = TransactionStore.getTransactionId(id);
                         if (tx != transactionId && !committingTransactions.get(tx)) {
@@ -1021,6 +1021,8 @@ public X fetchNext() {
     private static final class RepeatableIterator<K,V,X> extends TMIterator<K,V,X> {
         private final DataType<K> keyType;
 
+        private final boolean reverse;
+
         private K snapshotKey;
 
         private Object snapshotValue;
@@ -1034,6 +1036,7 @@ public X fetchNext() {
         RepeatableIterator(TransactionMap<K, V> transactionMap, K from, K to, boolean reverse, boolean forEntries) {
             super(transactionMap, from, to, transactionMap.getSnapshot(), reverse, forEntries);
             keyType = transactionMap.map.getKeyType();
+            this.reverse = reverse;
             Snapshot<K,VersionedValue<V>> snapshot = transactionMap.getStatementSnapshot();
             uncommittedCursor = transactionMap.map.cursor(snapshot.root, from, to, reverse);
         }
@@ -1054,6 +1057,9 @@ public X fetchNext() {
                 int cmp = snapshotKey == null ? 1 :
                             uncommittedKey == null ? -1 :
                             keyType.compare(snapshotKey, uncommittedKey);
+                if (reverse && snapshotKey != null && uncommittedKey != null) {
+                    cmp = -cmp;
+                }
                 if (cmp < 0) {
                     next = toElement(snapshotKey, snapshotValue);
                     snapshotKey = null;
@@ -1071,6 +1077,18 @@ public X fetchNext() {
             return next;
         }
 
+        @Override
+        public void seek(K key) {
+            super.seek(key);
+            if (snapshotKey != null && keyType.compare(snapshotKey, key) < 0) {
+                snapshotKey = null;
+            }
+            if (uncommittedKey != null && keyType.compare(uncommittedKey, key) < 0) {
+                uncommittedKey = null;
+            }
+            uncommittedCursor.seek(key);
+        }
+
         private void fetchSnapshot() {
             while (cursor.hasNext()) {
                 K key = cursor.next();
@@ -1079,7 +1097,7 @@ private void fetchSnapshot() {
                 // or if value is a committed one, just return it.
                 if (data != null) {
                     Object value = data.getCommittedValue();
-                    long id = data.getOperationId();
+                    long id = isInCommittedPage() ? 0 : data.getOperationId();
                     if (id != 0) {
                         int tx = TransactionStore.getTransactionId(id);
                         if (tx == transactionId || committingTransactions.get(tx)) {
@@ -1100,6 +1118,11 @@ private void fetchSnapshot() {
         private void fetchUncommitted() {
             while (uncommittedCursor.hasNext()) {
                 K key = uncommittedCursor.next();
+                if (uncommittedCursor.getPage().isAllCommitted()) {
+                    // no changes of this transaction here
+                    uncommittedCursor.skipPage();
+                    continue;
+                }
                 VersionedValue<V> data = uncommittedCursor.getValue();
                 if (data != null) {
                     long id = data.getOperationId();
@@ -1116,12 +1139,18 @@ private void fetchUncommitted() {
     public abstract static class TMIterator<K,V,X> implements Iterator<X> {
         final int transactionId;
 
-        final BitSet committingTransactions;
+        final TransactionBitSet committingTransactions;
 
         protected final Cursor<K, VersionedValue<V>> cursor;
 
         private final boolean forEntries;
 
+        /**
+         * The last leaf page of the cursor, which is known to contain only
+         * committed values.
+         */
+        private Page<K, VersionedValue<V>> committedPage;
+
         X current;
 
         TMIterator(TransactionMap<K, V> transactionMap, K from, K to, Snapshot<K, VersionedValue<V>> snapshot,
@@ -1133,6 +1162,24 @@ private void fetchUncommitted() {
             this.committingTransactions = snapshot.committingTransactions;
         }
 
+        /**
+         * Check whether the entry last retrieved from the cursor is located in
+         * a leaf page, which contains only committed values, so that no
+         * visibility checks are needed for it.
+         *
+         * @return true if the page contains only committed values
+         */
+        final boolean isInCommittedPage() {
+            Page<K, VersionedValue<V>> page = cursor.getPage();
+            if (page == committedPage) {
+                return true;
+            } else if (page.isAllCommitted()) {
+                committedPage = page;
+                return true;
+            }
+            return false;
+        }
+
         @SuppressWarnings("unchecked")
         final X toElement(K key, Object value) {
             return (X) (forEntries ? new AbstractMap.SimpleImmutableEntry<>(key, value) : key);
@@ -1148,6 +1195,19 @@ final X toElement(K key, Object value) {
          */
         public abstract X fetchNext();
 
+        /**
+         * Move forward to the first entry, which is equal to or larger than
+         * the given key, see {@link Cursor#seek(Object)}.
+         *
+         * This method cannot be used together with {@link #hasNext()} and
+         * {@link #next()}.
+         *
+         * @param key the key to seek to
+         */
+        public void seek(K key) {
+            cursor.seek(key);
+        }
+
         @Override
         public final boolean hasNext() {
             return current != null || (current = fetchNext()) != null;
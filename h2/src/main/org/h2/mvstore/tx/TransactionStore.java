@@ -6,13 +6,19 @@
 package org.h2.mvstore.tx;
 
 import java.util.ArrayList;
-import java.util.BitSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
 import org.h2.engine.IsolationLevel;
 import org.h2.mvstore.Cursor;
 import org.h2.mvstore.DataUtils;
@@ -27,6 +33,7 @@
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.mvstore.type.StringDataType;
 import org.h2.util.StringUtils;
+import org.h2.util.Utils;
 import org.h2.value.VersionedValue;
 
 /**
@@ -62,18 +69,23 @@ public class TransactionStore {
      * <p>
      * Key: opId, value: [ mapId, key, oldValue ].
      */
-    @SuppressWarnings("unchecked")
-    final MVMap<Long,Record<?,?>>[] undoLogs = new MVMap[MAX_OPEN_TRANSACTIONS];
+    final SegmentedArray<MVMap<Long,Record<?,?>>> undoLogs = new SegmentedArray<>(MAX_OPEN_TRANSACTIONS + 1);
     private final MVMap.Builder<Long, Record<?,?>> undoLogBuilder;
 
     private final DataType<?> dataType;
 
     /**
      * This BitSet is used as vacancy indicator for transaction slots in transactions[].
-     * It provides easy way to find first unoccupied slot, and also allows for copy-on-write
-     * non-blocking updates.
+     * It provides easy way to find first unoccupied slot, and is updated in place,
+     * one word at a time, so that the cost of begin and end of a transaction
+     * does not grow with the number of open transactions.
      */
-    final AtomicReference<VersionedBitSet> openTransactions = new AtomicReference<>(new VersionedBitSet());
+    final ConcurrentBitSet openTransactions = new ConcurrentBitSet(MAX_OPEN_TRANSACTIONS + 1);
+
+    /**
+     * The sequence number of the last started transaction.
+     */
+    private final AtomicLong lastSequenceNum = new AtomicLong();
 
     /**
      * This is intended to be the source of ultimate truth about transaction being committed.
@@ -81,8 +93,10 @@ public class TransactionStore {
      * although it might be plenty of "uncommitted" entries in various maps
      * and undo record are still around.
      * Nevertheless, all of those should be considered by other transactions as committed.
+     * Every change creates a new immutable set, which is captured by statement snapshots.
      */
-    final AtomicReference<BitSet> committingTransactions = new AtomicReference<>(new BitSet());
+    final AtomicReference<TransactionBitSet> committingTransactions =
+            new AtomicReference<>(TransactionBitSet.EMPTY);
 
     private boolean init;
 
@@ -92,13 +106,50 @@ public class TransactionStore {
      */
     private int maxTransactionId = MAX_OPEN_TRANSACTIONS;
 
+    /**
+     * The minimal number of undo log entries of a transaction, for which
+     * the commit is completed in the background, 0 if this is disabled.
+     */
+    private volatile int deferredCommitThreshold;
+
+    /**
+     * The maximum number of undo log records of a transaction, which are kept
+     * in memory instead of the undo log map, 0 if this is disabled.
+     */
+    private volatile int undoLogBufferSize;
+
+    /**
+     * Whether the store collects the roots of the changed maps now.
+     */
+    private volatile boolean snapshotInProgress;
+
+    /**
+     * Lock wait statistics by map name.
+     */
+    private final ConcurrentHashMap<String, LockWaits> lockWaits = new ConcurrentHashMap<>();
+
+    /**
+     * Executor, which completes deferred commits, created on demand.
+     */
+    private ThreadPoolExecutor commitExecutor;
+
+    /**
+     * Whether this transaction store is closed, background tasks are executed
+     * in the current thread after that.
+     */
+    private boolean closed;
+
+    /**
+     * Whether a background store operation is scheduled, but not started.
+     */
+    private final AtomicBoolean asyncStoreScheduled = new AtomicBoolean();
+
     /**
      * Array holding all open transaction objects.
      * Position in array is "transaction id".
      * VolatileReferenceArray would do the job here, but there is no such thing in Java yet
      */
-    private final AtomicReferenceArray<Transaction> transactions =
-                                                        new AtomicReferenceArray<>(MAX_OPEN_TRANSACTIONS + 1);
+    private final SegmentedArray<Transaction> transactions = new SegmentedArray<>(MAX_OPEN_TRANSACTIONS + 1);
 
     private static final String TYPE_REGISTRY_NAME = "_";
 
@@ -113,10 +164,10 @@ public class TransactionStore {
     private static final char UNDO_LOG_OPEN = '.';
 
     /**
-     * Hard limit on the number of concurrently opened transactions
+     * Hard limit on the number of concurrently opened transactions, all
+     * transaction ids must fit into the high bits of an operation id.
      */
-    // TODO: introduce constructor parameter instead of a static field, driven by URL parameter
-    private static final int MAX_OPEN_TRANSACTIONS = 65535;
+    private static final int MAX_OPEN_TRANSACTIONS = (1 << (64 - Transaction.LOG_ID_BITS)) - 1;
 
     /**
      * Generate a string used to name undo log map for a specific transaction.
@@ -203,8 +254,7 @@ public void init(RollbackListener listener) {
                         if (store.hasData(mapName)) {
                             int transactionId = StringUtils.parseUInt31(mapName, UNDO_LOG_NAME_PREFIX.length() + 1,
                                     mapName.length());
-                            VersionedBitSet openTxBitSet = openTransactions.get();
-                            if (!openTxBitSet.get(transactionId)) {
+                            if (!openTransactions.get(transactionId)) {
                                 Object[] data = preparedTransactions.get(transactionId);
                                 int status;
                                 String name;
@@ -216,7 +266,7 @@ public void init(RollbackListener listener) {
                                     name = (String) data[1];
                                 }
                                 MVMap<Long, Record<?,?>> undoLog = store.openMap(mapName, undoLogBuilder);
-                                undoLogs[transactionId] = undoLog;
+                                undoLogs.set(transactionId, undoLog);
                                 Long lastUndoKey = undoLog.lastKey();
                                 assert lastUndoKey != null;
                                 assert getTransactionId(lastUndoKey) == transactionId;
@@ -287,6 +337,142 @@ public void setMaxTransactionId(int max) {
         this.maxTransactionId = max;
     }
 
+    /**
+     * Get the minimal size of a transaction, for which the commit is
+     * completed in the background.
+     *
+     * @return the number of undo log entries, 0 if disabled
+     */
+    public int getDeferredCommitThreshold() {
+        return deferredCommitThreshold;
+    }
+
+    /**
+     * Set the minimal size of a transaction, for which the commit is
+     * completed in the background. Such a commit only marks the transaction
+     * as committed, which makes all its changes visible to other
+     * transactions at once, and returns. The entries of the maps are
+     * converted to committed ones later by a background thread; until then,
+     * the id of the transaction is not re-used.
+     *
+     * @param undoLogEntries the number of undo log entries, 0 to disable
+     */
+    public void setDeferredCommitThreshold(int undoLogEntries) {
+        deferredCommitThreshold = Math.max(0, undoLogEntries);
+    }
+
+    /**
+     * Get the maximum number of undo log records of a transaction, which are
+     * kept in memory.
+     *
+     * @return the number of records, 0 if disabled
+     */
+    public int getUndoLogBufferSize() {
+        return undoLogBufferSize;
+    }
+
+    /**
+     * Check whether the store is collecting the changed maps for a store
+     * operation, undo log records must not be buffered in memory then.
+     *
+     * @return true if a snapshot is in progress
+     */
+    boolean isSnapshotInProgress() {
+        return snapshotInProgress;
+    }
+
+    /**
+     * Set the maximum number of undo log records of a transaction, which are
+     * kept in memory instead of the undo log map. A transaction, which
+     * commits or rolls back before it has more changes, does not use the
+     * undo log map at all. The records are moved to the map once there are
+     * more of them, when the transaction is prepared, or when the store
+     * writes the changes. This only affects transactions started afterwards.
+     *
+     * @param records the number of records, 0 to disable
+     */
+    public void setUndoLogBufferSize(int records) {
+        undoLogBufferSize = Math.max(0, records);
+        store.setStoreListener(undoLogBufferSize > 0 ? new MVStore.StoreListener() {
+            @Override
+            public void beforeSnapshot() {
+                // commits of transactions with buffered undo log records
+                // must not be stored partially
+                snapshotInProgress = true;
+                for (int i = openTransactions.nextSetBit(0); i >= 0; i = openTransactions.nextSetBit(i + 1)) {
+                    Transaction t = transactions.get(i);
+                    if (t != null) {
+                        t.spillUndoLog();
+                    }
+                }
+            }
+
+            @Override
+            public void afterSnapshot() {
+                snapshotInProgress = false;
+            }
+        } : null);
+    }
+
+    /**
+     * Get the lock wait statistics of the maps, where transactions had to
+     * wait for other transactions.
+     *
+     * @return the statistics by map name
+     */
+    public Map<String, LockWaits> getLockWaits() {
+        return lockWaits;
+    }
+
+    /**
+     * Add the totals of the lock wait statistics to the information
+     * consumer.
+     *
+     * @param consumer the consumer of names and values
+     */
+    public void populateInfo(BiConsumer<String, String> consumer) {
+        long waits = 0, time = 0, timeouts = 0, deadlocks = 0;
+        for (LockWaits w : lockWaits.values()) {
+            waits += w.getWaitCount();
+            time += w.getWaitTime();
+            timeouts += w.getTimeoutCount();
+            deadlocks += w.getDeadlockCount();
+        }
+        consumer.accept("info.LOCK_WAITS", Long.toString(waits));
+        consumer.accept("info.LOCK_WAIT_TIME", Long.toString(time));
+        consumer.accept("info.LOCK_TIMEOUTS", Long.toString(timeouts));
+        consumer.accept("info.DEADLOCKS", Long.toString(deadlocks));
+    }
+
+    /**
+     * Record a wait for a lock held by another transaction.
+     *
+     * @param mapName the name of the map
+     * @param nanos the time waited, in nanoseconds
+     * @param timedOut whether the lock was not released in time
+     */
+    void recordLockWait(String mapName, long nanos, boolean timedOut) {
+        LockWaits w = getLockWaits(mapName);
+        w.waits.increment();
+        w.nanos.add(nanos);
+        if (timedOut) {
+            w.timeouts.increment();
+        }
+    }
+
+    /**
+     * Record a deadlock, which was resolved by rolling back a transaction.
+     *
+     * @param mapName the name of the map, where the victim waited
+     */
+    void recordDeadlock(String mapName) {
+        getLockWaits(mapName).deadlocks.increment();
+    }
+
+    private LockWaits getLockWaits(String mapName) {
+        return lockWaits.computeIfAbsent(mapName == null ? "" : mapName, k -> new LockWaits());
+    }
+
     /**
      * Check whether a given map exists.
      *
@@ -346,8 +532,7 @@ public List<Transaction> getOpenTransactions() {
         }
         ArrayList<Transaction> list = new ArrayList<>();
         int transactionId = 0;
-        BitSet bitSet = openTransactions.get();
-        while((transactionId = bitSet.nextSetBit(transactionId + 1)) > 0) {
+        while((transactionId = openTransactions.nextSetBit(transactionId + 1)) > 0) {
             Transaction transaction = getTransaction(transactionId);
             if(transaction != null) {
                 if(transaction.getStatus() != Transaction.STATUS_CLOSED) {
@@ -362,6 +547,9 @@ public List<Transaction> getOpenTransactions() {
      * Close the transaction store.
      */
     public synchronized void close() {
+        // complete deferred commits, the executor rejects new tasks from now on
+        closed = true;
+        Utils.shutdownExecutor(commitExecutor);
         store.commit();
     }
 
@@ -394,28 +582,20 @@ private Transaction registerTransaction(int txId, int status, String name, long
                                             IsolationLevel isolationLevel, RollbackListener listener) {
         // 开启事务
         int transactionId;
-        long sequenceNo;
-        boolean success;
-        do {
-            VersionedBitSet original = openTransactions.get();
-            if (txId == 0) {
-                transactionId = original.nextClearBit(1);
-            } else {
-                transactionId = txId;
-                assert !original.get(transactionId);
-            }
-            if (transactionId > maxTransactionId) {
+        if (txId == 0) {
+            transactionId = openTransactions.setNextClearBit(1, maxTransactionId);
+            if (transactionId < 0) {
                 throw DataUtils.newMVStoreException(
                         DataUtils.ERROR_TOO_MANY_OPEN_TRANSACTIONS,
                         "There are {0} open transactions",
-                        transactionId - 1);
+                        maxTransactionId);
             }
-            VersionedBitSet clone = original.clone();
-            clone.set(transactionId);
-            sequenceNo = clone.getVersion() + 1;
-            clone.setVersion(sequenceNo);
-            success = openTransactions.compareAndSet(original, clone);
-        } while(!success);
+        } else {
+            transactionId = txId;
+            boolean success = openTransactions.set(transactionId);
+            assert success;
+        }
+        long sequenceNo = lastSequenceNum.incrementAndGet();
 
         Transaction transaction = new Transaction(this, transactionId, sequenceNo, status, name, logId,
                 timeoutMillis, ownerId, isolationLevel, listener);
@@ -423,10 +603,14 @@ private Transaction registerTransaction(int txId, int status, String name, long
         assert transactions.get(transactionId) == null;
         transactions.set(transactionId, transaction);
 
-        if (undoLogs[transactionId] == null) {
+        if (undoLogBufferSize > 0 && logId == 0 && status == Transaction.STATUS_OPEN && !snapshotInProgress) {
+            transaction.undoLogBuffer = new ArrayList<>();
+        }
+
+        if (undoLogs.get(transactionId) == null) {
             String undoName = getUndoLogName(transactionId);
             MVMap<Long,Record<?,?>> undoLog = store.openMap(undoName, undoLogBuilder);
-            undoLogs[transactionId] = undoLog;
+            undoLogs.set(transactionId, undoLog);
         }
         return transaction;
     }
@@ -454,7 +638,7 @@ void storeTransaction(Transaction t) {
      * @return key for the added record
      */
     long addUndoLogRecord(int transactionId, long logId, Record<?,?> record) {
-        MVMap<Long, Record<?,?>> undoLog = undoLogs[transactionId];
+        MVMap<Long, Record<?,?>> undoLog = undoLogs.get(transactionId);
         long undoKey = getOperationId(transactionId, logId);
         if (logId == 0 && !undoLog.isEmpty()) {
             throw DataUtils.newMVStoreException(
@@ -472,7 +656,7 @@ long addUndoLogRecord(int transactionId, long logId, Record<?,?> record) {
      * @param transactionId id of the transaction
      */
     void removeUndoLogRecord(int transactionId) {
-        undoLogs[transactionId].trimLast();
+        undoLogs.get(transactionId).trimLast();
     }
 
     /**
@@ -492,11 +676,22 @@ void removeMap(TransactionMap<?,?> map) {
      */
     void commit(Transaction t, boolean recovery) {
         if (!store.isClosed()) {
+            if (!recovery && commitBufferedUndoLog(t)) {
+                return;
+            }
             int transactionId = t.transactionId;
             // First, mark log as "committed".
             // It does not change the way this transaction is treated by others,
             // but preserves fact of commit in case of abrupt termination.
-            MVMap<Long,Record<?,?>> undoLog = undoLogs[transactionId];
+            MVMap<Long,Record<?,?>> undoLog = undoLogs.get(transactionId);
+            int threshold = deferredCommitThreshold;
+            if (!recovery && threshold > 0 && undoLog.sizeAsLong() >= threshold) {
+                markUndoLogAsCommitted(transactionId);
+                flipCommittingTransactionsBit(transactionId, true);
+                // the rest is done in background, once the transaction is closed
+                t.commitDeferred = true;
+                return;
+            }
             Cursor<Long,Record<?,?>> cursor;
             if(recovery) {
                 removeUndoLogRecord(transactionId);
@@ -510,21 +705,8 @@ void commit(Transaction t, boolean recovery) {
             // made by this transaction, to be considered as "committed"
             flipCommittingTransactionsBit(transactionId, true);
 
-            CommitDecisionMaker<Object> commitDecisionMaker = new CommitDecisionMaker<>();
             try {
-                while (cursor.hasNext()) {
-                    Long undoKey = cursor.next();
-                    Record<?,?> op = cursor.getValue();
-                    int mapId = op.mapId;
-                    MVMap<Object, VersionedValue<Object>> map = openMap(mapId);
-                    if (map != null && !map.isClosed()) { // might be null if map was removed later
-                        Object key = op.key;
-                        commitDecisionMaker.setUndoKey(undoKey);
-                        // second parameter (value) is not really
-                        // used by CommitDecisionMaker
-                        map.operate(key, null, commitDecisionMaker);
-                    }
-                }
+                commitChanges(cursor);
             } finally {
                 try {
                     undoLog.clear();
@@ -535,13 +717,165 @@ void commit(Transaction t, boolean recovery) {
         }
     }
 
+    /**
+     * Replace uncommitted map entries of a committing transaction with
+     * committed ones.
+     *
+     * @param cursor the cursor over the undo log of the transaction
+     */
+    private void commitChanges(Cursor<Long,Record<?,?>> cursor) {
+        CommitDecisionMaker<Object> commitDecisionMaker = new CommitDecisionMaker<>();
+        while (cursor.hasNext()) {
+            Long undoKey = cursor.next();
+            commitChange(undoKey, cursor.getValue(), commitDecisionMaker);
+        }
+    }
+
+    private void commitChange(long undoKey, Record<?,?> op, CommitDecisionMaker<Object> commitDecisionMaker) {
+        int mapId = op.mapId;
+        MVMap<Object, VersionedValue<Object>> map = openMap(mapId);
+        if (map != null && !map.isClosed()) { // might be null if map was removed later
+            Object key = op.key;
+            commitDecisionMaker.setUndoKey(undoKey);
+            // second parameter (value) is not really
+            // used by CommitDecisionMaker
+            map.operate(key, null, commitDecisionMaker);
+        }
+    }
+
+    /**
+     * Commit a transaction, which keeps its undo log records in memory.
+     *
+     * @param t the transaction
+     * @return true if the transaction was committed, false if its undo log
+     *         records are in the undo log map
+     */
+    private boolean commitBufferedUndoLog(Transaction t) {
+        ArrayList<Record<?,?>> buffer = t.undoLogBuffer;
+        if (buffer == null) {
+            return false;
+        }
+        synchronized (buffer) {
+            if (t.undoLogBuffer == null) {
+                return false;
+            }
+            if (snapshotInProgress) {
+                // some of the changes might be stored before they are
+                // committed, so the commit has to be recoverable
+                t.spillUndoLog();
+                return false;
+            }
+            int transactionId = t.transactionId;
+            flipCommittingTransactionsBit(transactionId, true);
+            try {
+                CommitDecisionMaker<Object> commitDecisionMaker = new CommitDecisionMaker<>();
+                for (int i = 0, size = buffer.size(); i < size; i++) {
+                    commitChange(getOperationId(transactionId, i), buffer.get(i), commitDecisionMaker);
+                }
+            } finally {
+                try {
+                    buffer.clear();
+                    t.undoLogBuffer = null;
+                } finally {
+                    flipCommittingTransactionsBit(transactionId, false);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Complete a deferred commit of a closed transaction in background, and
+     * then release its id.
+     *
+     * @param transactionId the id of the transaction
+     */
+    private void completeDeferredCommit(int transactionId) {
+        Runnable task = () -> {
+            try {
+                MVStore.TxCounter txCounter = store.registerVersionUsage();
+                try {
+                    MVMap<Long,Record<?,?>> undoLog = undoLogs.get(transactionId);
+                    try {
+                        commitChanges(undoLog.cursor(null));
+                    } finally {
+                        try {
+                            undoLog.clear();
+                        } finally {
+                            flipCommittingTransactionsBit(transactionId, false);
+                            releaseTransactionId(transactionId);
+                        }
+                    }
+                } finally {
+                    store.deregisterVersionUsage(txCounter);
+                }
+            } catch (Throwable e) {
+                // if the store is closed, the commit is completed on the next start
+                if (!store.isClosed() && store.backgroundExceptionHandler != null) {
+                    store.backgroundExceptionHandler.uncaughtException(Thread.currentThread(), e);
+                }
+            }
+        };
+        executeCommitTask(task);
+    }
+
+    /**
+     * Store all changes made so far in background.
+     *
+     * @return the future, which is completed when the changes are written to
+     *         the file and synced
+     */
+    public CompletableFuture<Long> storeAsync() {
+        CompletableFuture<Long> future = store.getStoredFuture();
+        if (!future.isDone() && asyncStoreScheduled.compareAndSet(false, true)) {
+            Runnable task = () -> {
+                // changes made from now on need another store operation
+                asyncStoreScheduled.set(false);
+                try {
+                    store.commit();
+                } catch (Throwable e) {
+                    // the futures are completed exceptionally by the store
+                    if (!store.isClosed() && store.backgroundExceptionHandler != null) {
+                        store.backgroundExceptionHandler.uncaughtException(Thread.currentThread(), e);
+                    }
+                }
+            };
+            executeCommitTask(task);
+        }
+        return future;
+    }
+
+    /**
+     * Execute the task in the commit thread, or in the current thread if this
+     * transaction store is closed.
+     *
+     * @param task the task
+     */
+    private void executeCommitTask(Runnable task) {
+        ThreadPoolExecutor executor;
+        synchronized (this) {
+            executor = commitExecutor;
+            if (executor == null && !closed) {
+                commitExecutor = executor = Utils.createSingleThreadExecutor("H2-commit");
+            }
+        }
+        if (executor != null) {
+            try {
+                executor.execute(task);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the transaction store is closed
+            }
+        }
+        task.run();
+    }
+
     private void flipCommittingTransactionsBit(int transactionId, boolean flag) {
         boolean success;
         do {
-            BitSet original = committingTransactions.get();
+            TransactionBitSet original = committingTransactions.get();
             assert original.get(transactionId) != flag : flag ? "Double commit" : "Mysterious bit's disappearance";
-            BitSet clone = (BitSet) original.clone();
-            clone.set(transactionId, flag);
+            TransactionBitSet clone = original.set(transactionId, flag);
             success = committingTransactions.compareAndSet(original, clone);
         } while(!success);
     }
@@ -614,14 +948,12 @@ void endTransaction(Transaction t, boolean hasChanges) {
         int txId = t.transactionId;
         transactions.set(txId, null);
 
-        boolean success;
-        do {
-            VersionedBitSet original = openTransactions.get();
-            assert original.get(txId);
-            VersionedBitSet clone = original.clone();
-            clone.clear(txId);
-            success = openTransactions.compareAndSet(original, clone);
-        } while(!success);
+        if (t.commitDeferred) {
+            // the id is released once the commit is completed
+            completeDeferredCommit(txId);
+        } else {
+            releaseTransactionId(txId);
+        }
 
         if (hasChanges) {
             boolean wasStored = t.wasStored;
@@ -630,7 +962,9 @@ void endTransaction(Transaction t, boolean hasChanges) {
             }
 
             if (store.isVersioningRequired()) {
-                if (wasStored || store.getAutoCommitDelay() == 0) {
+                if (t.storeAsync) {
+                    // the caller waits for the store operation on its own
+                } else if (wasStored || store.getAutoCommitDelay() == 0) {
                     store.commit();
                 } else {
                     if (isUndoEmpty()) {
@@ -649,6 +983,11 @@ void endTransaction(Transaction t, boolean hasChanges) {
         }
     }
 
+    private void releaseTransactionId(int txId) {
+        assert openTransactions.get(txId);
+        openTransactions.clear(txId);
+    }
+
     /**
      * Get the root references (snapshots) for undo-log maps.
      * Those snapshots can potentially be used to optimize TransactionMap.size().
@@ -656,11 +995,14 @@ void endTransaction(Transaction t, boolean hasChanges) {
      * @return the array of root references or null if snapshotting is not possible
      */
     RootReference<Long,Record<?,?>>[] collectUndoLogRootReferences() {
-        BitSet opentransactions = openTransactions.get();
-        @SuppressWarnings("unchecked")
-        RootReference<Long,Record<?,?>>[] undoLogRootReferences = new RootReference[opentransactions.length()];
-        for (int i = opentransactions.nextSetBit(0); i >= 0; i = opentransactions.nextSetBit(i+1)) {
-            MVMap<Long,Record<?,?>> undoLog = undoLogs[i];
+        ArrayList<RootReference<Long,Record<?,?>>> undoLogRootReferences = new ArrayList<>();
+        for (int i = openTransactions.nextSetBit(0); i >= 0; i = openTransactions.nextSetBit(i+1)) {
+            Transaction t = transactions.get(i);
+            if (t != null && t.hasBufferedUndoLog()) {
+                // the records are not in the undo log map
+                return null;
+            }
+            MVMap<Long,Record<?,?>> undoLog = undoLogs.get(i);
             if (undoLog != null) {
                 RootReference<Long,Record<?,?>> rootReference = undoLog.getRoot();
                 if (rootReference.needFlush()) {
@@ -668,10 +1010,12 @@ RootReference<Long,Record<?,?>>[] collectUndoLogRootReferences() {
                     // because map's append buffer can't be flushed from a non-owning thread
                     return null;
                 }
-                undoLogRootReferences[i] = rootReference;
+                undoLogRootReferences.add(rootReference);
             }
         }
-        return undoLogRootReferences;
+        @SuppressWarnings("unchecked")
+        RootReference<Long,Record<?,?>>[] array = new RootReference[undoLogRootReferences.size()];
+        return undoLogRootReferences.toArray(array);
     }
 
     /**
@@ -691,12 +1035,15 @@ static long calculateUndoLogsTotalSize(RootReference<Long,Record<?,?>>[] undoLog
     }
 
     private boolean isUndoEmpty() {
-        BitSet openTrans = openTransactions.get();
-        for (int i = openTrans.nextSetBit(0); i >= 0; i = openTrans.nextSetBit(i + 1)) {
-            MVMap<Long,Record<?,?>> undoLog = undoLogs[i];
+        for (int i = openTransactions.nextSetBit(0); i >= 0; i = openTransactions.nextSetBit(i + 1)) {
+            MVMap<Long,Record<?,?>> undoLog = undoLogs.get(i);
             if (undoLog != null && !undoLog.isEmpty()) {
                 return false;
             }
+            Transaction t = transactions.get(i);
+            if (t != null && t.hasBufferedUndoLog()) {
+                return false;
+            }
         }
         return true;
     }
@@ -720,8 +1067,22 @@ Transaction getTransaction(int transactionId) {
      */
     void rollbackTo(Transaction t, long maxLogId, long toLogId) {
         int transactionId = t.getId();
-        MVMap<Long,Record<?,?>> undoLog = undoLogs[transactionId];
         RollbackDecisionMaker decisionMaker = new RollbackDecisionMaker(this, transactionId, toLogId, t.listener);
+        ArrayList<Record<?,?>> buffer = t.undoLogBuffer;
+        if (buffer != null) {
+            synchronized (buffer) {
+                if (t.undoLogBuffer != null) {
+                    assert buffer.size() == maxLogId;
+                    for (int logId = (int) maxLogId - 1; logId >= toLogId; logId--) {
+                        decisionMaker.decide(buffer.get(logId), null);
+                        decisionMaker.reset();
+                        buffer.remove(logId);
+                    }
+                    return;
+                }
+            }
+        }
+        MVMap<Long,Record<?,?>> undoLog = undoLogs.get(transactionId);
         for (long logId = maxLogId - 1; logId >= toLogId; logId--) {
             Long undoKey = getOperationId(transactionId, logId);
             undoLog.operate(undoKey, null, decisionMaker);
@@ -741,7 +1102,8 @@ void rollbackTo(Transaction t, long maxLogId, long toLogId) {
     Iterator<Change> getChanges(final Transaction t, final long maxLogId,
             final long toLogId) {
 
-        final MVMap<Long,Record<?,?>> undoLog = undoLogs[t.getId()];
+        t.spillUndoLog();
+        final MVMap<Long,Record<?,?>> undoLog = undoLogs.get(t.getId());
         return new Iterator<>() {
 
             private long logId = maxLogId - 1;
@@ -795,6 +1157,58 @@ public Change next() {
         };
     }
 
+    /**
+     * Lock wait statistics of a map.
+     */
+    public static final class LockWaits {
+
+        final LongAdder waits = new LongAdder();
+
+        final LongAdder nanos = new LongAdder();
+
+        final LongAdder timeouts = new LongAdder();
+
+        final LongAdder deadlocks = new LongAdder();
+
+        /**
+         * Get the number of waits for locks held by other transactions.
+         *
+         * @return the number of waits
+         */
+        public long getWaitCount() {
+            return waits.sum();
+        }
+
+        /**
+         * Get the total time spent waiting.
+         *
+         * @return the time in milliseconds
+         */
+        public long getWaitTime() {
+            return nanos.sum() / 1_000_000L;
+        }
+
+        /**
+         * Get the number of waits, which ended with a lock timeout.
+         *
+         * @return the number of timeouts
+         */
+        public long getTimeoutCount() {
+            return timeouts.sum();
+        }
+
+        /**
+         * Get the number of deadlocks, where a waiting transaction was chosen
+         * as a victim.
+         *
+         * @return the number of deadlocks
+         */
+        public long getDeadlockCount() {
+            return deadlocks.sum();
+        }
+
+    }
+
     /**
      * A change in a map.
      */
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.mvstore.type;
+
+import java.nio.ByteBuffer;
+
+import org.h2.mvstore.WriteBuffer;
+
+/**
+ * A data type for composite values, which can store a batch of values column
+ * by column instead of value by value.
+ *
+ * @param <T> the value type
+ */
+public interface ColumnarDataType<T> extends DataType<T> {
+
+    /**
+     * Whether new batches of values should be written column by column.
+     *
+     * @return true if the columnar layout should be used
+     */
+    boolean isColumnar();
+
+    /**
+     * Write a batch of values column by column.
+     *
+     * @param buff the target buffer
+     * @param storage the values, none of them is null
+     * @param len the number of values
+     */
+    void writeColumnar(WriteBuffer buff, Object storage, int len);
+
+    /**
+     * Read a batch of values, written by
+     * {@link #writeColumnar(WriteBuffer, Object, int)}.
+     *
+     * @param buff the source buffer
+     * @param storage the array to fill
+     * @param len the number of values
+     */
+    void readColumnar(ByteBuffer buff, Object storage, int len);
+
+}
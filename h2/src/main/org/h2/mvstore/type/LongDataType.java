@@ -50,10 +50,33 @@ public int compare(Long one, Long two) {
         return Long.compare(one, two);
     }
 
+    @Override
+    public void write(WriteBuffer buff, Object storage, int len) {
+        if (storage instanceof long[]) {
+            long[] longStorage = (long[]) storage;
+            for (int i = 0; i < len; i++) {
+                buff.putVarLong(longStorage[i]);
+            }
+        } else {
+            super.write(buff, storage, len);
+        }
+    }
+
+    @Override
+    public void read(ByteBuffer buff, Object storage, int len) {
+        if (storage instanceof long[]) {
+            long[] longStorage = (long[]) storage;
+            for (int i = 0; i < len; i++) {
+                longStorage[i] = DataUtils.readVarLong(buff);
+            }
+        } else {
+            super.read(buff, storage, len);
+        }
+    }
+
     @Override
     public int binarySearch(Long keyObj, Object storageObj, int size, int initialGuess) {
         long key = keyObj;
-        Long[] storage = cast(storageObj);
         int low = 0;
         int high = size - 1;
         // the cached index minus one, so that
@@ -63,7 +86,25 @@ public int binarySearch(Long keyObj, Object storageObj, int size, int initialGue
         if (x < 0 || x > high) {
             x = high >>> 1;
         }
-        return binarySearch(key, storage, low, high, x);
+        if (storageObj instanceof long[]) {
+            return binarySearch(key, (long[]) storageObj, low, high, x);
+        }
+        return binarySearch(key, cast(storageObj), low, high, x);
+    }
+
+    private static int binarySearch(long key, long[] storage, int low, int high, int x) {
+        while (low <= high) {
+            long midVal = storage[x];
+            if (key > midVal) {
+                low = x + 1;
+            } else if (key < midVal) {
+                high = x - 1;
+            } else {
+                return x;
+            }
+            x = (low + high) >>> 1;
+        }
+        return ~low;
     }
 
     private static int binarySearch(long key, Long[] storage, int low, int high, int x) {
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.h2.engine.SessionLocal;
+import org.h2.util.DateTimeUtils;
+import org.h2.util.HasSQL;
+import org.h2.value.DataType;
+import org.h2.value.Value;
+import org.h2.value.ValueDate;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueTimestamp;
+
+/**
+ * The distribution of values of a column, collected by ANALYZE from a sample
+ * of rows. It consists of a list of the most common values with their
+ * frequencies and of an equi-depth histogram of all other values, where each
+ * bucket contains approximately the same number of rows.
+ */
+public final class ColumnStatistics {
+
+    /**
+     * The maximum number of buckets of a histogram.
+     */
+    public static final int MAX_BUCKETS = 20;
+
+    /**
+     * The maximum number of most common values.
+     */
+    public static final int MAX_COMMON_VALUES = 10;
+
+    /**
+     * The maximum length of character strings, columns with longer values are
+     * not analyzed.
+     */
+    private static final int MAX_STRING_LENGTH = 100;
+
+    private final int valueType;
+
+    /**
+     * The number of analyzed rows, including rows with NULL.
+     */
+    private final long rowCount;
+
+    private final long nullCount;
+
+    /**
+     * The number of distinct values, which are not in the list of the most
+     * common values.
+     */
+    private final long distinctCount;
+
+    /**
+     * The most common values in ascending order.
+     */
+    private final Value[] commonValues;
+
+    private final long[] commonCounts;
+
+    /**
+     * The bounds of buckets of the histogram in ascending order, the first
+     * element is the smallest value and the last element is the largest one.
+     * Empty if all non-NULL values are common values.
+     */
+    private final Value[] bounds;
+
+    /**
+     * The number of non-NULL rows with values, which are not common values.
+     */
+    private final long otherCount;
+
+    public ColumnStatistics(int valueType, long rowCount, long nullCount, long distinctCount, Value[] commonValues,
+            long[] commonCounts, Value[] bounds) {
+        this.valueType = valueType;
+        this.rowCount = rowCount;
+        this.nullCount = nullCount;
+        this.distinctCount = distinctCount;
+        this.commonValues = commonValues;
+        this.commonCounts = commonCounts;
+        this.bounds = bounds;
+        long otherCount = rowCount - nullCount;
+        for (long count : commonCounts) {
+            otherCount -= count;
+        }
+        this.otherCount = Math.max(otherCount, 0L);
+    }
+
+    /**
+     * Check if statistics can be collected for values of the specified data
+     * type.
+     *
+     * @param valueType the value type
+     * @return whether statistics are supported
+     */
+    public static boolean isSupported(int valueType) {
+        switch (valueType) {
+        case Value.BOOLEAN:
+        case Value.CHAR:
+        case Value.VARCHAR:
+        case Value.VARCHAR_IGNORECASE:
+        case Value.DATE:
+        case Value.TIME:
+        case Value.TIMESTAMP:
+        case Value.TIMESTAMP_TZ:
+        case Value.UUID:
+            return true;
+        default:
+            return DataType.isNumericType(valueType);
+        }
+    }
+
+    /**
+     * Check if the value is short enough to be stored in statistics.
+     *
+     * @param v the value
+     * @return whether the value can be stored
+     */
+    public static boolean isStorable(Value v) {
+        return !DataType.isCharacterStringType(v.getValueType()) || v.getString().length() <= MAX_STRING_LENGTH;
+    }
+
+    /**
+     * Collect the statistics from the sampled values.
+     *
+     * @param session the session
+     * @param valueType the value type of the column
+     * @param rowCount the number of analyzed rows
+     * @param nullCount the number of analyzed rows with NULL
+     * @param values the non-NULL values, the list is sorted by this method
+     * @return the statistics
+     */
+    public static ColumnStatistics collect(SessionLocal session, int valueType, long rowCount, long nullCount,
+            ArrayList<Value> values) {
+        values.sort(session);
+        int size = values.size();
+        // values, which take more than a half of a bucket, are common values
+        int threshold = Math.max(size / (2 * MAX_BUCKETS), 1);
+        ArrayList<long[]> runs = new ArrayList<>();
+        for (int i = 0; i < size;) {
+            int start = i;
+            Value v = values.get(i);
+            while (++i < size && session.compare(v, values.get(i)) == 0) {
+                // skip duplicates
+            }
+            int count = i - start;
+            if (count > threshold) {
+                runs.add(new long[] { start, count });
+            }
+        }
+        if (runs.size() > MAX_COMMON_VALUES) {
+            runs.sort((a, b) -> Long.compare(b[1], a[1]));
+            runs.subList(MAX_COMMON_VALUES, runs.size()).clear();
+            runs.sort((a, b) -> Long.compare(a[0], b[0]));
+        }
+        int commonLength = runs.size();
+        Value[] commonValues = new Value[commonLength];
+        long[] commonCounts = new long[commonLength];
+        ArrayList<Value> others = new ArrayList<>(size);
+        long distinctCount = 0;
+        Value last = null;
+        for (int i = 0, run = 0; i < size; i++) {
+            if (run < commonLength && runs.get(run)[0] == i) {
+                int count = (int) runs.get(run)[1];
+                commonValues[run] = values.get(i);
+                commonCounts[run] = count;
+                i += count - 1;
+                run++;
+                continue;
+            }
+            Value v = values.get(i);
+            if (last == null || session.compare(last, v) != 0) {
+                distinctCount++;
+            }
+            others.add(v);
+            last = v;
+        }
+        Value[] bounds;
+        int otherSize = others.size();
+        if (otherSize == 0) {
+            bounds = new Value[0];
+        } else {
+            int buckets = Math.min(MAX_BUCKETS, otherSize);
+            bounds = new Value[buckets + 1];
+            for (int i = 0; i <= buckets; i++) {
+                bounds[i] = others.get((int) ((otherSize - 1L) * i / buckets));
+            }
+        }
+        return new ColumnStatistics(valueType, rowCount, nullCount, distinctCount, commonValues, commonCounts,
+                bounds);
+    }
+
+    /**
+     * Returns the value type of the analyzed column.
+     *
+     * @return the value type
+     */
+    public int getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Estimate the fraction of rows, where the column is equal to the
+     * specified value.
+     *
+     * @param session the session
+     * @param v the value
+     * @param nullSafe whether NULL is equal to NULL
+     * @return the fraction of rows, from 0 to 1
+     */
+    public double getEqualFraction(SessionLocal session, Value v, boolean nullSafe) {
+        if (rowCount == 0) {
+            return 0d;
+        }
+        if (v == ValueNull.INSTANCE) {
+            return nullSafe ? (double) nullCount / rowCount : 0d;
+        }
+        int i = Arrays.binarySearch(commonValues, v, session);
+        if (i >= 0) {
+            return (double) commonCounts[i] / rowCount;
+        }
+        int length = bounds.length;
+        if (length == 0 || distinctCount == 0 || session.compare(v, bounds[0]) < 0
+                || session.compare(v, bounds[length - 1]) > 0) {
+            return 0d;
+        }
+        return (double) otherCount / distinctCount / rowCount;
+    }
+
+    /**
+     * Estimate the fraction of rows, where the column is within the specified
+     * range. Bounds are treated as inclusive.
+     *
+     * @param session the session
+     * @param min the lower bound, or {@code null}
+     * @param max the upper bound, or {@code null}
+     * @return the fraction of rows, from 0 to 1
+     */
+    public double getRangeFraction(SessionLocal session, Value min, Value max) {
+        if (rowCount == 0) {
+            return 0d;
+        }
+        if (min != null && max != null && session.compare(min, max) > 0) {
+            return 0d;
+        }
+        double rows = 0d;
+        for (int i = 0; i < commonValues.length; i++) {
+            Value v = commonValues[i];
+            if ((min == null || session.compare(v, min) >= 0) && (max == null || session.compare(v, max) <= 0)) {
+                rows += commonCounts[i];
+            }
+        }
+        if (bounds.length > 0) {
+            double from = min != null ? getPosition(session, min) : 0d;
+            double to = max != null ? getPosition(session, max) : 1d;
+            if (to > from) {
+                rows += otherCount * (to - from);
+            }
+        }
+        return Math.min(rows / rowCount, 1d);
+    }
+
+    /**
+     * Returns the approximate fraction of non-common values, which are
+     * smaller than the specified value.
+     */
+    private double getPosition(SessionLocal session, Value v) {
+        int buckets = bounds.length - 1;
+        if (session.compare(v, bounds[0]) <= 0) {
+            return 0d;
+        } else if (session.compare(v, bounds[buckets]) >= 0) {
+            return 1d;
+        }
+        int low = 0, high = buckets;
+        // bounds[low] < v < bounds[high]
+        while (high - low > 1) {
+            int mid = (low + high) >>> 1;
+            int c = session.compare(v, bounds[mid]);
+            if (c == 0) {
+                return (double) mid / buckets;
+            } else if (c > 0) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return (low + interpolate(v, bounds[low], bounds[high])) / buckets;
+    }
+
+    /**
+     * Returns the position of the value between the specified bounds, or 0.5
+     * if it cannot be computed.
+     */
+    private double interpolate(Value v, Value from, Value to) {
+        if (v.getValueType() != valueType) {
+            return 0.5d;
+        }
+        double x, a, b;
+        if (DataType.isNumericType(valueType)) {
+            x = v.getDouble();
+            a = from.getDouble();
+            b = to.getDouble();
+        } else if (valueType == Value.DATE) {
+            x = DateTimeUtils.absoluteDayFromDateValue(((ValueDate) v).getDateValue());
+            a = DateTimeUtils.absoluteDayFromDateValue(((ValueDate) from).getDateValue());
+            b = DateTimeUtils.absoluteDayFromDateValue(((ValueDate) to).getDateValue());
+        } else if (valueType == Value.TIMESTAMP) {
+            x = getEpochNanos((ValueTimestamp) v);
+            a = getEpochNanos((ValueTimestamp) from);
+            b = getEpochNanos((ValueTimestamp) to);
+        } else {
+            return 0.5d;
+        }
+        double p = (x - a) / (b - a);
+        return p >= 0d && p <= 1d ? p : 0.5d;
+    }
+
+    private static double getEpochNanos(ValueTimestamp v) {
+        return (double) DateTimeUtils.absoluteDayFromDateValue(v.getDateValue()) * DateTimeUtils.NANOS_PER_DAY
+                + v.getTimeNanos();
+    }
+
+    /**
+     * Appends the SQL representation of these statistics.
+     *
+     * @param builder the string builder
+     * @return the specified string builder
+     */
+    public StringBuilder getSQL(StringBuilder builder) {
+        builder.append("STATISTICS(").append(rowCount).append(", ").append(nullCount).append(", ")
+                .append(distinctCount).append(", ");
+        getArraySQL(builder, commonValues).append(", ARRAY [");
+        for (int i = 0, length = commonCounts.length; i < length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(commonCounts[i]);
+        }
+        return getArraySQL(builder.append("], "), bounds).append(')');
+    }
+
+    private static StringBuilder getArraySQL(StringBuilder builder, Value[] values) {
+        builder.append("ARRAY [");
+        for (int i = 0, length = values.length; i < length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            values[i].getSQL(builder, HasSQL.DEFAULT_SQL_FLAGS);
+        }
+        return builder.append(']');
+    }
+
+}
@@ -18,8 +18,11 @@
 import org.h2.engine.Right;
 import org.h2.engine.SessionLocal;
 import org.h2.expression.Expression;
+import org.h2.expression.ExpressionColumn;
+import org.h2.expression.ExpressionVisitor;
 import org.h2.expression.condition.Comparison;
 import org.h2.expression.condition.ConditionAndOr;
+import org.h2.index.HashJoinIndex;
 import org.h2.index.Index;
 import org.h2.index.IndexCondition;
 import org.h2.index.IndexCursor;
@@ -31,6 +34,7 @@
 import org.h2.util.ParserUtil;
 import org.h2.util.StringUtils;
 import org.h2.util.Utils;
+import org.h2.value.CompareMode;
 import org.h2.value.TypeInfo;
 import org.h2.value.Value;
 import org.h2.value.ValueBigint;
@@ -85,6 +89,11 @@ public class TableFilter implements ColumnResolver {
      */
     private final IndexCursor cursor;
 
+    /**
+     * Whether the index is iterated in reverse order.
+     */
+    private boolean reverse;
+
     /**
      * The index conditions used for direct index lookup (start or end).
      */
@@ -105,6 +114,11 @@ public class TableFilter implements ColumnResolver {
     private Row current;
     private int state;
 
+    /**
+     * The current rows of the threads of a parallel scan, or null.
+     */
+    private ThreadLocal<Row> parallelRows;
+
     /**
      * The joined table (if there is one).
      */
@@ -247,6 +261,18 @@ public PlanItem getBestPlanItem(SessionLocal s, TableFilter[] filters, int filte
             }
         }
         PlanItem item = table.getBestPlanItem(s, masks, filters, filter, sortOrder, allColumnsSet, isSelectCommand);
+        if (isSelectCommand && masks != null && s.getDatabase().getSettings().hashJoin) {
+            IndexColumn[] hashColumns = getHashJoinColumns(filters, filter);
+            if (hashColumns != null) {
+                HashJoinIndex hashIndex = new HashJoinIndex(table, hashColumns);
+                double cost = hashIndex.getCost(s, masks, filters, filter, sortOrder, allColumnsSet,
+                        isSelectCommand);
+                if (cost < item.cost) {
+                    item.setIndex(hashIndex);
+                    item.cost = cost;
+                }
+            }
+        }
         item.setMasks(masks);
         // The more index conditions, the earlier the table.
         // This is to ensure joins without indexes run quickly:
@@ -277,6 +303,111 @@ public PlanItem getBestPlanItem(SessionLocal s, TableFilter[] filters, int filte
         return item;
     }
 
+    /**
+     * Get the columns of this table that are compared for equality with
+     * columns of the preceding tables, if a hash join can be used for them.
+     *
+     * @param filters all joined table filters
+     * @param filter the current table filter index
+     * @return the columns, or {@code null} if a hash join can't be used
+     */
+    private IndexColumn[] getHashJoinColumns(TableFilter[] filters, int filter) {
+        if (table.getTableType() != TableType.TABLE) {
+            return null;
+        }
+        ArrayList<Column> columns = new ArrayList<>();
+        for (IndexCondition condition : indexConditions) {
+            if (!condition.isEvaluatable() || condition.getCompareType() != Comparison.EQUAL
+                    || condition.isCompoundColumns()) {
+                continue;
+            }
+            Column column = condition.getColumn();
+            if (column.getColumnId() < 0 || columns.contains(column) || !isHashJoinType(column.getType())
+                    || column.getType().getValueType() != condition.getExpression().getType().getValueType()) {
+                continue;
+            }
+            Expression expression = condition.getExpression();
+            for (int i = 0; i < filter; i++) {
+                if (!expression.isEverything(ExpressionVisitor.getNotFromResolverVisitor(filters[i]))) {
+                    columns.add(column);
+                    break;
+                }
+            }
+        }
+        int size = columns.size();
+        if (size == 0) {
+            return null;
+        }
+        IndexColumn[] indexColumns = new IndexColumn[size];
+        for (int i = 0; i < size; i++) {
+            indexColumns[i] = new IndexColumn(columns.get(i));
+        }
+        return indexColumns;
+    }
+
+    private boolean isHashJoinType(TypeInfo type) {
+        switch (type.getValueType()) {
+        case Value.BOOLEAN:
+        case Value.TINYINT:
+        case Value.SMALLINT:
+        case Value.INTEGER:
+        case Value.BIGINT:
+        case Value.DATE:
+        case Value.UUID:
+            return true;
+        case Value.VARCHAR:
+        case Value.CHAR:
+            // Equal strings must have equal hash codes
+            return CompareMode.OFF.equals(table.getDatabase().getCompareMode().getName());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the rows of this table are looked up by equality with a
+     * column of a preceding table, which is read in ascending order of that
+     * column, so that the lookups can move one index cursor forward instead of
+     * searching in the index for each row.
+     *
+     * @return whether merge join lookups should be used
+     */
+    private boolean isMergeJoin() {
+        if (select == null || index == null || reverse || !index.canSeek() || index.getIndexType().isScan()
+                || !session.getDatabase().getSettings().mergeJoin) {
+            return false;
+        }
+        IndexColumn[] columns = index.getIndexColumns();
+        if (columns == null || columns.length == 0 || (columns[0].sortType & SortOrder.DESCENDING) != 0) {
+            return false;
+        }
+        IndexColumn first = columns[0];
+        for (IndexCondition condition : indexConditions) {
+            if (condition.getCompareType() != Comparison.EQUAL || condition.isCompoundColumns()
+                    || condition.getColumn() != first.column) {
+                continue;
+            }
+            Expression expression = condition.getExpression();
+            if (!(expression instanceof ExpressionColumn)) {
+                continue;
+            }
+            ExpressionColumn ec = (ExpressionColumn) expression;
+            TableFilter outer = ec.getTableFilter();
+            if (outer == null || outer == this || outer.index == null || outer.index.getIndexType().isScan()
+                    || outer.index instanceof HashJoinIndex) {
+                continue;
+            }
+            IndexColumn[] outerColumns = outer.index.getIndexColumns();
+            if (outerColumns == null || outerColumns.length == 0 || outerColumns[0].column != ec.getColumn()
+                    || ((outerColumns[0].sortType & SortOrder.DESCENDING) != 0) != outer.reverse
+                    || ec.getColumn().getType().getValueType() != first.column.getType().getValueType()) {
+                continue;
+            }
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Set what plan item (index, cost, masks) to use.
      *
@@ -408,6 +539,10 @@ public void prepare() {
     public void startQuery(SessionLocal s) {
         this.session = s;
         scanCount = 0;
+        if (index instanceof HashJoinIndex) {
+            ((HashJoinIndex) index).reset();
+        }
+        cursor.setMergeJoin(isMergeJoin());
         if (nestedJoin != null) {
             nestedJoin.startQuery(s);
         }
@@ -416,6 +551,22 @@ public void startQuery(SessionLocal s) {
         }
     }
 
+    /**
+     * End the query. This releases the data collected for the query, such as
+     * the hash table of a hash join. The query may be started again later.
+     */
+    public void endQuery() {
+        if (index instanceof HashJoinIndex) {
+            ((HashJoinIndex) index).reset();
+        }
+        if (nestedJoin != null) {
+            nestedJoin.endQuery();
+        }
+        if (join != null) {
+            join.endQuery();
+        }
+    }
+
     /**
      * Reset to the current position.
      */
@@ -575,6 +726,17 @@ public void set(Row current) {
         this.currentSearchRow = current;
     }
 
+    /**
+     * Set the current rows of the threads, which scan this table in parallel.
+     * While it is set, columns of this table are evaluated in such threads
+     * from their own current row.
+     *
+     * @param parallelRows the current rows of the threads, or null
+     */
+    public void setParallelRows(ThreadLocal<Row> parallelRows) {
+        this.parallelRows = parallelRows;
+    }
+
     /**
      * Get the table alias name. If no alias is specified, the table name is
      * returned.
@@ -598,6 +760,114 @@ public void addIndexCondition(IndexCondition condition) {
         indexConditions.add(condition);
     }
 
+    /**
+     * Check if there are index conditions, which restrict the rows read from
+     * the index.
+     *
+     * @return true if there are index conditions
+     */
+    public boolean hasIndexConditions() {
+        return !indexConditions.isEmpty();
+    }
+
+    /**
+     * Check if some index conditions of this table filter reference columns of
+     * the specified table filter.
+     *
+     * @param filter the other table filter
+     * @return true if the tables are joined by an index condition
+     */
+    public boolean hasIndexConditionsOn(TableFilter filter) {
+        ExpressionVisitor visitor = ExpressionVisitor.getNotFromResolverVisitor(filter);
+        for (IndexCondition condition : indexConditions) {
+            if (!condition.isEverything(visitor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Estimate the fraction of rows of the table, which satisfy the index
+     * conditions on the specified column, with statistics of the column
+     * collected by ANALYZE. Only conditions with constant values are taken
+     * into account.
+     *
+     * @param column the column
+     * @return the fraction of rows, from 0 to 1, or -1 if it is unknown
+     */
+    public double getConditionFraction(Column column) {
+        ColumnStatistics statistics = column.getStatistics();
+        if (statistics == null) {
+            return -1d;
+        }
+        Value min = null, max = null;
+        for (IndexCondition condition : indexConditions) {
+            if (!condition.isEvaluatable() || condition.isCompoundColumns() || condition.getColumn() != column) {
+                continue;
+            }
+            int compareType = condition.getCompareType();
+            switch (compareType) {
+            case Comparison.EQUAL:
+            case Comparison.EQUAL_NULL_SAFE: {
+                Expression e = condition.getExpression();
+                if (e.isConstant()) {
+                    return statistics.getEqualFraction(session, e.getValue(session),
+                            compareType == Comparison.EQUAL_NULL_SAFE);
+                }
+                break;
+            }
+            case Comparison.IN_LIST: {
+                double fraction = 0d;
+                for (Expression e : condition.getExpressionList()) {
+                    if (!e.isConstant()) {
+                        fraction = -1d;
+                        break;
+                    }
+                    fraction += statistics.getEqualFraction(session, e.getValue(session), false);
+                }
+                if (fraction >= 0d) {
+                    return Math.min(fraction, 1d);
+                }
+                break;
+            }
+            case Comparison.BIGGER_EQUAL:
+            case Comparison.BIGGER: {
+                Expression e = condition.getExpression();
+                if (e.isConstant()) {
+                    Value v = e.getValue(session);
+                    if (v == ValueNull.INSTANCE) {
+                        return 0d;
+                    }
+                    if (min == null || session.compare(v, min) > 0) {
+                        min = v;
+                    }
+                }
+                break;
+            }
+            case Comparison.SMALLER_EQUAL:
+            case Comparison.SMALLER: {
+                Expression e = condition.getExpression();
+                if (e.isConstant()) {
+                    Value v = e.getValue(session);
+                    if (v == ValueNull.INSTANCE) {
+                        return 0d;
+                    }
+                    if (max == null || session.compare(v, max) < 0) {
+                        max = v;
+                    }
+                }
+                break;
+            }
+            default:
+            }
+        }
+        if (min == null && max == null) {
+            return -1d;
+        }
+        return statistics.getRangeFraction(session, min, max);
+    }
+
     /**
      * Add a filter condition.
      *
@@ -821,6 +1091,9 @@ public StringBuilder getPlanSQL(StringBuilder builder, boolean isJoin, int sqlFl
         if (index != null && (sqlFlags & HasSQL.ADD_PLAN_INFORMATION) != 0) {
             builder.append('\n');
             StringBuilder planBuilder = new StringBuilder().append("/* ").append(index.getPlanSQL());
+            if (isMergeJoin()) {
+                planBuilder.append(" (merge join)");
+            }
             if (!indexConditions.isEmpty()) {
                 planBuilder.append(": ");
                 for (int i = 0, size = indexConditions.size(); i < size; i++) {
@@ -884,6 +1157,7 @@ public Index getIndex() {
 
     public void setIndex(Index index, boolean reverse) {
         this.index = index;
+        this.reverse = reverse;
         cursor.setIndex(index, reverse);
     }
 
@@ -1074,6 +1348,13 @@ public Column getRowIdColumn() {
 
     @Override
     public Value getValue(Column column) {
+        if (parallelRows != null) {
+            Row row = parallelRows.get();
+            if (row != null) {
+                int columnId = column.getColumnId();
+                return columnId == -1 ? ValueBigint.get(row.getKey()) : row.getValue(columnId);
+            }
+        }
         if (currentSearchRow == null) {
             return null;
         }
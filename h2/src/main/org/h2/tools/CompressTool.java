@@ -21,6 +21,7 @@
 import org.h2.api.ErrorCode;
 import org.h2.compress.CompressDeflate;
 import org.h2.compress.CompressLZF;
+import org.h2.compress.CompressLZFDictionary;
 import org.h2.compress.CompressNo;
 import org.h2.compress.Compressor;
 import org.h2.compress.LZFInputStream;
@@ -66,10 +67,11 @@ public static CompressTool getInstance() {
 
     /**
      * Compressed the data using the specified algorithm. If no algorithm is
-     * supplied, LZF is used
+     * supplied, LZF is used. For LZF_DICTIONARY, the hex encoded dictionary
+     * may follow the algorithm name, separated by a space.
      *
      * @param in the byte array with the original data
-     * @param algorithm the algorithm (LZF, DEFLATE)
+     * @param algorithm the algorithm (LZF, LZF_DICTIONARY, DEFLATE)
      * @return the compressed data
      */
     public byte[] compress(byte[] in, String algorithm) {
@@ -103,11 +105,22 @@ private static int compress(byte[] in, int len, Compressor compress,
      * @return the uncompressed data
      */
     public byte[] expand(byte[] in) {
+        return expand(in, null);
+    }
+
+    /**
+     * Expands the compressed data, which may be compressed with a dictionary.
+     *
+     * @param in the byte array with the compressed data
+     * @param dictionary the dictionary the data was compressed with, or null
+     * @return the uncompressed data
+     */
+    public byte[] expand(byte[] in, byte[] dictionary) {
         if (in.length == 0) {
             throw DbException.get(ErrorCode.COMPRESSION_ERROR);
         }
         int algorithm = in[0];
-        Compressor compress = getCompressor(algorithm);
+        Compressor compress = getCompressor(algorithm, dictionary);
         try {
             int len = readVariableInt(in, 1);
             int start = 1 + getVariableIntLength(len);
@@ -127,7 +140,7 @@ public byte[] expand(byte[] in) {
      */
     public static void expand(byte[] in, byte[] out, int outPos) {
         int algorithm = in[0];
-        Compressor compress = getCompressor(algorithm);
+        Compressor compress = getCompressor(algorithm, null);
         try {
             int len = readVariableInt(in, 1);
             int start = 1 + getVariableIntLength(len);
@@ -236,7 +249,10 @@ private static Compressor getCompressor(String algorithm) {
             algorithm = algorithm.substring(0, idx);
         }
         int a = getCompressAlgorithm(algorithm);
-        Compressor compress = getCompressor(a);
+        if (a == Compressor.LZF_DICTIONARY) {
+            return getCompressor(a, options == null ? null : StringUtils.convertHexToBytes(options.trim()));
+        }
+        Compressor compress = getCompressor(a, null);
         compress.setOptions(options);
         return compress;
     }
@@ -252,6 +268,8 @@ private static int getCompressAlgorithm(String algorithm) {
             return Compressor.NO;
         } else if ("LZF".equals(algorithm)) {
             return Compressor.LZF;
+        } else if ("LZF_DICTIONARY".equals(algorithm)) {
+            return Compressor.LZF_DICTIONARY;
         } else if ("DEFLATE".equals(algorithm)) {
             return Compressor.DEFLATE;
         } else {
@@ -261,12 +279,14 @@ private static int getCompressAlgorithm(String algorithm) {
         }
     }
 
-    private static Compressor getCompressor(int algorithm) {
+    private static Compressor getCompressor(int algorithm, byte[] dictionary) {
         switch (algorithm) {
         case Compressor.NO:
             return new CompressNo();
         case Compressor.LZF:
             return new CompressLZF();
+        case Compressor.LZF_DICTIONARY:
+            return new CompressLZFDictionary(dictionary == null ? new byte[0] : dictionary);
         case Compressor.DEFLATE:
             return new CompressDeflate();
         default:
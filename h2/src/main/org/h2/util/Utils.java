@@ -764,6 +764,23 @@ public static ThreadPoolExecutor createSingleThreadExecutor(String threadName, B
                                         });
     }
 
+    /**
+     * Creates an executor with a fixed number of daemon threads.
+     *
+     * @param threadName the name of the threads
+     * @param threadCount the number of threads
+     * @return the executor
+     */
+    public static ThreadPoolExecutor createFixedThreadPool(String threadName, int threadCount) {
+        return new ThreadPoolExecutor(threadCount, threadCount, 0L, TimeUnit.MILLISECONDS,
+                                        new LinkedBlockingQueue<>(),
+                                        r -> {
+                                            Thread thread = new Thread(r, threadName);
+                                            thread.setDaemon(true);
+                                            return thread;
+                                        });
+    }
+
     /**
      * Makes sure that all currently submitted tasks are processed before this method returns.
      * It is assumed that there will be no new submissions to this executor, once this method has started.
@@ -131,6 +131,7 @@
 import org.h2.test.server.TestWeb;
 import org.h2.test.store.TestCacheConcurrentLIRS;
 import org.h2.test.store.TestCacheLIRS;
+import org.h2.test.store.TestCacheLongKeyDirect;
 import org.h2.test.store.TestCacheLongKeyLIRS;
 import org.h2.test.store.TestDataUtils;
 import org.h2.test.store.TestDefrag;
@@ -907,6 +908,7 @@ private void testUtils() {
         // mv store
         addTest(new TestCacheConcurrentLIRS());
         addTest(new TestCacheLIRS());
+        addTest(new TestCacheLongKeyDirect());
         addTest(new TestCacheLongKeyLIRS());
         addTest(new TestDataUtils());
         addTest(new TestFreeSpace());
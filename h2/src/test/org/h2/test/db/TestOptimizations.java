@@ -5,6 +5,8 @@
  */
 package org.h2.test.db;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -18,6 +20,8 @@
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import org.h2.api.ErrorCode;
+import org.h2.engine.Constants;
+import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 import org.h2.tools.SimpleResultSet;
@@ -87,6 +91,11 @@ public void test() throws Exception {
         testIndexUseDespiteNullsFirst();
         testConvertOrToIn();
         testConditionAndOrDistributiveLaw();
+        testHashJoin();
+        testMergeJoin();
+        testParallelScan();
+        testHistogram();
+        testJoinOrderDynamicProgramming();
         deleteDb("optimizations");
     }
 
@@ -1326,6 +1335,221 @@ private void testConditionAndOrDistributiveLaw() throws SQLException {
         conn.close();
     }
 
+    private void testHashJoin() throws Exception {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;HASH_JOIN=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE A(ID INT PRIMARY KEY, K INT, S VARCHAR)");
+        stat.execute("CREATE TABLE B(K INT, S VARCHAR, V INT)");
+        stat.execute("INSERT INTO A SELECT X, CASEWHEN(MOD(X, 17) = 0, NULL, MOD(X, 50)), 'S' || MOD(X, 3)"
+                + " FROM SYSTEM_RANGE(1, 300)");
+        stat.execute("INSERT INTO B SELECT CASEWHEN(MOD(X, 13) = 0, NULL, MOD(X, 70)), 'S' || MOD(X, 2), X"
+                + " FROM SYSTEM_RANGE(1, 400)");
+        String query = "SELECT A.ID, B.V FROM A JOIN B ON A.K = B.K AND A.S = B.S ORDER BY A.ID, B.V";
+        // the same join, without equality conditions usable for an index
+        String expected = getResult(stat, "SELECT A.ID, B.V FROM A JOIN B ON A.K - B.K = 0"
+                + " AND A.S || 'x' = B.S || 'x' ORDER BY A.ID, B.V");
+        assertTrue(expected.length() > 0);
+        ResultSet rs = stat.executeQuery("EXPLAIN " + query);
+        rs.next();
+        assertContains(rs.getString(1), ".hashJoin(");
+        assertEquals(expected, getResult(stat, query));
+        stat.execute("SET MAX_MEMORY_ROWS 10");
+        int tempFiles = getTempFileCount();
+        assertEquals(expected, getResult(stat, query));
+        // the rows of B were stored in a temporary file during the query
+        assertEquals(tempFiles, getTempFileCount());
+        stat.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        rs = stat.executeQuery("SELECT A.ID, B.V FROM A JOIN B ON A.K = B.K AND A.S = B.S");
+        assertTrue(rs.next());
+        assertEquals(tempFiles + 1, getTempFileCount());
+        rs.close();
+        assertEquals(tempFiles, getTempFileCount());
+        stat.execute("SET LAZY_QUERY_EXECUTION FALSE");
+        stat.execute("SET MAX_MEMORY_ROWS 40000");
+        stat.execute("CREATE INDEX A_K_S ON A(K, S)");
+        stat.execute("CREATE INDEX B_K_S ON B(K, S)");
+        rs = stat.executeQuery("EXPLAIN " + query);
+        rs.next();
+        assertFalse(rs.getString(1).contains(".hashJoin("));
+        assertEquals(expected, getResult(stat, query));
+        conn.close();
+    }
+
+    private static int getTempFileCount() throws IOException {
+        // find the directory used for temporary files
+        String probe = FileUtils.createTempFile("h2tmp", Constants.SUFFIX_TEMP_FILE, true);
+        FileUtils.delete(probe);
+        String[] files = new File(FileUtils.getParent(probe))
+                .list((dir, name) -> name.startsWith("h2tmp") && name.endsWith(Constants.SUFFIX_TEMP_FILE));
+        return files == null ? 0 : files.length;
+    }
+
+    private void testMergeJoin() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;MERGE_JOIN=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE A(ID INT PRIMARY KEY, K INT)");
+        stat.execute("CREATE INDEX A_K ON A(K)");
+        stat.execute("CREATE TABLE B(ID INT PRIMARY KEY, K INT, V INT)");
+        stat.execute("CREATE INDEX B_K ON B(K)");
+        stat.execute("INSERT INTO A SELECT X, CASEWHEN(MOD(X, 19) = 0, NULL, X / 3) FROM SYSTEM_RANGE(1, 1200)");
+        stat.execute("INSERT INTO B SELECT X, CASEWHEN(MOD(X, 23) = 0, NULL, MOD(X * 7, 600)), X"
+                + " FROM SYSTEM_RANGE(1, 800)");
+        String query = "SELECT A.ID, B.V FROM A USE INDEX (A_K) JOIN B USE INDEX (B_K)"
+                + " ON A.K = B.K WHERE A.K > 0 ORDER BY A.ID, B.V";
+        String expected = getResult(stat, "SELECT A.ID, B.V FROM A JOIN B ON A.K - B.K = 0"
+                + " WHERE A.K > 0 ORDER BY A.ID, B.V");
+        assertTrue(expected.length() > 0);
+        ResultSet rs = stat.executeQuery("EXPLAIN " + query);
+        rs.next();
+        assertContains(rs.getString(1), "(merge join)");
+        assertEquals(expected, getResult(stat, query));
+        // the outer table is scanned again for each row of the first table
+        query = "SELECT A.ID, B.V FROM SYSTEM_RANGE(1, 3) R JOIN A USE INDEX (A_K) ON A.K > R.X"
+                + " JOIN B USE INDEX (B_K) ON A.K = B.K ORDER BY A.ID, B.V";
+        assertEquals(getResult(stat, "SELECT A.ID, B.V FROM SYSTEM_RANGE(1, 3) R JOIN A ON A.K > R.X"
+                + " JOIN B ON A.K - B.K = 0 ORDER BY A.ID, B.V"), getResult(stat, query));
+        // uncommitted changes of the own transaction
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        stat.execute("DELETE FROM B WHERE MOD(ID, 5) = 0");
+        stat.execute("INSERT INTO B SELECT X, MOD(X, 300), X FROM SYSTEM_RANGE(1000, 1200)");
+        expected = getResult(stat, "SELECT A.ID, B.V FROM A JOIN B ON A.K - B.K = 0"
+                + " WHERE A.K > 0 ORDER BY A.ID, B.V");
+        query = "SELECT A.ID, B.V FROM A USE INDEX (A_K) JOIN B USE INDEX (B_K)"
+                + " ON A.K = B.K WHERE A.K > 0 ORDER BY A.ID, B.V";
+        assertEquals(expected, getResult(stat, query));
+        conn.rollback();
+        conn.close();
+    }
+
+    private void testParallelScan() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;PARALLEL_SCAN_THREADS=4");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE T(ID INT PRIMARY KEY, K INT, V INT, N INT)");
+        stat.execute("INSERT INTO T SELECT X, MOD(X, 37), MOD(X * 13, 1000) - 100,"
+                + " CASEWHEN(MOD(X, 7) = 0, NULL, X) FROM SYSTEM_RANGE(1, 60000)");
+        String[] queries = {
+                "SELECT K, SUM(V) FROM T GROUP BY K ORDER BY K",
+                "SELECT K, COUNT(*) + MIN(V) FROM T WHERE V > 10 AND N IS NOT NULL GROUP BY K ORDER BY K",
+                "SELECT V / 100, MAX(V) - COUNT(N) FROM T GROUP BY V / 100 ORDER BY 1",
+                "SELECT COUNT(*), AVG(V * 10) FROM T WHERE (K IN (1, 2, 3) OR V BETWEEN 5 AND 50)",
+                "SELECT COUNT(N), SUM(V) FROM T WHERE V < -1000",
+        };
+        for (String query : queries) {
+            ResultSet rs = stat.executeQuery("EXPLAIN " + query);
+            rs.next();
+            assertContains(rs.getString(1), "/* parallel scan */");
+            // a range of the primary key disables the parallel scan
+            String serial = query.replace("FROM T", "FROM T WHERE ID > 0 AND");
+            serial = serial.replace("AND GROUP", "GROUP").replace("AND WHERE", "AND");
+            rs = stat.executeQuery("EXPLAIN " + serial);
+            rs.next();
+            assertFalse(rs.getString(1).contains("/* parallel scan */"));
+            assertEquals(getResult(stat, serial), getResult(stat, query));
+        }
+        // functions that are not evaluated in parallel
+        ResultSet rs = stat.executeQuery("EXPLAIN SELECT SUM(ABS(V)) FROM T");
+        rs.next();
+        assertFalse(rs.getString(1).contains("/* parallel scan */"));
+        // uncommitted changes of the own transaction
+        conn.setAutoCommit(false);
+        conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        stat.execute("DELETE FROM T WHERE MOD(ID, 5) = 0");
+        stat.execute("INSERT INTO T SELECT X, MOD(X, 11), 1, X FROM SYSTEM_RANGE(70001, 75000)");
+        assertEquals(getResult(stat, "SELECT K, SUM(V) FROM T WHERE ID > 0 GROUP BY K ORDER BY K"),
+                getResult(stat, "SELECT K, SUM(V) FROM T GROUP BY K ORDER BY K"));
+        conn.rollback();
+        conn.close();
+    }
+
+    private void testHistogram() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations;ANALYZE_HISTOGRAM=TRUE");
+        Statement stat = conn.createStatement();
+        stat.execute("CREATE TABLE T(ID INT PRIMARY KEY, A INT, B INT)");
+        stat.execute("CREATE INDEX T_A ON T(A)");
+        stat.execute("CREATE INDEX T_B ON T(B)");
+        // 90% of rows have the same value of A
+        stat.execute("INSERT INTO T SELECT X, CASEWHEN(X <= 9000, 0, X), X FROM SYSTEM_RANGE(1, 10000)");
+        stat.execute("ANALYZE");
+        String[][] queries = {
+                { "SELECT ID, B FROM T WHERE A = 0 AND B BETWEEN 1 AND 500 ORDER BY ID", "T_B" },
+                { "SELECT ID, B FROM T WHERE A > 5000 AND B < 9000 ORDER BY ID", "T_A" },
+                { "SELECT ID, B FROM T WHERE A = 9500 AND B > 100 ORDER BY ID", "T_A" },
+                { "SELECT ID, B FROM T WHERE A IN (0, 9999) AND B <= 20 ORDER BY ID", "T_B" },
+        };
+        for (int i = 0; i < 2; i++) {
+            for (String[] query : queries) {
+                ResultSet rs = stat.executeQuery("EXPLAIN " + query[0]);
+                rs.next();
+                assertContains(rs.getString(1), "PUBLIC." + query[1] + ':');
+                assertEquals(getResult(stat, query[0].replace("FROM T", "FROM T USE INDEX ()")),
+                        getResult(stat, query[0]));
+            }
+            // statistics are persisted
+            conn.close();
+            conn = getConnection("optimizations;ANALYZE_HISTOGRAM=TRUE");
+            stat = conn.createStatement();
+        }
+        // without histograms, only the number of distinct values is known
+        conn.close();
+        conn = getConnection("optimizations");
+        stat = conn.createStatement();
+        stat.execute("ANALYZE");
+        ResultSet rs = stat.executeQuery("EXPLAIN " + queries[0][0]);
+        rs.next();
+        assertContains(rs.getString(1), "PUBLIC.T_A:");
+        conn.close();
+    }
+
+    private void testJoinOrderDynamicProgramming() throws SQLException {
+        deleteDb("optimizations");
+        Connection conn = getConnection("optimizations");
+        Statement stat = conn.createStatement();
+        // a chain of 10 tables, T<i>.P references T<i - 1>.ID
+        StringBuilder query = new StringBuilder("SELECT T0.ID, T9.ID FROM ");
+        for (int i = 9; i >= 0; i--) {
+            stat.execute("CREATE TABLE T" + i + "(ID INT, P INT)");
+            stat.execute("CREATE INDEX T" + i + "_ID ON T" + i + "(ID)");
+            stat.execute("CREATE INDEX T" + i + "_P ON T" + i + "(P)");
+            stat.execute("INSERT INTO T" + i + " SELECT X, X FROM SYSTEM_RANGE(1, " + (100 + i * 50) + ')');
+            query.append(i < 9 ? ", T" : "T").append(i);
+        }
+        query.append(" WHERE T5.ID = 7");
+        for (int i = 1; i < 10; i++) {
+            query.append(" AND T").append(i).append(".P = T").append(i - 1).append(".ID");
+        }
+        stat.execute("ANALYZE");
+        ResultSet rs = stat.executeQuery("EXPLAIN " + query);
+        rs.next();
+        String plan = rs.getString(1);
+        // the only table with a constant condition is read first, all other
+        // tables are joined with indexes
+        assertTrue(plan, plan.indexOf("\"PUBLIC\".\"T5\"") < plan.indexOf("\"PUBLIC\".\"T4\""));
+        assertTrue(plan, plan.indexOf("\"PUBLIC\".\"T5\"") < plan.indexOf("\"PUBLIC\".\"T6\""));
+        assertFalse(plan, plan.contains("tableScan"));
+        // the plan is the same each time
+        for (int i = 0; i < 3; i++) {
+            rs = stat.executeQuery("EXPLAIN " + query);
+            rs.next();
+            assertEquals(plan, rs.getString(1));
+        }
+        assertEquals("7,7;", getResult(stat, query.toString()));
+        conn.close();
+    }
+
+    private static String getResult(Statement stat, String sql) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        ResultSet rs = stat.executeQuery(sql);
+        while (rs.next()) {
+            builder.append(rs.getInt(1)).append(',').append(rs.getInt(2)).append(';');
+        }
+        return builder.toString();
+    }
+
     private void testConditionsStackOverflow() throws SQLException {
         deleteDb("optimizations");
         Connection conn = getConnection("optimizations");
@@ -11,12 +11,16 @@
 import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Properties;
 import java.util.TimeZone;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.h2.api.ErrorCode;
 import org.h2.engine.Constants;
 import org.h2.engine.SysProperties;
+import org.h2.jdbc.JdbcConnection;
 import org.h2.test.TestBase;
 import org.h2.test.TestDb;
 import org.h2.util.DateTimeUtils;
@@ -50,6 +54,7 @@ public void test() throws Exception {
         testRollbackOnAutoCommitSetRunner();
         testChangeTransactionLevelCommitRunner();
         testLockTimeout();
+        testCommitAsync();
         testIgnoreUnknownSettings();
         testTimeZone();
     }
@@ -355,6 +360,35 @@ private void testLockTimeout() throws SQLException {
         }
     }
 
+    private void testCommitAsync() throws Exception {
+        deleteDb("commitAsync");
+        try (Connection conn1 = getConnection("commitAsync");
+                Connection conn2 = getConnection("commitAsync")) {
+            JdbcConnection jdbc = conn1.unwrap(JdbcConnection.class);
+            if (config.networked) {
+                assertThrows(ErrorCode.FEATURE_NOT_SUPPORTED_1, jdbc).commitAsync();
+                return;
+            }
+            Statement s1 = conn1.createStatement();
+            s1.execute("CREATE TABLE TEST(ID INT PRIMARY KEY, V INT)");
+            jdbc.commitAsync().get(10, TimeUnit.SECONDS);
+            conn1.setAutoCommit(false);
+            ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                s1.execute("INSERT INTO TEST VALUES (" + i + ", " + i + ')');
+                futures.add(jdbc.commitAsync());
+            }
+            ResultSet rs = conn2.createStatement().executeQuery("SELECT COUNT(*) FROM TEST");
+            rs.next();
+            assertEquals(10, rs.getInt(1));
+            for (CompletableFuture<Void> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            deleteDb("commitAsync");
+        }
+    }
+
     private void testIgnoreUnknownSettings() throws SQLException {
         deleteDb("ignoreUnknownSettings");
         assertThrows(ErrorCode.UNSUPPORTED_SETTING_1, () -> getConnection("ignoreUnknownSettings;A=1"));
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.store;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+import org.h2.mvstore.cache.CacheLongKeyDirect;
+import org.h2.test.TestBase;
+
+/**
+ * Tests the off-heap cache.
+ */
+public class TestCacheLongKeyDirect extends TestBase {
+
+    private static final int MB = 1024 * 1024;
+
+    /**
+     * Run just this test.
+     *
+     * @param a ignored
+     */
+    public static void main(String... a) throws Exception {
+        TestBase.createCaller().init().testFromMain();
+    }
+
+    @Override
+    public void test() throws Exception {
+        testGetPutRemove();
+        testEviction();
+        testSegments();
+        testRandomOperations();
+    }
+
+    private void testGetPutRemove() {
+        CacheLongKeyDirect cache = new CacheLongKeyDirect(MB);
+        assertEquals(MB, cache.getMaxMemory());
+        assertNull(cache.get(1));
+        ByteBuffer value = createValue(1, 100);
+        value.position(10);
+        assertTrue(cache.put(1, value));
+        // the position of the value is not changed
+        assertEquals(10, value.position());
+        assertEquals(90, cache.getUsedMemory());
+        ByteBuffer result = cache.get(1);
+        assertFalse(result.isDirect());
+        assertEquals(0, result.position());
+        assertEquals(90, result.remaining());
+        assertEquals(value.get(10), result.get(0));
+        // replace the entry
+        assertTrue(cache.put(1, createValue(2, 50)));
+        assertEquals(50, cache.getUsedMemory());
+        assertEquals(createValue(2, 50), cache.get(1));
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertEquals(0, cache.getUsedMemory());
+        // too large
+        assertFalse(cache.put(2, createValue(3, MB / 4)));
+        assertNull(cache.get(2));
+        cache.put(3, createValue(3, 100));
+        cache.clear();
+        assertNull(cache.get(3));
+        assertEquals(0, cache.getUsedMemory());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    private void testEviction() {
+        CacheLongKeyDirect cache = new CacheLongKeyDirect(MB);
+        int size = 10_000;
+        // 104 entries fit
+        for (int i = 0; i < 104; i++) {
+            assertTrue(cache.put(i, createValue(i, size)));
+        }
+        assertEquals(104 * size, cache.getUsedMemory());
+        assertEquals(0, cache.getEvictions());
+        cache.remove(50);
+        // the oldest entries are evicted, removed entries don't free their
+        // space until the ring comes round
+        cache.put(104, createValue(104, size));
+        assertNull(cache.get(0));
+        assertEquals(createValue(1, size), cache.get(1));
+        assertEquals(1, cache.getEvictions());
+        for (int i = 105; i < 200; i++) {
+            cache.put(i, createValue(i, size));
+        }
+        for (int i = 0; i < 200; i++) {
+            if (i < 96) {
+                assertNull(cache.get(i));
+            } else {
+                assertEquals(createValue(i, size), cache.get(i));
+            }
+        }
+        assertEquals(104 * size, cache.getUsedMemory());
+        assertEquals(96 - 1, cache.getEvictions());
+    }
+
+    private void testSegments() {
+        CacheLongKeyDirect cache = new CacheLongKeyDirect(64L * MB);
+        assertEquals(64L * MB, cache.getMaxMemory());
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cache.put(i, createValue(i, 1000)));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(createValue(i, 1000), cache.get(i));
+        }
+        assertEquals(1000 * 1000, cache.getUsedMemory());
+    }
+
+    private void testRandomOperations() {
+        Random r = new Random(1);
+        for (int j = 0; j < 10; j++) {
+            CacheLongKeyDirect cache = new CacheLongKeyDirect((1 + r.nextInt(8)) * MB);
+            HashMap<Long, ByteBuffer> last = new HashMap<>();
+            for (int i = 0; i < 20_000; i++) {
+                long key = r.nextInt(2000);
+                switch (r.nextInt(4)) {
+                case 0:
+                    cache.remove(key);
+                    last.remove(key);
+                    break;
+                case 1:
+                case 2: {
+                    ByteBuffer value = createValue(r.nextInt(), 1 + r.nextInt(30_000));
+                    if (cache.put(key, value)) {
+                        last.put(key, value);
+                    } else {
+                        last.remove(key);
+                    }
+                    break;
+                }
+                default:
+                    ByteBuffer result = cache.get(key);
+                    if (result != null) {
+                        assertEquals(last.get(key), result);
+                    }
+                }
+            }
+            long used = 0;
+            for (long key = 0; key < 2000; key++) {
+                ByteBuffer result = cache.get(key);
+                if (result != null) {
+                    assertEquals(last.get(key), result);
+                    used += result.remaining();
+                }
+            }
+            assertEquals(used, cache.getUsedMemory());
+            assertTrue(used <= cache.getMaxMemory());
+        }
+    }
+
+    private static ByteBuffer createValue(int seed, int length) {
+        byte[] data = new byte[length];
+        new Random(seed).nextBytes(data);
+        return ByteBuffer.wrap(data);
+    }
+
+}
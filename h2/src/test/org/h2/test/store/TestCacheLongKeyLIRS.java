@@ -46,6 +46,7 @@ private void testCache() {
         testLimitMemory();
         testScanResistance();
         testRandomOperations();
+        testAccessBuffer();
     }
 
     private void testRandomSmallCache() {
@@ -458,6 +459,51 @@ private void testRandomOperations() {
         }
     }
 
+    private void testAccessBuffer() {
+        int size = 10;
+        Random r = new Random(1);
+        for (int j = 0; j < 100; j++) {
+            CacheLongKeyLIRS.Config cc = new CacheLongKeyLIRS.Config();
+            cc.maxMemory = size / 2 * (1 + MEMORY_OVERHEAD);
+            cc.segmentCount = 1;
+            cc.stackMoveDistance = 0;
+            cc.accessBufferSize = 4;
+            CacheLongKeyLIRS<Integer> test = new CacheLongKeyLIRS<>(cc);
+            HashMap<Integer, Integer> good = new HashMap<>();
+            int gets = 0;
+            for (int i = 0; i < 10000; i++) {
+                int key = r.nextInt(size);
+                int value = r.nextInt();
+                switch (r.nextInt(3)) {
+                case 0:
+                    good.put(key, value);
+                    test.put(key, value, 1);
+                    break;
+                case 1:
+                    gets++;
+                    Integer a = good.get(key);
+                    Integer b = test.get(key);
+                    if (a == null) {
+                        assertNull(b);
+                    } else if (b != null) {
+                        assertEquals(a, b);
+                    }
+                    break;
+                case 2:
+                    good.remove(key);
+                    test.remove(key);
+                    break;
+                }
+            }
+            verify(test, 0, null);
+            assertEquals(gets, test.getHits() + test.getMisses());
+            assertEquals(test.getHits(), test.getSegmentHits(0));
+            assertEquals(test.getMisses(), test.getSegmentMisses(0));
+            assertTrue(test.getEvictions() > 0);
+            assertEquals(test.getEvictions(), test.getSegmentEvictions(0));
+        }
+    }
+
     private static <V> String toString(CacheLongKeyLIRS<V> cache) {
         StringBuilder buff = new StringBuilder();
         buff.append("mem: " + cache.getUsedMemory());
@@ -8,10 +8,14 @@
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Random;
 import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
@@ -25,13 +29,18 @@
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreException;
 import org.h2.mvstore.OffHeapStore;
+import org.h2.mvstore.Page;
 import org.h2.mvstore.RandomAccessStore;
+import org.h2.mvstore.SingleFileStore;
 import org.h2.mvstore.type.DataType;
+import org.h2.mvstore.type.LongDataType;
 import org.h2.mvstore.type.ObjectDataType;
 import org.h2.mvstore.type.StringDataType;
 import org.h2.store.fs.FilePath;
 import org.h2.store.fs.FileUtils;
 import org.h2.test.TestBase;
+import org.h2.test.utils.FilePathBlocking;
+import org.h2.util.Task;
 import org.h2.util.Utils;
 
 /**
@@ -41,6 +50,8 @@ public class TestMVStore extends TestBase {
 
     private static final int CURRENT_FORMAT = 3;
 
+    private static final int NEWEST_FORMAT = FileStore.FORMAT_EXTENDED_PAGES;
+
     /**
      * Run just this test.
      *
@@ -61,9 +72,19 @@ public void test() throws Exception {
         testEntrySet();
         testCompressEmptyPage();
         testCompressed();
+        testCompressedDictionary();
+        testParallelSerialization();
+        testReadAhead();
+        testAsyncReads();
         testFileFormatExample();
         testMaxChunkLength();
         testCacheInfo();
+        testOffHeapCache();
+        testAutoCompactRate();
+        testMemoryMapped();
+        testOperateBatch();
+        testBulkLoader();
+        testLongKeys();
         testRollback();
         testVersionsToKeep();
         testVersionsToKeep2();
@@ -111,6 +132,7 @@ public void test() throws Exception {
         testKeyValueClasses();
         testIterate();
         testIterateReverse();
+        testCursorSeek();
         testCloseTwice();
         testSimple();
         testInvalidSettings();
@@ -264,6 +286,244 @@ private void testCompressed() {
         }
     }
 
+    private void testCompressedDictionary() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        long lastSize = 0;
+        for (int level = 1; level <= 3; level += 2) {
+            FileUtils.delete(fileName);
+            MVStore.Builder builder = new MVStore.Builder().fileName(fileName).
+                    pageSplitSize(1024).autoCommitDisabled();
+            if (level == 1) {
+                builder.compress();
+            } else {
+                builder.compressDictionary();
+            }
+            try (MVStore s = builder.open()) {
+                MVMap<Integer, String> map = s.openMap("data");
+                for (int i = 0; i < 20000; i++) {
+                    map.put(i, getRow(i));
+                    if (i % 1000 == 999) {
+                        s.commit();
+                    }
+                }
+                if (level == 3) {
+                    assertTrue(s.getFileStore().getLayoutMap().containsKey("dict." +
+                            Integer.toHexString(map.getId())));
+                }
+            }
+            long size = FileUtils.size(fileName);
+            if (level == 3) {
+                assertTrue(size < lastSize);
+            }
+            lastSize = size;
+            String key;
+            try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+                // older versions must not open a file with dictionary pages
+                Map<String, Object> header = s.getStoreHeader();
+                String format = Integer.toString(level == 3 ? NEWEST_FORMAT : CURRENT_FORMAT);
+                assertEquals(format, header.get("format").toString());
+                assertEquals(level == 3 ? format : null, Objects.toString(header.get("formatRead"), null));
+                MVMap<Integer, String> map = s.openMap("data");
+                for (int i = 0; i < 20000; i++) {
+                    assertEquals(getRow(i), map.get(i));
+                }
+                key = "dict." + Integer.toHexString(map.getId());
+                assertEquals(level == 3, s.getFileStore().getLayoutMap().containsKey(key));
+                s.removeMap(map);
+            }
+            try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+                assertFalse(s.getFileStore().getLayoutMap().containsKey(key));
+            }
+        }
+    }
+
+    private static String getRow(int i) {
+        return "{\"id\":" + i + ",\"name\":\"customer " + (i * 7919 % 1000) +
+                "\",\"status\":\"active\",\"city\":\"Zurich\",\"balance\":" + (i * 31 % 10000) + "}";
+    }
+
+    private void testParallelSerialization() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        String data = new String(new char[100]).replace((char) 0, 'x');
+        for (int level = 0; level <= 3; level++) {
+            FileUtils.delete(fileName);
+            MVStore.Builder builder = new MVStore.Builder().fileName(fileName).
+                    serializationThreads(4).autoCommitDisabled();
+            if (level == 1) {
+                builder.compress();
+            } else if (level == 2) {
+                builder.compressHigh();
+            } else if (level == 3) {
+                builder.compressDictionary();
+            }
+            try (MVStore s = builder.open()) {
+                MVMap<Integer, String> map = s.openMap("data");
+                MVMap<Integer, String> other = s.openMap("other");
+                for (int i = 0; i < 20000; i++) {
+                    map.put(i, data + i);
+                    if ((i & 3) == 0) {
+                        other.put(i, "v" + i);
+                    }
+                }
+                s.commit();
+                for (int i = 0; i < 20000; i += 7) {
+                    map.put(i, "updated" + i);
+                }
+                s.commit();
+            }
+            try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+                MVMap<Integer, String> map = s.openMap("data");
+                MVMap<Integer, String> other = s.openMap("other");
+                assertEquals(20000, map.size());
+                assertEquals(5000, other.size());
+                for (int i = 0; i < 20000; i++) {
+                    assertEquals(i % 7 == 0 ? "updated" + i : data + i, map.get(i));
+                }
+                assertEquals("v4000", other.get(4000));
+            }
+        }
+    }
+
+    private void testReadAhead() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            for (int i = 0; i < 50000; i++) {
+                map.put(i, "Hello " + i);
+            }
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                asyncReadThreads(2).readAheadPages(8).cacheSize(1).open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            for (int round = 0; round < 2; round++) {
+                int i = round * 1000;
+                Cursor<Integer, String> cursor = map.cursor(i);
+                while (cursor.hasNext()) {
+                    assertEquals(i, cursor.next().intValue());
+                    assertEquals("Hello " + i, cursor.getValue());
+                    i++;
+                }
+                assertEquals(50000, i);
+            }
+            int i = 49999;
+            for (Iterator<Integer> it = map.keyIteratorReverse(null); it.hasNext(); i--) {
+                assertEquals(i, it.next().intValue());
+            }
+            assertEquals(-1, i);
+        }
+    }
+
+    private void testAsyncReads() throws Exception {
+        FilePathBlocking fs = FilePathBlocking.register();
+        String fileName = "blocking:" + getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        try (MVStore s = new MVStore.Builder().fileName(fileName).keysPerPage(200).open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            for (int i = 0; i < 15000; i++) {
+                map.put(i, "Hello " + i);
+            }
+        }
+        MVStore s = new MVStore.Builder().fileName(fileName).
+                asyncReadThreads(1).readAheadPages(100).open();
+        try {
+            MVMap<Integer, String> map = s.openMap("data");
+            Page<Integer, String> root = map.getRootPage();
+            assertFalse(root.isLeaf());
+            // key i - 1 of the root is the first key of leaf i
+            int leafCount = root.getKeyCount() + 1;
+            assertTrue(leafCount > 125);
+
+            // moving to leaf 1 starts the reads of leaves 2 to 101, the read
+            // of leaf 2 is held back, and at most 64 more reads are queued
+            fs.block("H2-read");
+            Cursor<Integer, String> cursor = map.cursor(null);
+            while (cursor.next() < root.getKey(0)) {
+                // scan the first leaf
+            }
+            waitForHeldBackRead(fs);
+            // leaves 0 and 1 were read by the cursor
+            assertEquals(2, fs.getReadCount(false));
+
+            // synchronous reads of leaf 2 wait for the pending read
+            int key = root.getKey(1);
+            String[] values = new String[2];
+            Task[] readers = new Task[values.length];
+            for (int i = 0; i < readers.length; i++) {
+                int index = i;
+                readers[i] = new Task() {
+                    @Override
+                    public void call() {
+                        values[index] = map.get(key);
+                    }
+                }.execute();
+            }
+            Thread.sleep(100);
+            for (Task reader : readers) {
+                assertFalse(reader.isFinished());
+            }
+
+            // the read of leaf 80 was dropped, it is read synchronously
+            assertEquals("Hello " + root.getKey(79), map.get(root.getKey(79)));
+            assertEquals(3, fs.getReadCount(false));
+
+            // all requests for leaf 2 share the single pending read
+            fs.release();
+            for (int i = 0; i < readers.length; i++) {
+                readers[i].get();
+                assertEquals("Hello " + key, values[i]);
+            }
+            assertEquals(3, fs.getReadCount(false));
+            for (int i = 1; i < 80; i++) {
+                assertEquals("Hello " + root.getKey(i), map.get(root.getKey(i)));
+            }
+            long asyncReads = fs.getReadCount(true);
+            assertTrue(asyncReads >= 64 && asyncReads <= 65);
+            assertEquals(81 - asyncReads, fs.getReadCount(false));
+
+            // closing the store completes the queued reads exceptionally
+            fs.block("H2-read");
+            cursor = map.cursor(root.getKey(119));
+            while (cursor.next() < root.getKey(120)) {
+                // scan leaf 120
+            }
+            waitForHeldBackRead(fs);
+            int queuedKey = root.getKey(122);
+            Task waiting = new Task() {
+                @Override
+                public void call() {
+                    map.get(queuedKey);
+                }
+            }.execute();
+            Thread.sleep(100);
+            assertFalse(waiting.isFinished());
+            Task closing = new Task() {
+                @Override
+                public void call() {
+                    s.close();
+                }
+            }.execute();
+            Thread.sleep(100);
+            fs.release();
+            closing.get();
+            waiting.join();
+            assertTrue(waiting.getException() instanceof MVStoreException);
+        } finally {
+            fs.release();
+            s.closeImmediately();
+        }
+        FileUtils.delete(fileName);
+    }
+
+    private static void waitForHeldBackRead(FilePathBlocking fs) throws InterruptedException {
+        for (int i = 0; fs.getWaitingCount() == 0; i++) {
+            if (i > 1000) {
+                throw new AssertionError("No read was started");
+            }
+            Thread.sleep(10);
+        }
+    }
+
     private void testFileFormatExample() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
@@ -321,6 +581,345 @@ private void testCacheInfo() {
         }
     }
 
+    private void testOffHeapCache() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        byte[] data = new byte[1024];
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            for (int i = 0; i < 4000; i++) {
+                map.put(i, data);
+            }
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                cacheSize(0).offHeapCacheSize(16).open()) {
+            FileStore<?> fileStore = s.getFileStore();
+            assertEquals(16, fileStore.getOffHeapCacheSize());
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            for (int i = 0; i < 4000; i++) {
+                assertEquals(1024, map.get(i).length);
+            }
+            long reads = fileStore.getReadCount();
+            assertTrue(fileStore.getOffHeapCacheSizeUsed() >= 3);
+            for (int i = 0; i < 4000; i++) {
+                assertEquals(1024, map.get(i).length);
+            }
+            assertEquals(reads, fileStore.getReadCount());
+            assertTrue(fileStore.getOffHeapCacheHitRatio() > 0);
+            for (int i = 0; i < 4000; i += 2) {
+                map.remove(i);
+            }
+            s.commit();
+            s.compactFile(1000);
+            for (int i = 0; i < 4000; i++) {
+                if (i % 2 == 0) {
+                    assertFalse(map.containsKey(i));
+                } else {
+                    assertEquals(1024, map.get(i).length);
+                }
+            }
+        }
+    }
+
+    private void testAutoCompactRate() {
+        // the limiter, driven by explicit times
+        HashMap<String, Object> config = new HashMap<>();
+        config.put("autoCompactRate", 64);
+        RateLimitedStore limited = new RateLimitedStore(config);
+        int rate = 64 * 1024;
+        assertEquals(rate, limited.getAutoCompactRate());
+        long second = TimeUnit.SECONDS.toNanos(1);
+        // at most one second worth of budget is accumulated
+        long t = System.nanoTime() + 10 * second;
+        assertEquals(1000, limited.acquire(1000, t));
+        limited.charge(rate);
+        assertEquals(-1, limited.acquire(1000, t));
+        assertEquals(1, limited.getCompactThrottledCount());
+        t += second / 2;
+        assertEquals(1000, limited.acquire(1000, t));
+        limited.charge(1000);
+        // 32 KB - 1000 bytes are left
+        assertEquals(rate / 2 - 1000, limited.acquire(rate, t));
+        assertEquals(2, limited.getCompactThrottledCount());
+        limited.charge(rate / 2 - 1000 + 24);
+        // a write may exceed the budget, which delays the next one
+        t += second / 4;
+        assertEquals(rate / 4 - 24, limited.acquire(rate, t));
+        limited.charge(rate / 4 - 24);
+        // a request larger than the rate is allowed after more than a second
+        t += second;
+        assertEquals(rate, limited.acquire(3 * rate, t));
+        limited.charge(0);
+        t += second;
+        assertEquals(2 * rate, limited.acquire(3 * rate, t));
+        t += second;
+        assertEquals(3 * rate, limited.acquire(3 * rate, t));
+        assertEquals(5, limited.getCompactThrottledCount());
+
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        byte[] data = new byte[1024];
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                autoCompactRate(64).autoCommitDisabled().open()) {
+            s.setRetentionTime(0);
+            FileStore<?> fileStore = s.getFileStore();
+            assertEquals(rate, fileStore.getAutoCompactRate());
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            for (int i = 0; i < 4000; i++) {
+                map.put(i, data);
+                if (i % 100 == 99) {
+                    s.commit();
+                }
+            }
+            for (int i = 0; i < 4000; i++) {
+                if (i % 4 != 0) {
+                    map.remove(i);
+                }
+            }
+            s.commit();
+            HashMap<String, String> info = new HashMap<>();
+            s.populateInfo(info::put);
+            assertEquals(Long.toString(rate), info.get("info.COMPACT_RATE"));
+            assertEquals(Long.toString(fileStore.getCompactThrottledCount()),
+                    info.get("info.COMPACT_THROTTLED"));
+            // explicit compaction is not limited
+            long rewrittenChunks = fileStore.getCompactRewrittenChunks();
+            assertTrue(s.compact(90, 1024 * 1024));
+            assertTrue(fileStore.getCompactRewrittenChunks() > rewrittenChunks);
+            for (int i = 0; i < 4000; i++) {
+                assertEquals(i % 4 == 0, map.containsKey(i));
+            }
+        }
+    }
+
+    /**
+     * A store that exposes the compaction rate limiter.
+     */
+    private static final class RateLimitedStore extends SingleFileStore {
+
+        RateLimitedStore(Map<String, Object> config) {
+            super(config);
+        }
+
+        long acquire(long limit, long now) {
+            return acquireCompactBudget(limit, now);
+        }
+
+        void charge(long bytes) {
+            chargeCompactBudget(bytes);
+        }
+
+    }
+
+    private void testMemoryMapped() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        byte[] data = new byte[100];
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            for (int i = 0; i < 4000; i++) {
+                map.put(i, data);
+            }
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                cacheSize(0).memoryMapped().open()) {
+            SingleFileStore fileStore = (SingleFileStore) s.getFileStore();
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            for (int i = 0; i < 4000; i++) {
+                assertEquals(100, map.get(i).length);
+            }
+            assertTrue(fileStore.isMemoryMapped());
+            // the file grows
+            for (int i = 4000; i < 8000; i++) {
+                map.put(i, data);
+            }
+            s.commit();
+            for (int i = 0; i < 8000; i += 2) {
+                map.remove(i);
+            }
+            s.commit();
+            s.compactFile(1000);
+            for (int i = 0; i < 8000; i++) {
+                assertEquals(i % 2 == 1, map.containsKey(i));
+            }
+            assertTrue(fileStore.isMemoryMapped());
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                cacheSize(0).memoryMapped().open()) {
+            MVMap<Integer, byte[]> map = s.openMap("data");
+            assertEquals(4000, map.size());
+            assertEquals(100, map.get(7999).length);
+        }
+    }
+
+    private void testOperateBatch() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        TreeMap<Integer, String> expected = new TreeMap<>();
+        Random r = new Random(1);
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                pageSplitSize(1000).autoCommitDisabled().open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            ArrayList<Integer> keys = new ArrayList<>();
+            ArrayList<String> values = new ArrayList<>();
+            for (int i = 0; i < 2000; i++) {
+                keys.add(i * 2);
+                values.add("v" + i);
+                expected.put(i * 2, "v" + i);
+            }
+            assertEquals(2000, map.operateBatch(keys, values, MVMap.DecisionMaker.PUT));
+            s.commit();
+            for (int batch = 0; batch < 50; batch++) {
+                keys.clear();
+                values.clear();
+                TreeMap<Integer, String> changes = new TreeMap<>();
+                for (int i = 0, count = r.nextInt(300); i < count; i++) {
+                    changes.put(r.nextInt(5000), "b" + batch);
+                }
+                keys.addAll(changes.keySet());
+                values.addAll(changes.values());
+                int count;
+                if (batch % 3 == 0) {
+                    count = map.operateBatch(keys, null, MVMap.DecisionMaker.REMOVE);
+                    int removed = 0;
+                    for (Integer key : keys) {
+                        if (expected.remove(key) != null) {
+                            removed++;
+                        }
+                    }
+                    assertEquals(removed, count);
+                } else {
+                    count = map.operateBatch(keys, values, MVMap.DecisionMaker.PUT);
+                    expected.putAll(changes);
+                    assertEquals(keys.size(), count);
+                }
+                assertEquals(expected.size(), map.size());
+                if (batch % 5 == 0) {
+                    s.commit();
+                }
+            }
+            assertEquals(expected, new TreeMap<>(map));
+            // no change at all
+            assertEquals(0, map.operateBatch(Arrays.asList(-1, -2), null, MVMap.DecisionMaker.REMOVE));
+            assertThrows(IllegalArgumentException.class,
+                    () -> map.operateBatch(Arrays.asList(1, 2), Arrays.asList("a"), MVMap.DecisionMaker.PUT));
+            // remove everything
+            keys.clear();
+            keys.addAll(expected.keySet());
+            assertEquals(expected.size(), map.operateBatch(keys, null, MVMap.DecisionMaker.REMOVE));
+            assertEquals(0, map.size());
+            expected.clear();
+            keys.clear();
+            values.clear();
+            for (int i = 0; i < 3000; i++) {
+                keys.add(i);
+                values.add("c" + i);
+                expected.put(i, "c" + i);
+            }
+            map.operateBatch(keys, values, MVMap.DecisionMaker.PUT);
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, String> map = s.openMap("data");
+            assertEquals(expected, new TreeMap<>(map));
+        }
+    }
+
+    private void testBulkLoader() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        int count = 200_000;
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                pageSplitSize(4 * 1024).autoCommitBufferSize(64).open()) {
+            for (int size : new int[] { 0, 1, 10, 48, 49, 48 * 49, 48 * 49 + 1, count }) {
+                MVMap<Integer, String> map = s.openMap("data" + size);
+                MVMap.BulkLoader<Integer, String> loader = map.createBulkLoader();
+                for (int i = 0; i < size; i++) {
+                    loader.add(i * 2, "v" + i);
+                }
+                loader.finish();
+                assertEquals(size, map.size());
+                for (int i = 0; i < size; i += 1 + size / 1000) {
+                    assertEquals("v" + i, map.get(i * 2));
+                    assertNull(map.get(i * 2 + 1));
+                    assertEquals(i, (int) map.getKeyIndex(i * 2));
+                }
+                int i = 0;
+                for (Integer key : map.keySet()) {
+                    assertEquals(i++ * 2, key.intValue());
+                }
+                assertEquals(size, i);
+            }
+            MVMap<Integer, String> map = s.openMap("data" + count);
+            // further changes
+            for (int i = 0; i < count; i += 3) {
+                map.remove(i * 2);
+                map.put(i * 2 + 1, "x");
+            }
+            MVMap.BulkLoader<Integer, String> loader = s.<Integer, String>openMap("other").createBulkLoader();
+            loader.add(2, "a");
+            assertThrows(IllegalArgumentException.class, () -> loader.add(1, "b"));
+            assertThrows(IllegalArgumentException.class, () -> map.createBulkLoader());
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, String> map = s.openMap("data" + count);
+            assertEquals(count, map.size());
+            for (int i = 0; i < count; i++) {
+                assertEquals(i % 3 == 0 ? null : "v" + i, map.get(i * 2));
+                assertEquals(i % 3 == 0 ? "x" : null, map.get(i * 2 + 1));
+            }
+            s.compactFile(10_000);
+            assertEquals(count, map.size());
+            assertEquals("v1", map.get(2));
+        }
+    }
+
+    private void testLongKeys() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        int count = 20_000;
+        TreeMap<Long, Integer> expected = new TreeMap<>();
+        try (MVStore s = new MVStore.Builder().fileName(fileName).
+                pageSplitSize(1024).autoCommitBufferSize(64).open()) {
+            MVMap<Long, Integer> map = s.openMap("data",
+                    new MVMap.Builder<Long, Integer>().keyType(LongDataType.INSTANCE));
+            Random r = new Random(1);
+            for (int i = 0; i < count; i++) {
+                long key = r.nextInt(count) * 1_000_000_007L - 100;
+                if (r.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key), map.remove(key));
+                } else {
+                    assertEquals(expected.put(key, i), map.put(key, i));
+                }
+                if ((i & 1023) == 0) {
+                    s.commit();
+                }
+            }
+            for (long i = 0; i < 1000; i++) {
+                map.append(Long.MAX_VALUE - 1000 + i, (int) i);
+                expected.put(Long.MAX_VALUE - 1000 + i, (int) i);
+            }
+            assertEquals(expected.size(), map.size());
+            assertEquals(expected.firstKey(), map.firstKey());
+            assertEquals(expected.lastKey(), map.lastKey());
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Long, Integer> map = s.openMap("data",
+                    new MVMap.Builder<Long, Integer>().keyType(LongDataType.INSTANCE));
+            assertEquals(expected.size(), map.size());
+            Iterator<Long> it = map.keyIterator(null);
+            for (Entry<Long, Integer> e : expected.entrySet()) {
+                assertEquals(e.getKey(), it.next());
+                assertEquals(e.getValue(), map.get(e.getKey()));
+                assertEquals(expected.get(e.getKey() + 1), map.get(e.getKey() + 1));
+            }
+            assertFalse(it.hasNext());
+            long key = expected.firstKey() + 1;
+            assertEquals(expected.higherKey(key), map.higherKey(key));
+            assertEquals(expected.floorKey(key), map.floorKey(key));
+        }
+        FileUtils.delete(fileName);
+    }
+
     private void testVersionsToKeep() {
         try (MVStore s = new MVStore.Builder().open()) {
             assertEquals(5, s.getVersionsToKeep());
@@ -430,7 +1029,7 @@ private void testNewerWriteVersion() {
         Map<String, Object> header = s.getStoreHeader();
         assertEquals(Integer.toString(CURRENT_FORMAT), header.get("format").toString());
         header.put("formatRead", Integer.toString(CURRENT_FORMAT));
-        header.put("format", Integer.toString(CURRENT_FORMAT + 1));
+        header.put("format", Integer.toString(NEWEST_FORMAT + 1));
         forceWriteStoreHeader(s);
         MVMap<Integer, String> m = s.openMap("data");
         forceWriteStoreHeader(s);
@@ -730,7 +1329,7 @@ private void testFileFormatChange() {
             Map<String, Object> header = s.getStoreHeader();
             int format = Integer.parseInt(header.get("format").toString());
             assertEquals(CURRENT_FORMAT, format);
-            header.put("format", Integer.toString(format + 1));
+            header.put("format", Integer.toString(NEWEST_FORMAT + 1));
             forceWriteStoreHeader(s);
         }
         assertThrows(DataUtils.ERROR_UNSUPPORTED_FORMAT, () -> openStore(fileName).close());
@@ -1988,6 +2587,52 @@ private void testIterateReverse() {
         }
     }
 
+    private void testCursorSeek() {
+        try (MVStore s = new MVStore.Builder().keysPerPage(4).open()) {
+            MVMap<Integer, Integer> m = s.openMap("data");
+            TreeMap<Integer, Integer> expected = new TreeMap<>();
+            for (int i = 0; i < 2000; i += 2) {
+                m.put(i, i);
+                expected.put(i, i);
+            }
+            Random r = new Random(1);
+            for (int test = 0; test < 100; test++) {
+                int from = r.nextInt(100);
+                Integer to = r.nextBoolean() ? null : 1000 + r.nextInt(1000);
+                Cursor<Integer, Integer> cursor = m.cursor(from, to, false);
+                Integer last = null;
+                for (int key = from; key < 2100;) {
+                    int min;
+                    if (r.nextBoolean()) {
+                        if (r.nextBoolean()) {
+                            // the next entry is already fetched
+                            cursor.hasNext();
+                        }
+                        cursor.seek(key);
+                        min = Math.max(key, last == null ? from : last + 1);
+                    } else {
+                        for (int i = r.nextInt(3); i > 0 && cursor.hasNext(); i--) {
+                            last = cursor.next();
+                        }
+                        min = last == null ? from : last + 1;
+                    }
+                    Integer next = expected.ceilingKey(min);
+                    if (next != null && to != null && next > to) {
+                        next = null;
+                    }
+                    if (next == null) {
+                        assertFalse(cursor.hasNext());
+                        break;
+                    }
+                    assertTrue(cursor.hasNext());
+                    last = cursor.next();
+                    assertEquals(next.intValue(), last.intValue());
+                    key = last + 1 + r.nextInt(r.nextBoolean() ? 10 : 300);
+                }
+            }
+        }
+    }
+
     private void testCloseTwice() {
         String fileName = getBaseDir() + "/" + getTestName();
         FileUtils.delete(fileName);
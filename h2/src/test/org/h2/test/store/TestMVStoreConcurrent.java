@@ -65,6 +65,41 @@ public void test() throws Exception {
         testConcurrentIterate();
         testConcurrentWrite();
         testConcurrentRead();
+        testGroupCommit();
+    }
+
+    private void testGroupCommit() {
+        String fileName = getBaseDir() + "/" + getTestName();
+        FileUtils.delete(fileName);
+        int threadCount = 8, count = 50;
+        try (MVStore s = new MVStore.Builder().fileName(fileName).groupCommitWindow(2000).open()) {
+            MVMap<Integer, Integer> map = s.openMap("data");
+            Task[] tasks = new Task[threadCount];
+            for (int i = 0; i < threadCount; i++) {
+                int first = i * count;
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() {
+                        for (int j = first; j < first + count; j++) {
+                            map.put(j, j);
+                            s.commit();
+                        }
+                    }
+                };
+                tasks[i].execute();
+            }
+            for (Task t : tasks) {
+                t.get();
+            }
+            long groupCommits = s.getGroupCommitCount();
+            assertTrue(groupCommits > 0);
+            assertTrue(groupCommits < threadCount * count);
+            assertFalse(s.hasUnsavedChanges());
+        }
+        try (MVStore s = new MVStore.Builder().fileName(fileName).open()) {
+            MVMap<Integer, Integer> map = s.openMap("data");
+            assertEquals(threadCount * count, map.size());
+        }
     }
 
     private void testInterruptReopenAsync() {
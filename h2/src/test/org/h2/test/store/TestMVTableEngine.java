@@ -26,6 +26,7 @@
 import org.h2.engine.Constants;
 import org.h2.engine.Database;
 import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.FileStore;
 import org.h2.mvstore.MVMap;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.db.LobStorageMap;
@@ -98,6 +99,7 @@ public void test() throws Exception {
         testReuseDiskSpace();
 */
         testDataTypes();
+        testColumnarRowPages();
 //        testSimple();
 //        if (!config.travis) {
 //            testReverseDeletePerformance();
@@ -1117,6 +1119,57 @@ private void testReuseDiskSpace() throws Exception {
         }
     }
 
+    private void testColumnarRowPages() throws Exception {
+        deleteDb(getTestName());
+        String query = "select * from test order by id";
+        String expected;
+        try (Connection conn = getConnection(getTestName() + ";COLUMNAR_ROW_PAGES=TRUE")) {
+            Statement stat = conn.createStatement();
+            stat.execute("create table test(id bigint primary key, i int, s smallint, t tinyint, " +
+                    "c varchar, ci varchar_ignorecase, ch char(3), n int, m varchar, d decimal(10, 2))");
+            stat.execute("insert into test select x, case when mod(x, 7) = 0 then null else 1000 - x * 3 end, " +
+                    "mod(x, 300) - 150, mod(x, 200) - 100, 'v' || mod(x, 5), " +
+                    "case when mod(x, 2) = 0 then 'a' else 'A' end, " +
+                    "case when mod(x, 3) = 0 then null else 'c' || mod(x, 3) end, null, " +
+                    "'m' || x, x / 7.0 from system_range(1, 5000)");
+            stat.execute("update test set i = 2147483647 where id = 10");
+            stat.execute("update test set i = -2147483648 where id = 11");
+            expected = getResult(stat.executeQuery(query));
+            if (!config.memory) {
+                // older versions must not open a database with columnar pages
+                Database db = (Database) ((JdbcConnection) conn).getSession().getDataHandler();
+                Object format = db.getStore().getMvStore().getStoreHeader().get("formatRead");
+                assertEquals(Integer.toString(FileStore.FORMAT_EXTENDED_PAGES), String.valueOf(format));
+            }
+        }
+        // the pages can be read with and without the setting
+        for (String settings : new String[] { ";COLUMNAR_ROW_PAGES=TRUE", "" }) {
+            try (Connection conn = getConnection(getTestName() + settings)) {
+                Statement stat = conn.createStatement();
+                assertEquals(expected, getResult(stat.executeQuery(query)));
+                stat.execute("delete from test where mod(id, 4) = 0");
+                stat.execute("insert into test(id, c) select x + (select max(id) from test), 'w' from system_range(1, 1000)");
+                expected = getResult(stat.executeQuery(query));
+            }
+        }
+        try (Connection conn = getConnection(getTestName())) {
+            assertEquals(expected, getResult(conn.createStatement().executeQuery(query)));
+        }
+        deleteDb(getTestName());
+    }
+
+    private static String getResult(ResultSet rs) throws SQLException {
+        StringBuilder builder = new StringBuilder();
+        int columnCount = rs.getMetaData().getColumnCount();
+        while (rs.next()) {
+            for (int i = 1; i <= columnCount; i++) {
+                builder.append(rs.getString(i)).append(',');
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
     private void testDataTypes() throws Exception {
         deleteDb(getTestName());
         String dbName = getTestName() + ";MV_STORE=TRUE";
@@ -16,8 +16,11 @@
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import org.h2.engine.IsolationLevel;
 import org.h2.mvstore.DataUtils;
 import org.h2.mvstore.MVStore;
 import org.h2.mvstore.MVStoreException;
@@ -57,6 +60,7 @@ public void test() throws Exception {
         testConcurrentUpdate();
         testRepeatedChange();
         testTransactionAge();
+        testManyOpenTransactions();
         testGetModifiedMaps();
         testKeyIterator();
         testTwoPhaseCommit();
@@ -66,7 +70,13 @@ public void test() throws Exception {
         testCompareWithPostgreSQL();
         testStoreMultiThreadedReads();
         testCommitAfterMapRemoval();
+        testDeferredCommit();
+        testCommitAsync();
+        testUndoLogBuffer();
+        testUndoLogBufferSnapshot();
+        testCommittedPages();
         testDeadLock();
+        testDeadLockVictim();
     }
 
     private void testHCLFKey() {
@@ -351,6 +361,61 @@ private void testTransactionAge() {
         s.close();
     }
 
+    private void testManyOpenTransactions() throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            int count = 70_000;
+            Transaction[] open = new Transaction[count];
+            for (int i = 0; i < count; i++) {
+                open[i] = ts.begin();
+                assertEquals(i + 1, open[i].getId());
+            }
+            open[count - 1].openMap("data").put(1, 1);
+            Transaction t = ts.begin();
+            assertEquals(count + 1, t.getId());
+            TransactionMap<Integer, Integer> map = t.openMap("data");
+            assertNull(map.get(1));
+            open[count - 1].commit();
+            t.commit();
+            t = ts.begin();
+            assertEquals(count, t.getId());
+            assertEquals(1, t.<Integer, Integer>openMap("data").get(1).intValue());
+            t.commit();
+            for (int i = 0; i < count - 1; i++) {
+                open[i].commit();
+            }
+            assertEquals(0, ts.getOpenTransactions().size());
+            assertEquals(1, ts.begin().getId());
+        }
+
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Task[] tasks = new Task[8];
+            for (int i = 0; i < tasks.length; i++) {
+                int id = i;
+                tasks[i] = new Task() {
+                    @Override
+                    public void call() {
+                        for (int j = 0; j < 1000; j++) {
+                            Transaction t = ts.begin();
+                            TransactionMap<Integer, Integer> map = t.openMap("data");
+                            map.put(id * 1000 + j, j);
+                            t.commit();
+                        }
+                    }
+                }.execute();
+            }
+            for (Task task : tasks) {
+                task.get();
+            }
+            Transaction t = ts.begin();
+            assertEquals(tasks.length * 1000, t.openMap("data").sizeAsLong());
+            t.commit();
+        }
+    }
+
     private void testGetModifiedMaps() {
         try (MVStore s = MVStore.open(null)) {
             TransactionStore ts = new TransactionStore(s);
@@ -927,6 +992,312 @@ private void testCommitAfterMapRemoval() {
         }
     }
 
+    private void testDeferredCommit() {
+        String fileName = getBaseDir() + "/testDeferredCommit.h3";
+        FileUtils.delete(fileName);
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            ts.setDeferredCommitThreshold(100);
+            assertEquals(100, ts.getDeferredCommitThreshold());
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> map = tx.openMap("data");
+            for (int i = 0; i < 1000; i++) {
+                map.put(i, "a" + i);
+            }
+            tx.commit();
+            assertEquals(Transaction.STATUS_CLOSED, tx.getStatus());
+            // changes are visible, and can be changed again right away
+            tx = ts.begin();
+            map = tx.openMap("data");
+            assertEquals(1000, map.size());
+            for (int i = 0; i < 1000; i += 2) {
+                assertEquals("a" + i, map.get(i));
+                map.put(i, "b" + i);
+            }
+            tx.commit();
+            // small transactions are committed as usual
+            tx = ts.begin();
+            map = tx.openMap("data");
+            map.put(0, "c");
+            tx.commit();
+            ts.close();
+            // once the transaction store is closed, deferred commits and
+            // background stores are completed by the current thread
+            int commitThreads = getCommitThreadCount();
+            tx = ts.begin();
+            TransactionMap<Integer, String> other = tx.openMap("other");
+            for (int i = 0; i < 1000; i++) {
+                other.put(i, "d" + i);
+            }
+            tx.commit();
+            assertTrue(ts.storeAsync().isDone());
+            assertEquals(commitThreads, getCommitThreadCount());
+        }
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            assertTrue(ts.getOpenTransactions().isEmpty());
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> map = tx.openMap("data");
+            assertEquals(1000, map.size());
+            assertEquals("c", map.get(0));
+            for (int i = 1; i < 1000; i++) {
+                assertEquals((i & 1) == 0 ? "b" + i : "a" + i, map.get(i));
+            }
+            assertEquals(1000, tx.openMap("other").size());
+            tx.commit();
+        }
+        FileUtils.delete(fileName);
+    }
+
+    private static int getCommitThreadCount() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("H2-commit")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void testCommitAsync() throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction t = ts.begin();
+            t.openMap("data").put(1, 1);
+            assertTrue(t.commitAsync().isDone());
+        }
+
+        String fileName = getBaseDir() + "/testCommitAsync.h3";
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open();
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        Transaction t = ts.begin();
+        t.openMap("data");
+        t.commit();
+        s.commit();
+        t = ts.begin();
+        assertEquals(-1L, t.commitAsync().get().longValue());
+        ArrayList<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            t = ts.begin();
+            t.openMap("data").put(i, i);
+            CompletableFuture<Long> future = t.commitAsync();
+            assertEquals(Transaction.STATUS_CLOSED, t.getStatus());
+            futures.add(future);
+        }
+        for (CompletableFuture<Long> future : futures) {
+            assertTrue(future.get(10, TimeUnit.SECONDS) > 0);
+        }
+        // simulate a crash
+        s.closeImmediately();
+
+        s = MVStore.open(fileName);
+        ts = new TransactionStore(s);
+        ts.init();
+        t = ts.begin();
+        TransactionMap<Integer, Integer> map = t.openMap("data");
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, map.get(i).intValue());
+        }
+        t.commit();
+        s.close();
+    }
+
+    private void testUndoLogBuffer() {
+        String fileName = getBaseDir() + "/testUndoLogBuffer.h3";
+        FileUtils.delete(fileName);
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            ts.setUndoLogBufferSize(10);
+            assertEquals(10, ts.getUndoLogBufferSize());
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> map = tx.openMap("data");
+            for (int i = 0; i < 5; i++) {
+                map.put(i, "a" + i);
+            }
+            tx.commit();
+            // rollback to a savepoint and complete rollback
+            tx = ts.begin();
+            map = tx.openMap("data");
+            map.put(0, "b0");
+            long savepoint = tx.setSavepoint();
+            map.put(1, "b1");
+            map.remove(2);
+            map.put(10, "b10");
+            tx.rollbackToSavepoint(savepoint);
+            assertEquals("b0", map.get(0));
+            assertEquals("a1", map.get(1));
+            assertEquals("a2", map.get(2));
+            assertNull(map.get(10));
+            tx.commit();
+            tx = ts.begin();
+            map = tx.openMap("data");
+            map.put(3, "c3");
+            map.put(20, "c20");
+            tx.rollback();
+            // a large transaction moves its records to the undo log map
+            tx = ts.begin();
+            map = tx.openMap("data");
+            for (int i = 100; i < 200; i++) {
+                map.put(i, "d" + i);
+            }
+            tx.rollback();
+            tx = ts.begin();
+            map = tx.openMap("data");
+            for (int i = 100; i < 200; i++) {
+                map.put(i, "e" + i);
+            }
+            tx.commit();
+            tx = ts.begin();
+            map = tx.openMap("data");
+            assertEquals(105, map.size());
+            assertEquals("b0", map.get(0));
+            assertEquals("a3", map.get(3));
+            assertEquals("e150", map.get(150));
+            tx.commit();
+            // the changes of a prepared transaction are persisted
+            tx = ts.begin();
+            tx.setName("prepared");
+            map = tx.openMap("data");
+            map.put(1, "f1");
+            tx.prepare();
+            // an uncommitted transaction is rolled back on reopen
+            Transaction tx2 = ts.begin();
+            TransactionMap<Integer, String> map2 = tx2.openMap("data");
+            map2.put(4, "g4");
+            map2.put(30, "g30");
+            s.commit();
+        }
+        try (MVStore s = MVStore.open(fileName)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            ts.setUndoLogBufferSize(10);
+            List<Transaction> list = ts.getOpenTransactions();
+            assertEquals(2, list.size());
+            for (Transaction tx : list) {
+                if ("prepared".equals(tx.getName())) {
+                    assertEquals(Transaction.STATUS_PREPARED, tx.getStatus());
+                    tx.commit();
+                } else {
+                    tx.rollback();
+                }
+            }
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, String> map = tx.openMap("data");
+            assertEquals(105, map.size());
+            assertEquals("f1", map.get(1));
+            assertEquals("a4", map.get(4));
+            assertNull(map.get(30));
+            tx.commit();
+        }
+        FileUtils.delete(fileName);
+    }
+
+    private void testUndoLogBufferSnapshot() {
+        String fileName = getBaseDir() + "/testUndoLogBufferSnapshot.h3";
+        FileUtils.delete(fileName);
+        MVStore s = new MVStore.Builder().fileName(fileName).autoCommitDisabled().open();
+        TransactionStore ts = new TransactionStore(s);
+        ts.init();
+        ts.setUndoLogBufferSize(10);
+        Transaction tx = ts.begin();
+        tx.openMap("data").put(1, "a");
+        tx.commit();
+        s.commit();
+        // a transaction, which starts and changes a map while the store
+        // collects the changed maps, after open transactions were spilled
+        MVStore.StoreListener listener = s.getStoreListener();
+        s.setStoreListener(new MVStore.StoreListener() {
+            @Override
+            public void beforeSnapshot() {
+                listener.beforeSnapshot();
+                Transaction t = ts.begin();
+                TransactionMap<Integer, String> map = t.openMap("data");
+                map.put(1, "b");
+                map.put(2, "b");
+            }
+
+            @Override
+            public void afterSnapshot() {
+                listener.afterSnapshot();
+            }
+        });
+        tx = ts.begin();
+        tx.openMap("data").put(3, "c");
+        tx.commit();
+        s.commit();
+        s.setStoreListener(listener);
+        // simulate a crash
+        s.closeImmediately();
+
+        try (MVStore s2 = MVStore.open(fileName)) {
+            TransactionStore ts2 = new TransactionStore(s2);
+            ts2.init();
+            List<Transaction> list = ts2.getOpenTransactions();
+            assertEquals(1, list.size());
+            list.get(0).rollback();
+            tx = ts2.begin();
+            TransactionMap<Integer, String> map = tx.openMap("data");
+            assertEquals("a", map.get(1));
+            assertNull(map.get(2));
+            tx.commit();
+        }
+        FileUtils.delete(fileName);
+    }
+
+    private void testCommittedPages() {
+        try (MVStore s = new MVStore.Builder().pageSplitSize(1024).open()) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            Transaction tx = ts.begin();
+            TransactionMap<Integer, Integer> map = tx.openMap("data");
+            int count = 10_000;
+            for (int i = 0; i < count; i++) {
+                map.put(i, i);
+            }
+            tx.commit();
+            // uncommitted changes of other transaction
+            Transaction other = ts.begin();
+            TransactionMap<Integer, Integer> otherMap = other.openMap("data");
+            otherMap.put(10, -1);
+            otherMap.remove(5000);
+            otherMap.put(count + 1, -1);
+            for (IsolationLevel level : new IsolationLevel[] { IsolationLevel.READ_COMMITTED,
+                    IsolationLevel.REPEATABLE_READ }) {
+                tx = ts.begin((m, key, existingValue, restoredValue) -> {}, 1000, 0, level);
+                map = tx.openMap("data");
+                // own changes
+                map.put(7000, -2);
+                map.remove(9000);
+                map.put(count + 2, -2);
+                int expected = 0;
+                for (Entry<Integer, Integer> e : map.entrySet()) {
+                    int key = e.getKey();
+                    if (expected == 9000) {
+                        expected++;
+                    }
+                    if (expected == count) {
+                        expected = count + 2;
+                    }
+                    assertEquals(expected, key);
+                    assertEquals(key == 7000 || key == count + 2 ? -2 : key, e.getValue().intValue());
+                    expected++;
+                }
+                assertEquals(count + 3, expected);
+                Iterator<Integer> it = map.keyIterator(9001, true);
+                assertEquals(9001, it.next().intValue());
+                assertEquals(8999, it.next().intValue());
+                tx.rollback();
+            }
+            other.rollback();
+        }
+    }
+
     private void testDeadLock() {
         int threadCount = 2;
         for (int i = 1; i < threadCount; i++) {
@@ -934,6 +1305,40 @@ private void testDeadLock() {
         }
     }
 
+    private void testDeadLockVictim() throws Exception {
+        try (MVStore s = MVStore.open(null)) {
+            TransactionStore ts = new TransactionStore(s);
+            ts.init();
+            TransactionStore.RollbackListener listener = (map, key, existingValue, restoredValue) -> {};
+            // the older transaction has the smaller undo log
+            Transaction small = ts.begin(listener, 10000, 1, IsolationLevel.READ_COMMITTED);
+            Transaction large = ts.begin(listener, 10000, 2, IsolationLevel.READ_COMMITTED);
+            TransactionMap<Integer, Integer> smallMap = small.openMap("test");
+            TransactionMap<Integer, Integer> largeMap = large.openMap("test");
+            smallMap.put(0, 0);
+            for (int i = 1; i <= 100; i++) {
+                largeMap.put(i, i);
+            }
+            Task task = new Task() {
+                @Override
+                public void call() {
+                    largeMap.put(0, 1);
+                    large.commit();
+                }
+            }.execute();
+            while (large.getBlockerId() != 1) {
+                Thread.sleep(1);
+            }
+            assertThrows(DataUtils.ERROR_TRANSACTIONS_DEADLOCK, () -> smallMap.put(1, 0));
+            small.rollback();
+            task.get();
+            TransactionStore.LockWaits waits = ts.getLockWaits().get("test");
+            assertEquals(1, waits.getWaitCount());
+            assertEquals(0, waits.getTimeoutCount());
+            assertEquals(1, waits.getDeadlockCount());
+        }
+    }
+
     private void testDeadLock(int threadCount, int stepCount) {
         try (MVStore s = MVStore.open(null)) {
             s.setAutoCommitDelay(0);
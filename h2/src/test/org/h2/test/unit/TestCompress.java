@@ -19,7 +19,9 @@
 import java.util.Random;
 import java.util.concurrent.TimeUnit;
 
+import org.h2.api.ErrorCode;
 import org.h2.compress.CompressLZF;
+import org.h2.compress.CompressLZFDictionary;
 import org.h2.compress.Compressor;
 import org.h2.engine.Constants;
 import org.h2.store.fs.FileUtils;
@@ -27,6 +29,7 @@
 import org.h2.test.TestDb;
 import org.h2.tools.CompressTool;
 import org.h2.util.IOUtils;
+import org.h2.util.StringUtils;
 import org.h2.util.Task;
 
 /**
@@ -71,6 +74,7 @@ public void test() throws Exception {
         }
         test(4000000);
         testVariableEnd();
+        testDictionary();
     }
 
     private void testVariableSizeInt() {
@@ -140,6 +144,101 @@ private void testVariableEnd() {
         }
     }
 
+    private void testDictionary() {
+        Random r = new Random(1);
+        ArrayList<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(createRow(r, i));
+        }
+        byte[] dict = CompressLZFDictionary.train(samples, CompressLZFDictionary.DEFAULT_DICTIONARY_SIZE);
+        assertTrue(dict.length > 0 && dict.length <= CompressLZFDictionary.DEFAULT_DICTIONARY_SIZE);
+        CompressLZFDictionary comp = new CompressLZFDictionary(dict);
+        assertEquals(Compressor.LZF_DICTIONARY, comp.getAlgorithm());
+        CompressLZF lzf = new CompressLZF();
+        int dictLen = 0, lzfLen = 0;
+        for (int i = 100; i < 200; i++) {
+            byte[] b = createRow(r, i);
+            byte[] temp = new byte[100 + b.length * 2];
+            int compLen = comp.compress(b, 0, b.length, temp, 10);
+            byte[] exp = new byte[b.length + 20];
+            comp.expand(temp, 10, compLen, exp, 10, b.length);
+            assertEquals(b, Arrays.copyOfRange(exp, 10, 10 + b.length));
+            dictLen += compLen;
+            lzfLen += lzf.compress(b, 0, b.length, temp, 0);
+        }
+        assertSmaller(dictLen, lzfLen / 2);
+        // data without repetitions
+        byte[] b = new byte[1000];
+        r.nextBytes(b);
+        byte[] temp = new byte[100 + b.length * 2];
+        int compLen = comp.compress(b, 0, b.length, temp, 0);
+        byte[] exp = new byte[b.length];
+        comp.expand(temp, 0, compLen, exp, 0, b.length);
+        assertEquals(b, exp);
+        assertEquals(0, CompressLZFDictionary.train(new ArrayList<>(), 1024).length);
+        // the buffer of the thread grows, and the rows that follow still use
+        // the dictionary
+        b = new byte[100_000];
+        for (int pos = 0; pos < b.length;) {
+            byte[] row = createRow(r, pos);
+            int len = Math.min(row.length, b.length - pos);
+            System.arraycopy(row, 0, b, pos, len);
+            pos += len;
+        }
+        temp = new byte[100 + b.length * 2];
+        compLen = comp.compress(b, 0, b.length, temp, 0);
+        exp = new byte[b.length];
+        comp.expand(temp, 0, compLen, exp, 0, b.length);
+        assertEquals(b, exp);
+        b = createRow(r, 0);
+        compLen = comp.compress(b, 0, b.length, temp, 0);
+        assertSmaller(compLen, lzf.compress(b, 0, b.length, temp, 0));
+        compLen = comp.compress(b, 0, b.length, temp, 0);
+        exp = new byte[b.length];
+        comp.expand(temp, 0, compLen, exp, 0, b.length);
+        assertEquals(b, exp);
+        // the same instance is used by multiple threads
+        Task[] tasks = new Task[4];
+        for (int t = 0; t < tasks.length; t++) {
+            int seed = t;
+            tasks[t] = new Task() {
+                @Override
+                public void call() {
+                    Random random = new Random(seed);
+                    byte[] buff = new byte[1000];
+                    for (int i = 0; i < 1000; i++) {
+                        byte[] row = createRow(random, i);
+                        int len = comp.compress(row, 0, row.length, buff, 0);
+                        byte[] result = new byte[row.length];
+                        comp.expand(buff, 0, len, result, 0, row.length);
+                        assertEquals(row, result);
+                    }
+                }
+            }.execute();
+        }
+        for (Task task : tasks) {
+            task.get();
+        }
+        // the dictionary can also be used with the compress tool
+        CompressTool utils = CompressTool.getInstance();
+        b = createRow(r, 1);
+        byte[] compressed = utils.compress(b, "LZF_DICTIONARY " + StringUtils.convertBytesToHex(dict));
+        assertEquals(Compressor.LZF_DICTIONARY, compressed[0]);
+        assertSmaller(compressed.length, utils.compress(b, "LZF").length);
+        assertEquals(b, utils.expand(compressed, dict));
+        assertThrows(ErrorCode.COMPRESSION_ERROR, () -> utils.expand(compressed));
+        byte[] compressedNoDictionary = utils.compress(b, "LZF_DICTIONARY");
+        assertEquals(Compressor.LZF_DICTIONARY, compressedNoDictionary[0]);
+        assertEquals(b, utils.expand(compressedNoDictionary));
+    }
+
+    private static byte[] createRow(Random r, int i) {
+        String s = "{\"id\": " + i + ", \"name\": \"customer " + r.nextInt(1000)
+                + "\", \"status\": \"active\", \"country\": \"Switzerland\", \"balance\": "
+                + r.nextInt(100000) + ", \"created\": \"2024-01-" + (10 + r.nextInt(20)) + "\"}";
+        return s.getBytes();
+    }
+
     private void testDatabase() throws Exception {
         deleteDb("memFS:compress");
         Connection conn = getConnection("memFS:compress");
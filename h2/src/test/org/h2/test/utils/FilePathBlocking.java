@@ -0,0 +1,208 @@
+/*
+ * Copyright 2004-2025 H2 Group. Multiple-Licensed under the MPL 2.0,
+ * and the EPL 1.0 (https://h2database.com/html/license.html).
+ * Initial Developer: H2 Group
+ */
+package org.h2.test.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.h2.store.fs.FileBase;
+import org.h2.store.fs.FilePath;
+import org.h2.store.fs.FilePathWrapper;
+
+/**
+ * A file system that can hold back the reads of a given thread, and that
+ * counts the read operations. It is used to test concurrent reads.
+ */
+public class FilePathBlocking extends FilePathWrapper {
+
+    private static final FilePathBlocking INSTANCE = new FilePathBlocking();
+
+    private static volatile String blockedThreadName;
+
+    private static volatile CountDownLatch gate;
+
+    private static final AtomicInteger waitingCount = new AtomicInteger();
+
+    private static final AtomicLong readCount = new AtomicLong();
+
+    private static final AtomicLong blockedThreadReadCount = new AtomicLong();
+
+    /**
+     * Register the file system.
+     *
+     * @return the instance
+     */
+    public static FilePathBlocking register() {
+        FilePath.register(INSTANCE);
+        return INSTANCE;
+    }
+
+    /**
+     * Hold back the reads of threads with the given name until
+     * {@link #release()} is called, and reset the read counters.
+     *
+     * @param threadName the thread name
+     */
+    public void block(String threadName) {
+        gate = new CountDownLatch(1);
+        blockedThreadName = threadName;
+        readCount.set(0);
+        blockedThreadReadCount.set(0);
+    }
+
+    /**
+     * Let the held back reads continue.
+     */
+    public void release() {
+        CountDownLatch g = gate;
+        if (g != null) {
+            g.countDown();
+        }
+    }
+
+    /**
+     * Get the number of reads that are currently held back.
+     *
+     * @return the number of reads
+     */
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    /**
+     * Get the number of read operations since the last call to
+     * {@link #block(String)}.
+     *
+     * @param blockedThread whether to count only the reads of the threads with
+     *            the blocked name, or only the reads of all other threads
+     * @return the number of reads
+     */
+    public long getReadCount(boolean blockedThread) {
+        return blockedThread ? blockedThreadReadCount.get() : readCount.get();
+    }
+
+    /**
+     * Count the read operation, and wait until the reads are released if the
+     * current thread is blocked.
+     *
+     * @throws IOException if the thread was interrupted
+     */
+    void beforeRead() throws IOException {
+        if (!Thread.currentThread().getName().equals(blockedThreadName)) {
+            readCount.incrementAndGet();
+            return;
+        }
+        blockedThreadReadCount.incrementAndGet();
+        CountDownLatch g = gate;
+        if (g != null && g.getCount() > 0) {
+            waitingCount.incrementAndGet();
+            try {
+                g.await();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } finally {
+                waitingCount.decrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public FileChannel open(String mode) throws IOException {
+        return new FileBlocking(this, super.open(mode));
+    }
+
+    @Override
+    public String getScheme() {
+        return "blocking";
+    }
+
+}
+
+/**
+ * A file that holds back the reads of the blocked thread.
+ */
+class FileBlocking extends FileBase {
+
+    private final FilePathBlocking file;
+    private final FileChannel channel;
+
+    FileBlocking(FilePathBlocking file, FileChannel channel) {
+        this.file = file;
+        this.channel = channel;
+    }
+
+    @Override
+    public void implCloseChannel() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public long position() throws IOException {
+        return channel.position();
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        file.beforeRead();
+        return channel.read(dst);
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long pos) throws IOException {
+        file.beforeRead();
+        return channel.read(dst, pos);
+    }
+
+    @Override
+    public FileChannel position(long pos) throws IOException {
+        channel.position(pos);
+        return this;
+    }
+
+    @Override
+    public FileChannel truncate(long newLength) throws IOException {
+        channel.truncate(newLength);
+        return this;
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+        channel.force(metaData);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        return channel.write(src);
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) throws IOException {
+        return channel.write(src, position);
+    }
+
+    @Override
+    public synchronized FileLock tryLock(long position, long size,
+            boolean shared) throws IOException {
+        return channel.tryLock(position, size, shared);
+    }
+
+    @Override
+    public String toString() {
+        return "blocking:" + file.toString();
+    }
+
+}